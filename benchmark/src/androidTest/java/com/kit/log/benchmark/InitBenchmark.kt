@@ -0,0 +1,60 @@
+package com.kit.log.benchmark
+
+import androidx.benchmark.junit4.BenchmarkRule
+import androidx.benchmark.junit4.measureRepeated
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.orhanobut.logger.DurabilityPolicy
+import com.orhanobut.logger.LogKit
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * 初始化日志的耗时。initAllLog 通常在 Application.onCreate 中调用，直接计入冷启动时间，
+ * 它只应创建对象并保存参数，目录解析、进程名读取和写线程启动都推迟到第一条日志。
+ *
+ * ```
+ * ./gradlew :benchmark:connectedReleaseAndroidTest
+ * ```
+ */
+@RunWith(AndroidJUnit4::class)
+class InitBenchmark {
+
+    @get:Rule
+    val benchmarkRule = BenchmarkRule()
+
+    private val context = InstrumentationRegistry.getInstrumentation().targetContext
+
+    @Test
+    fun initAllLog() {
+        benchmarkRule.measureRepeated {
+            LogKit.initAllLog(context)
+        }
+    }
+
+    @Test
+    fun initAllLogStagePerThread() {
+        benchmarkRule.measureRepeated {
+            LogKit.initAllLog(context, stagePerThread = true)
+        }
+    }
+
+    @Test
+    fun initAllLogWithoutRecentLogs() {
+        val durability = DurabilityPolicy.defaultPolicy()
+        benchmarkRule.measureRepeated {
+            LogKit.initAllLog(context, durability, recentCapacity = 0)
+        }
+    }
+
+    @Test
+    fun durabilityPolicyBuild() {
+        benchmarkRule.measureRepeated {
+            DurabilityPolicy.newBuilder()
+                .syncIntervalMs(500)
+                .syncBytes(64 * 1024)
+                .build()
+        }
+    }
+}
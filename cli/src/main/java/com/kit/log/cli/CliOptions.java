@@ -0,0 +1,184 @@
+package com.kit.log.cli;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 命令行参数。参数不正确时抛出 {@link IllegalArgumentException}，消息直接展示给用户。
+ */
+final class CliOptions {
+
+  static final String USAGE = ""
+      + "usage: logkit [options] <file|dir>...\n"
+      + "\n"
+      + "解析 LogKit 的磁盘日志（目录、.csv、.csv.gz 或导出的 .tar），按时间合并输出。\n"
+      + "\n"
+      + "  --since <time>       只保留此时间及之后的日志，毫秒时间戳或 \"yyyy-MM-dd HH:mm[:ss[.SSS]]\"\n"
+      + "  --until <time>       只保留此时间及之前的日志\n"
+      + "  --level <level>      最低级别：V/D/I/W/E/A 或 VERBOSE ... ASSERT\n"
+      + "  --tag <tag>          只保留此标签，可以重复；以 * 结尾表示前缀\n"
+      + "  --grep <regex>       消息中包含匹配的内容\n"
+      + "  --format <format>    text（默认）或 jsonl\n"
+      + "  --stats              只输出汇总统计\n"
+      + "  --top <n>            统计中列出的标签个数，默认 20\n"
+      + "  --threads <n>        解析线程数，默认为 CPU 核数\n"
+      + "  -o, --output <file>  写入文件，默认为标准输出\n"
+      + "  -h, --help           显示帮助\n";
+
+  private static final DateTimeFormatter TIME = new DateTimeFormatterBuilder()
+      .appendPattern("yyyy-MM-dd")
+      .optionalStart().appendPattern(" HH:mm")
+      .optionalStart().appendPattern(":ss")
+      .optionalStart().appendPattern(".SSS")
+      .optionalEnd().optionalEnd().optionalEnd()
+      .parseDefaulting(ChronoField.HOUR_OF_DAY, 0)
+      .parseDefaulting(ChronoField.MINUTE_OF_HOUR, 0)
+      .parseDefaulting(ChronoField.SECOND_OF_MINUTE, 0)
+      .parseDefaulting(ChronoField.NANO_OF_SECOND, 0)
+      .toFormatter();
+
+  @NonNull final List<File> inputs = new ArrayList<>();
+  @NonNull final LogQuery query;
+  @NonNull final RecordFormat format;
+  final boolean statsOnly;
+  final int topTags;
+  final int threads;
+  @Nullable final File output;
+  final boolean help;
+
+  private CliOptions(@NonNull List<File> inputs, @NonNull LogQuery query, @NonNull RecordFormat format,
+                     boolean statsOnly, int topTags, int threads, @Nullable File output, boolean help) {
+    this.inputs.addAll(inputs);
+    this.query = query;
+    this.format = format;
+    this.statsOnly = statsOnly;
+    this.topTags = topTags;
+    this.threads = threads;
+    this.output = output;
+    this.help = help;
+  }
+
+  @NonNull static CliOptions parse(@NonNull String[] args) {
+    List<File> inputs = new ArrayList<>();
+    List<String> tags = new ArrayList<>();
+    long since = Long.MIN_VALUE;
+    long until = Long.MAX_VALUE;
+    int minLevel = 0;
+    Pattern pattern = null;
+    RecordFormat format = RecordFormat.TEXT;
+    boolean statsOnly = false;
+    int topTags = 20;
+    int threads = Runtime.getRuntime().availableProcessors();
+    File output = null;
+    boolean help = false;
+
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      switch (arg) {
+        case "--since":
+          since = time(value(args, ++i, arg));
+          break;
+        case "--until":
+          until = time(value(args, ++i, arg));
+          break;
+        case "--level":
+          String level = value(args, ++i, arg);
+          minLevel = LogQuery.levelOf(level);
+          if (minLevel == 0) {
+            throw new IllegalArgumentException("unknown level: " + level);
+          }
+          break;
+        case "--tag":
+          tags.add(value(args, ++i, arg));
+          break;
+        case "--grep":
+          try {
+            pattern = Pattern.compile(value(args, ++i, arg));
+          } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("bad regex: " + e.getDescription());
+          }
+          break;
+        case "--format":
+          format = RecordFormat.of(value(args, ++i, arg));
+          break;
+        case "--stats":
+          statsOnly = true;
+          break;
+        case "--top":
+          topTags = number(value(args, ++i, arg), arg);
+          break;
+        case "--threads":
+          threads = Math.max(1, number(value(args, ++i, arg), arg));
+          break;
+        case "-o":
+        case "--output":
+          output = new File(value(args, ++i, arg));
+          break;
+        case "-h":
+        case "--help":
+          help = true;
+          break;
+        default:
+          if (arg.startsWith("-") && arg.length() > 1) {
+            throw new IllegalArgumentException("unknown option: " + arg);
+          }
+          inputs.add(new File(arg));
+          break;
+      }
+    }
+    if (inputs.isEmpty() && !help) {
+      throw new IllegalArgumentException("no input");
+    }
+    if (since > until) {
+      throw new IllegalArgumentException("--since is after --until");
+    }
+    return new CliOptions(inputs, new LogQuery(since, until, minLevel, tags, pattern), format, statsOnly,
+        topTags, threads, output, help);
+  }
+
+  @NonNull private static String value(@NonNull String[] args, int index, @NonNull String option) {
+    if (index >= args.length) {
+      throw new IllegalArgumentException(option + " requires a value");
+    }
+    return args[index];
+  }
+
+  private static int number(@NonNull String value, @NonNull String option) {
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(option + " expects a number: " + value);
+    }
+  }
+
+  /**
+   * 毫秒时间戳，或本地时区的 {@code yyyy-MM-dd HH:mm:ss.SSS}（日期也可以用 '.' 分隔，与日志中的格式一致）
+   */
+  private static long time(@NonNull String value) {
+    boolean digits = !value.isEmpty();
+    for (int i = 0; i < value.length() && digits; i++) {
+      digits = value.charAt(i) >= '0' && value.charAt(i) <= '9';
+    }
+    if (digits && value.length() > 8) {
+      return Long.parseLong(value);
+    }
+    String normalized = value.length() >= 10 ? value.substring(0, 10).replace('.', '-') + value.substring(10) : value;
+    try {
+      return LocalDateTime.parse(normalized, TIME).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    } catch (DateTimeParseException e) {
+      throw new IllegalArgumentException("bad time: " + value);
+    }
+  }
+}
@@ -0,0 +1,231 @@
+package com.kit.log.cli;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 离线分析 LogKit 磁盘日志的命令行工具，例如从 bugreport 或日志导出中取出的日志目录。
+ * <p>
+ * 与库共用 {@link com.orhanobut.logger.CsvLogRecord} 解析每一行。分段（大文件按 8MB 切分）放在一个队列中，
+ * 由固定个数的解析线程依次取出，并行解析、筛选和渲染；每个分段的结果按时间排序后写入临时文件，
+ * 最后逐条读回多路归并，按时间顺序写出。内存占用只与线程数和打开的临时文件数有关，与输入大小无关；
+ * 只统计时不保留日志内容。
+ *
+ * <pre><code>
+ *   ./gradlew :cli:installDist
+ *   cli/build/install/logkit/bin/logkit --level W --tag "net*" --since "2024-05-01 10:00" logs/
+ *   cli/build/install/logkit/bin/logkit --stats export.tar
+ * </code></pre>
+ */
+public final class LogCli {
+
+  /**
+   * 归并时最多同时打开的临时文件数
+   */
+  private static final int MAX_OPEN_RUNS = 128;
+
+  private LogCli() {
+    // no instance
+  }
+
+  public static void main(@NonNull String[] args) {
+    CliOptions options;
+    try {
+      options = CliOptions.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println("logkit: " + e.getMessage());
+      System.err.print(CliOptions.USAGE);
+      System.exit(2);
+      return;
+    }
+    if (options.help) {
+      System.out.print(CliOptions.USAGE);
+      return;
+    }
+    int status;
+    try {
+      status = run(options);
+    } catch (IllegalArgumentException | IOException e) {
+      System.err.println("logkit: " + e.getMessage());
+      status = 2;
+    }
+    System.exit(status);
+  }
+
+  /**
+   * @return 进程退出码，有分段读取失败时为 1
+   */
+  static int run(@NonNull CliOptions options) throws IOException {
+    long start = System.nanoTime();
+    List<Segment> segments = Segment.scan(options.inputs);
+    if (segments.isEmpty()) {
+      System.err.println("logkit: no log files found");
+      return 1;
+    }
+
+    File spillDir = Files.createTempDirectory("logkit").toFile();
+    try {
+      ParseTask.Result[] results = parse(segments, options, spillDir);
+      LogStats stats = new LogStats();
+      List<SortedRun> runs = new ArrayList<>();
+      for (ParseTask.Result result : results) {
+        stats.merge(result.stats);
+        runs.addAll(result.runs); // 分段顺序，时间相同时靠前的先输出
+      }
+      if (options.statsOnly) {
+        stats.print(System.out, System.nanoTime() - start, options.topTags);
+      } else if (options.output != null) {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(options.output), 64 * 1024)) {
+          merge(runs, spillDir, out);
+        }
+      } else {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 64 * 1024);
+        try {
+          merge(runs, spillDir, out);
+          out.flush();
+        } catch (IOException e) {
+          // 标准输出被提前关闭（例如通过管道交给 head），不算错误
+        }
+      }
+      return stats.failedSegments > 0 ? 1 : 0;
+    } finally {
+      deleteAll(spillDir);
+    }
+  }
+
+  /**
+   * 用 threads 个 {@link ParseTask} 从同一个分段队列中取分段解析，同时处理的分段数不超过线程数
+   */
+  @NonNull private static ParseTask.Result[] parse(@NonNull List<Segment> segments, @NonNull CliOptions options,
+                                                   @NonNull File spillDir) throws IOException {
+    ParseTask.Result[] results = new ParseTask.Result[segments.size()];
+    AtomicInteger next = new AtomicInteger();
+    RecordFormat format = options.statsOnly ? null : options.format;
+    int workers = Math.min(options.threads, segments.size());
+    ForkJoinPool pool = new ForkJoinPool(workers);
+    try {
+      List<ForkJoinTask<Void>> tasks = new ArrayList<>(workers);
+      for (int i = 0; i < workers; i++) {
+        tasks.add(pool.submit(new ParseTask(segments, next, options.query, format, spillDir, results)));
+      }
+      for (ForkJoinTask<Void> task : tasks) {
+        task.join();
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      pool.shutdownNow();
+    }
+    return results;
+  }
+
+  /**
+   * 多路归并各组已排序的行，时间相同时按组的顺序，同一组内保持原有顺序。
+   * 每组只在内存中保留当前一条；组数超过 {@link #MAX_OPEN_RUNS} 时先把相邻的组合并为更大的组，避免同时打开过多文件
+   */
+  private static void merge(@NonNull List<SortedRun> runs, @NonNull File spillDir, @NonNull OutputStream out)
+      throws IOException {
+    while (runs.size() > MAX_OPEN_RUNS) {
+      List<SortedRun> merged = new ArrayList<>((runs.size() + MAX_OPEN_RUNS - 1) / MAX_OPEN_RUNS);
+      for (int from = 0; from < runs.size(); from += MAX_OPEN_RUNS) {
+        List<SortedRun> group = runs.subList(from, Math.min(runs.size(), from + MAX_OPEN_RUNS));
+        try (SortedRun.Writer writer = SortedRun.create(spillDir)) {
+          merge(group, cursor -> writer.write(cursor.timestamp, cursor.line, cursor.length));
+          merged.add(writer.finish());
+        }
+        for (SortedRun run : group) {
+          run.delete();
+        }
+      }
+      runs = merged;
+    }
+    merge(runs, cursor -> {
+      cursor.copyTo(out);
+      out.write('\n');
+    });
+  }
+
+  private static void merge(@NonNull List<SortedRun> runs, @NonNull Sink sink) throws IOException {
+    PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, runs.size()));
+    try {
+      for (int i = 0; i < runs.size(); i++) {
+        Cursor cursor = new Cursor(runs.get(i).open(), i);
+        if (cursor.reader.next()) {
+          heap.add(cursor);
+        } else {
+          cursor.reader.close();
+        }
+      }
+      while (!heap.isEmpty()) {
+        Cursor cursor = heap.poll();
+        // 当前组的时间不晚于堆中其他组时连续写出，不必每行都经过堆
+        long limit = heap.isEmpty() ? Long.MAX_VALUE : heap.peek().reader.timestamp;
+        int limitOrder = heap.isEmpty() ? Integer.MAX_VALUE : heap.peek().order;
+        SortedRun.Reader reader = cursor.reader;
+        boolean more;
+        do {
+          sink.accept(reader);
+          more = reader.next();
+        } while (more && (reader.timestamp < limit || (reader.timestamp == limit && cursor.order < limitOrder)));
+        if (more) {
+          heap.add(cursor);
+        } else {
+          reader.close();
+        }
+      }
+    } finally {
+      for (Cursor cursor : heap) {
+        cursor.reader.close();
+      }
+    }
+  }
+
+  private static void deleteAll(@NonNull File dir) {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    dir.delete();
+  }
+
+  /**
+   * 归并时对当前记录的处理
+   */
+  private interface Sink {
+    void accept(@NonNull SortedRun.Reader record) throws IOException;
+  }
+
+  /**
+   * 归并时某一组的读取位置
+   */
+  private static final class Cursor implements Comparable<Cursor> {
+    @NonNull final SortedRun.Reader reader;
+    final int order; // 组的顺序，时间相同时靠前的先输出
+
+    Cursor(@NonNull SortedRun.Reader reader, int order) {
+      this.reader = reader;
+      this.order = order;
+    }
+
+    @Override public int compareTo(@NonNull Cursor other) {
+      int result = Long.compare(reader.timestamp, other.reader.timestamp);
+      return result != 0 ? result : Integer.compare(order, other.order);
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package com.kit.log.cli;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.orhanobut.logger.CsvLogRecord;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 命令行指定的筛选条件，各条件之间为“与”的关系。可以在多个解析线程中同时使用。
+ */
+final class LogQuery {
+
+  /**
+   * 日志级别名称，下标与 android.util.Log 的级别常量一致
+   */
+  static final String[] LEVELS = {"UNKNOWN", "UNKNOWN", "VERBOSE", "DEBUG", "INFO", "WARN", "ERROR", "ASSERT"};
+
+  final long since; // 包含
+  final long until; // 包含
+  final int minLevel; // 0 表示不限
+  @NonNull private final Set<String> tags; // 完整匹配的标签
+  @NonNull private final List<String> tagPrefixes; // 以 * 结尾的标签
+  @Nullable private final Pattern pattern; // 消息中需要包含的内容
+
+  LogQuery(long since, long until, int minLevel, @NonNull List<String> tags, @Nullable Pattern pattern) {
+    this.since = since;
+    this.until = until;
+    this.minLevel = minLevel;
+    Set<String> exact = new HashSet<>();
+    List<String> prefixes = new ArrayList<>();
+    for (String tag : tags) {
+      if (tag.endsWith("*")) {
+        prefixes.add(tag.substring(0, tag.length() - 1));
+      } else {
+        exact.add(tag);
+      }
+    }
+    this.tags = Collections.unmodifiableSet(exact);
+    this.tagPrefixes = Collections.unmodifiableList(prefixes);
+    this.pattern = pattern;
+  }
+
+  /**
+   * 只比较时间，在完整解析一行之前先排除时间范围之外的行
+   */
+  boolean acceptTime(long timestamp) {
+    return timestamp >= since && timestamp <= until;
+  }
+
+  boolean accept(@NonNull CsvLogRecord record) {
+    if (!acceptTime(record.timestamp)) {
+      return false;
+    }
+    if (minLevel > 0 && levelOf(record.level) < minLevel) {
+      return false;
+    }
+    if ((!tags.isEmpty() || !tagPrefixes.isEmpty()) && !acceptTag(record.tag)) {
+      return false;
+    }
+    return pattern == null || pattern.matcher(record.message).find();
+  }
+
+  private boolean acceptTag(@NonNull String tag) {
+    if (tags.contains(tag)) {
+      return true;
+    }
+    for (int i = 0; i < tagPrefixes.size(); i++) {
+      if (tag.startsWith(tagPrefixes.get(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * 级别名称对应的常量，也接受首字母（V/D/I/W/E/A），无法识别时返回 0
+   */
+  static int levelOf(@NonNull String name) {
+    for (int i = 2; i < LEVELS.length; i++) {
+      String level = LEVELS[i];
+      if (level.equalsIgnoreCase(name)
+          || (name.length() == 1 && level.charAt(0) == Character.toUpperCase(name.charAt(0)))) {
+        return i;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * 从行首取出时间戳，不分配对象，格式不正确时返回 -1
+   */
+  static long leadingTimestamp(@NonNull String line) {
+    long value = 0;
+    int length = line.length();
+    for (int i = 0; i < length && i < 19; i++) {
+      char c = line.charAt(i);
+      if (c == ',') {
+        return i == 0 ? -1 : value;
+      }
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return -1;
+  }
+}
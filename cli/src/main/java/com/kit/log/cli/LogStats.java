@@ -0,0 +1,97 @@
+package com.kit.log.cli;
+
+import androidx.annotation.NonNull;
+
+import com.orhanobut.logger.CsvLogRecord;
+
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 汇总统计。每个解析任务各自累计，最后合并，累计过程不需要同步。
+ * 级别、标签和时间范围只统计满足筛选条件的日志。
+ */
+final class LogStats {
+
+  long segments; // 解析的分段数
+  long failedSegments; // 读取失败的分段数
+  long bytes; // 读取的字节数，压缩内容按压缩后的大小
+  long lines; // 读取的行数
+  long malformed; // 无法解析的行数
+  long matched; // 满足筛选条件的日志条数
+  long first = Long.MAX_VALUE; // 最早的时间戳
+  long last = Long.MIN_VALUE; // 最晚的时间戳
+  @NonNull private final long[] levels = new long[LogQuery.LEVELS.length];
+  @NonNull private final Map<String, long[]> tags = new HashMap<>();
+
+  void onMatched(@NonNull CsvLogRecord record) {
+    matched++;
+    levels[LogQuery.levelOf(record.level)]++;
+    long[] count = tags.get(record.tag);
+    if (count == null) {
+      tags.put(record.tag, new long[] {1});
+    } else {
+      count[0]++;
+    }
+    first = Math.min(first, record.timestamp);
+    last = Math.max(last, record.timestamp);
+  }
+
+  void merge(@NonNull LogStats other) {
+    segments += other.segments;
+    failedSegments += other.failedSegments;
+    bytes += other.bytes;
+    lines += other.lines;
+    malformed += other.malformed;
+    matched += other.matched;
+    first = Math.min(first, other.first);
+    last = Math.max(last, other.last);
+    for (int i = 0; i < levels.length; i++) {
+      levels[i] += other.levels[i];
+    }
+    for (Map.Entry<String, long[]> entry : other.tags.entrySet()) {
+      long[] count = tags.get(entry.getKey());
+      if (count == null) {
+        tags.put(entry.getKey(), entry.getValue());
+      } else {
+        count[0] += entry.getValue()[0];
+      }
+    }
+  }
+
+  /**
+   * @param elapsedNanos 总耗时，用于计算吞吐量
+   * @param topTags      列出条数最多的几个标签
+   */
+  void print(@NonNull PrintStream out, long elapsedNanos, int topTags) {
+    double seconds = Math.max(1, elapsedNanos) / 1e9;
+    out.printf(Locale.US, "segments: %d (failed %d)%n", segments, failedSegments);
+    out.printf(Locale.US, "read: %.1f MB, %d lines (%d malformed) in %.2f s, %.1f MB/s%n",
+        bytes / 1e6, lines, malformed, seconds, bytes / 1e6 / seconds);
+    out.printf(Locale.US, "matched: %d%n", matched);
+    if (matched == 0) {
+      return;
+    }
+    SimpleDateFormat format = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS", Locale.UK);
+    out.printf(Locale.US, "time: %s - %s%n", format.format(new Date(first)), format.format(new Date(last)));
+    out.println("levels:");
+    for (int i = LogQuery.LEVELS.length - 1; i >= 0; i--) {
+      if (levels[i] > 0) {
+        out.printf(Locale.US, "  %-8s %10d%n", LogQuery.LEVELS[i], levels[i]);
+      }
+    }
+    List<Map.Entry<String, long[]>> sorted = new ArrayList<>(tags.entrySet());
+    sorted.sort((e1, e2) -> Long.compare(e2.getValue()[0], e1.getValue()[0]));
+    out.printf(Locale.US, "tags: %d%n", sorted.size());
+    for (int i = 0; i < sorted.size() && i < topTags; i++) {
+      Map.Entry<String, long[]> entry = sorted.get(i);
+      out.printf(Locale.US, "  %10d  %s%n", entry.getValue()[0], entry.getKey());
+    }
+  }
+}
@@ -0,0 +1,190 @@
+package com.kit.log.cli;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.orhanobut.logger.CsvLogRecord;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * fork-join 线程池中的一个解析线程：不断从共享的分段队列中取出下一个分段解析，直到队列为空。
+ * <p>
+ * 同时运行的任务数就是线程数，每个任务同一时间只处理一个分段，内存占用与输入大小无关。
+ * 满足条件的日志在这里就渲染为输出行，按时间排序后写入临时文件（{@link SortedRun}），
+ * 内容超过 {@link #MAX_BUFFERED_CHARS} 时提前写出一组，合并时不再解析。
+ * 结果写入 results 中分段对应的位置，任务之间没有共享的可变状态。
+ */
+final class ParseTask extends RecursiveAction {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /**
+   * 一个任务在内存中最多缓存的输出字符数，超过后排序并写入临时文件
+   */
+  static final int MAX_BUFFERED_CHARS = 4 * 1024 * 1024;
+
+  @NonNull private final List<Segment> segments;
+  @NonNull private final AtomicInteger next; // 分段队列中下一个待解析的位置
+  @NonNull private final LogQuery query;
+  @Nullable private final RecordFormat format; // 为 null 时只统计，不保留日志
+  @NonNull private final File spillDir; // 临时文件所在目录
+  @NonNull private final Result[] results;
+
+  ParseTask(@NonNull List<Segment> segments, @NonNull AtomicInteger next, @NonNull LogQuery query,
+            @Nullable RecordFormat format, @NonNull File spillDir, @NonNull Result[] results) {
+    this.segments = segments;
+    this.next = next;
+    this.query = query;
+    this.format = format;
+    this.spillDir = spillDir;
+    this.results = results;
+  }
+
+  @Override protected void compute() {
+    Buffer buffer = format != null ? new Buffer() : null;
+    int index;
+    while ((index = next.getAndIncrement()) < segments.size()) {
+      try {
+        results[index] = parse(segments.get(index), buffer);
+      } catch (IOException e) {
+        // 临时文件写入失败，无法继续输出
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * @throws IOException 写临时文件失败；读取分段失败只记录在统计中
+   */
+  @NonNull private Result parse(@NonNull Segment segment, @Nullable Buffer buffer) throws IOException {
+    Result result = new Result();
+    LogStats stats = result.stats;
+    stats.segments = 1;
+    stats.bytes = segment.length;
+    StringBuilder builder = new StringBuilder(256);
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(segment.open(), UTF_8), 64 * 1024)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        stats.lines++;
+        long timestamp = LogQuery.leadingTimestamp(line);
+        if (timestamp >= 0 && !query.acceptTime(timestamp)) {
+          continue; // 时间范围之外的行不需要完整解析
+        }
+        CsvLogRecord record = CsvLogRecord.parse(line);
+        if (record == null) {
+          stats.malformed++;
+          continue;
+        }
+        if (!query.accept(record)) {
+          continue;
+        }
+        stats.onMatched(record);
+        if (buffer != null) {
+          builder.setLength(0);
+          format.render(record, builder);
+          buffer.add(record.timestamp, builder.toString());
+          if (buffer.chars >= MAX_BUFFERED_CHARS) {
+            result.runs.add(buffer.spill(spillDir));
+          }
+        }
+      }
+    } catch (IOException e) {
+      // 一个分段损坏不影响其他分段，已读取的部分保留
+      stats.failedSegments = 1;
+      System.err.println("logkit: failed to read " + segment + ": " + e.getMessage());
+    }
+    if (buffer != null && buffer.size > 0) {
+      result.runs.add(buffer.spill(spillDir));
+    }
+    return result;
+  }
+
+  /**
+   * 一个分段的解析结果：统计，以及按分段内顺序排列的若干组已排序的输出行
+   */
+  static final class Result {
+    @NonNull final LogStats stats = new LogStats();
+    @NonNull final List<SortedRun> runs = new ArrayList<>(1);
+  }
+
+  /**
+   * 还没有写入临时文件的输出行，渲染后的行与时间戳分别存放，每个任务一个，写出后复用
+   */
+  private static final class Buffer {
+    @NonNull long[] timestamps = new long[256];
+    @NonNull String[] lines = new String[256];
+    int size;
+    long chars;
+
+    void add(long timestamp, @NonNull String line) {
+      if (size == timestamps.length) {
+        timestamps = Arrays.copyOf(timestamps, size * 2);
+        lines = Arrays.copyOf(lines, size * 2);
+      }
+      timestamps[size] = timestamp;
+      lines[size] = line;
+      size++;
+      chars += line.length();
+    }
+
+    /**
+     * 按时间稳定排序后写入一个临时文件，然后清空
+     */
+    @NonNull SortedRun spill(@NonNull File dir) throws IOException {
+      int[] order = sortedOrder();
+      try (SortedRun.Writer writer = SortedRun.create(dir)) {
+        for (int i = 0; i < size; i++) {
+          int at = order != null ? order[i] : i;
+          byte[] bytes = lines[at].getBytes(UTF_8);
+          writer.write(timestamps[at], bytes, bytes.length);
+        }
+        Arrays.fill(lines, 0, size, null);
+        size = 0;
+        chars = 0;
+        return writer.finish();
+      }
+    }
+
+    /**
+     * 同一分段的日志通常已按时间写入，只有系统时间被调整过时才需要稳定排序
+     *
+     * @return 排序后的下标，已经有序时返回 null
+     */
+    @Nullable private int[] sortedOrder() {
+      boolean sorted = true;
+      for (int i = 1; i < size && sorted; i++) {
+        sorted = timestamps[i - 1] <= timestamps[i];
+      }
+      if (sorted) {
+        return null;
+      }
+      Integer[] order = new Integer[size];
+      for (int i = 0; i < size; i++) {
+        order[i] = i;
+      }
+      long[] keys = timestamps;
+      Arrays.sort(order, (i1, i2) -> Long.compare(keys[i1], keys[i2]));
+      int[] result = new int[size];
+      for (int i = 0; i < size; i++) {
+        result[i] = order[i];
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package com.kit.log.cli;
+
+import androidx.annotation.NonNull;
+
+import com.orhanobut.logger.CsvLogRecord;
+
+import java.util.Map;
+
+/**
+ * 输出格式。每条日志渲染为一行，渲染在解析线程中完成，合并时只需要按时间写出。
+ */
+enum RecordFormat {
+
+  /**
+   * {@code 2024.01.01 12:00:00.000 D/tag: message {k=v}}，与日志查看页面的显示一致，便于 grep
+   */
+  TEXT {
+    @Override void render(@NonNull CsvLogRecord record, @NonNull StringBuilder out) {
+      out.append(record.date).append(' ')
+          .append(record.level.isEmpty() ? '?' : record.level.charAt(0)).append('/')
+          .append(record.tag).append(": ")
+          .append(record.message);
+      if (!record.fields.isEmpty()) {
+        out.append(" {");
+        boolean first = true;
+        for (Map.Entry<String, String> field : record.fields.entrySet()) {
+          if (!first) {
+            out.append(", ");
+          }
+          first = false;
+          out.append(field.getKey()).append('=').append(field.getValue());
+        }
+        out.append('}');
+      }
+    }
+  },
+
+  /**
+   * JSON Lines，每行一个对象，消息中被替换掉的换行符会还原
+   */
+  JSONL {
+    @Override void render(@NonNull CsvLogRecord record, @NonNull StringBuilder out) {
+      out.append("{\"timestamp\":").append(record.timestamp);
+      out.append(",\"date\":");
+      string(record.date, out);
+      out.append(",\"level\":");
+      string(record.level, out);
+      out.append(",\"tag\":");
+      string(record.tag, out);
+      out.append(",\"message\":");
+      string(record.message.replace(NEW_LINE_REPLACEMENT, "\n"), out);
+      if (record.sequence >= 0) {
+        out.append(",\"sequence\":").append(record.sequence);
+      }
+      if (!record.fields.isEmpty()) {
+        out.append(",\"fields\":{");
+        boolean first = true;
+        for (Map.Entry<String, String> field : record.fields.entrySet()) {
+          if (!first) {
+            out.append(',');
+          }
+          first = false;
+          string(field.getKey(), out);
+          out.append(':');
+          string(field.getValue(), out);
+        }
+        out.append('}');
+      }
+      out.append('}');
+    }
+  };
+
+  /**
+   * 与 CsvFormatStrategy 写入时替换换行符的内容一致
+   */
+  private static final String NEW_LINE_REPLACEMENT = " <br> ";
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /**
+   * 把一条日志渲染到 out，不含换行符
+   */
+  abstract void render(@NonNull CsvLogRecord record, @NonNull StringBuilder out);
+
+  @NonNull static RecordFormat of(@NonNull String name) {
+    for (RecordFormat format : values()) {
+      if (format.name().equalsIgnoreCase(name)) {
+        return format;
+      }
+    }
+    throw new IllegalArgumentException("unknown format: " + name);
+  }
+
+  private static void string(@NonNull String value, @NonNull StringBuilder out) {
+    out.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          out.append("\\\"");
+          break;
+        case '\\':
+          out.append("\\\\");
+          break;
+        case '\n':
+          out.append("\\n");
+          break;
+        case '\r':
+          out.append("\\r");
+          break;
+        case '\t':
+          out.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+          } else {
+            out.append(c);
+          }
+          break;
+      }
+    }
+    out.append('"');
+  }
+}
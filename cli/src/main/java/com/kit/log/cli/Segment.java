@@ -0,0 +1,345 @@
+package com.kit.log.cli;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 一段可以独立解析的日志内容：某个文件（或 tar 归档中某个条目）里的一个字节区间。
+ * <p>
+ * 未压缩的 CSV 按 {@link #CHUNK_BYTES} 切成若干段，切分点都在换行符之后，各段可以并行解析；
+ * gzip 压缩的内容无法从中间开始解压，整个文件（条目）为一段。
+ * 支持的输入：目录（递归）、{@code .csv}、{@code .csv.gz}，以及日志导出生成的 {@code .tar} 归档，
+ * 归档中的条目直接按偏移读取，不需要先解包。
+ */
+final class Segment {
+
+  /**
+   * 未压缩内容每段的大小
+   */
+  static final long CHUNK_BYTES = 8L * 1024 * 1024;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int TAR_BLOCK = 512;
+  private static final String CSV = ".csv";
+  private static final String GZIP = ".gz";
+
+  /**
+   * 同一进程的分段按编号排列，文件内的各段按位置排列
+   */
+  static final Comparator<Segment> ORDER = (s1, s2) -> {
+    int result = s1.group.compareTo(s2.group);
+    if (result == 0) {
+      result = Integer.compare(s1.index, s2.index);
+    }
+    if (result == 0) {
+      result = Long.compare(s1.offset, s2.offset);
+    }
+    return result;
+  };
+
+  @NonNull final File file;
+  final long offset;
+  final long length;
+  final boolean gzip;
+  @NonNull final String name; // 显示名，归档中的条目为 "归档路径!条目名"
+  @NonNull final String group; // 所在目录（或归档）加基础文件名，同一进程的分段属于同一组
+  final int index; // 分段编号，无法识别时为 0
+
+  private Segment(@NonNull File file, long offset, long length, boolean gzip, @NonNull String name,
+                  @NonNull String group, int index) {
+    this.file = file;
+    this.offset = offset;
+    this.length = length;
+    this.gzip = gzip;
+    this.name = name;
+    this.group = group;
+    this.index = index;
+  }
+
+  /**
+   * 展开输入的文件和目录
+   *
+   * @return 按 {@link #ORDER} 排列的所有分段
+   * @throws IllegalArgumentException 直接指定的文件不存在或格式不支持
+   */
+  @NonNull static List<Segment> scan(@NonNull List<File> inputs) throws IOException {
+    List<Segment> segments = new ArrayList<>();
+    for (File input : inputs) {
+      if (!input.exists()) {
+        throw new IllegalArgumentException("no such file: " + input);
+      }
+      if (!add(input, segments) && !input.isDirectory()) {
+        throw new IllegalArgumentException("unsupported file: " + input);
+      }
+    }
+    segments.sort(ORDER);
+    return segments;
+  }
+
+  /**
+   * 打开这一段的内容，已解压
+   */
+  @NonNull InputStream open() throws IOException {
+    FileInputStream in = new FileInputStream(file);
+    try {
+      in.getChannel().position(offset);
+    } catch (IOException e) {
+      in.close();
+      throw e;
+    }
+    InputStream range = new RangeInputStream(in, length);
+    return gzip ? new GZIPInputStream(range, 64 * 1024) : range;
+  }
+
+  /**
+   * @return 是否是可以识别的日志文件
+   */
+  private static boolean add(@NonNull File input, @NonNull List<Segment> into) throws IOException {
+    if (input.isDirectory()) {
+      File[] children = input.listFiles();
+      if (children != null) {
+        for (File child : children) {
+          add(child, into); // 目录中的其他文件直接忽略
+        }
+      }
+      return false;
+    }
+    String name = input.getName();
+    String dir = String.valueOf(input.getAbsoluteFile().getParent());
+    if (name.endsWith(".tar")) {
+      addArchive(input, into);
+    } else if (name.endsWith(CSV)) {
+      addRanges(input, 0, input.length(), input.getPath(), dir, name, into);
+    } else if (name.endsWith(CSV + GZIP)) {
+      into.add(new Segment(input, 0, input.length(), true, input.getPath(), group(dir, name), index(name)));
+    } else {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * 读取 ustar 归档的条目头部，只记录每个日志条目的偏移和长度
+   */
+  private static void addArchive(@NonNull File archive, @NonNull List<Segment> into) throws IOException {
+    try (RandomAccessFile in = new RandomAccessFile(archive, "r")) {
+      byte[] header = new byte[TAR_BLOCK];
+      long position = 0;
+      long total = in.length();
+      while (position + TAR_BLOCK <= total) {
+        in.seek(position);
+        in.readFully(header);
+        if (isZero(header)) {
+          break; // 归档结束标记
+        }
+        String entry = string(header, 0, 100);
+        String prefix = string(header, 345, 155);
+        if (!prefix.isEmpty()) {
+          entry = prefix + '/' + entry;
+        }
+        long size = octal(header, 124, 12);
+        byte type = header[156];
+        long data = position + TAR_BLOCK;
+        if (data + size > total) {
+          throw new IOException("truncated archive: " + archive);
+        }
+        if (type == '0' || type == 0) {
+          int slash = entry.lastIndexOf('/');
+          String base = entry.substring(slash + 1);
+          String dir = archive.getPath() + '!' + (slash < 0 ? "" : entry.substring(0, slash));
+          String display = archive.getPath() + '!' + entry;
+          if (base.endsWith(CSV)) {
+            addRanges(archive, data, size, display, dir, base, into);
+          } else if (base.endsWith(CSV + GZIP)) {
+            into.add(new Segment(archive, data, size, true, display, group(dir, base), index(base)));
+          }
+        }
+        position = data + (size + TAR_BLOCK - 1) / TAR_BLOCK * TAR_BLOCK;
+      }
+    }
+  }
+
+  /**
+   * 把 [offset, offset + length) 按换行符切成若干段
+   */
+  private static void addRanges(@NonNull File file, long offset, long length, @NonNull String display,
+                                @NonNull String dir, @NonNull String name, @NonNull List<Segment> into)
+      throws IOException {
+    if (length <= 0) {
+      return;
+    }
+    String group = group(dir, name);
+    int index = index(name);
+    long end = offset + length;
+    long start = offset;
+    try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+      while (start < end) {
+        long split = end - start <= CHUNK_BYTES ? end : nextLine(in, start + CHUNK_BYTES, end);
+        into.add(new Segment(file, start, split - start, false, display, group, index));
+        start = split;
+      }
+    }
+  }
+
+  /**
+   * position 之后第一个换行符的下一个位置，没有时返回 end。
+   * UTF-8 多字节字符中不会出现 '\n' 的字节，按字节查找是安全的
+   */
+  private static long nextLine(@NonNull RandomAccessFile in, long position, long end) throws IOException {
+    byte[] buffer = new byte[8192];
+    in.seek(position);
+    while (position < end) {
+      int read = in.read(buffer, 0, (int) Math.min(buffer.length, end - position));
+      if (read <= 0) {
+        return end;
+      }
+      for (int i = 0; i < read; i++) {
+        if (buffer[i] == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += read;
+    }
+    return end;
+  }
+
+  /**
+   * 分段文件名为 {@code <基础文件名>_<编号>.csv[.gz]}，同一目录下基础文件名相同的属于同一进程
+   */
+  @NonNull private static String group(@NonNull String dir, @NonNull String name) {
+    String base = stripExtension(name);
+    int separator = indexSeparator(base);
+    return dir + '/' + (separator < 0 ? base : base.substring(0, separator));
+  }
+
+  private static int index(@NonNull String name) {
+    String base = stripExtension(name);
+    int separator = indexSeparator(base);
+    if (separator < 0) {
+      return 0;
+    }
+    try {
+      return Integer.parseInt(base.substring(separator + 1));
+    } catch (NumberFormatException e) {
+      return 0; // 编号过长
+    }
+  }
+
+  /**
+   * 基础文件名和编号之间的 '_' 的位置，文件名不是这种格式时返回 -1
+   */
+  private static int indexSeparator(@NonNull String base) {
+    int separator = base.lastIndexOf('_');
+    if (separator <= 0 || separator == base.length() - 1) {
+      return -1;
+    }
+    for (int i = separator + 1; i < base.length(); i++) {
+      char c = base.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+    }
+    return separator;
+  }
+
+  @NonNull private static String stripExtension(@NonNull String name) {
+    if (name.endsWith(GZIP)) {
+      name = name.substring(0, name.length() - GZIP.length());
+    }
+    return name.endsWith(CSV) ? name.substring(0, name.length() - CSV.length()) : name;
+  }
+
+  private static boolean isZero(@NonNull byte[] block) {
+    for (byte b : block) {
+      if (b != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @NonNull private static String string(@NonNull byte[] header, int start, int length) {
+    int end = start;
+    while (end < start + length && header[end] != 0) {
+      end++;
+    }
+    return new String(header, start, end - start, UTF_8);
+  }
+
+  private static long octal(@NonNull byte[] header, int start, int length) throws IOException {
+    long value = 0;
+    for (int i = start; i < start + length; i++) {
+      byte b = header[i];
+      if (b == 0 || b == ' ') {
+        if (value > 0) {
+          break;
+        }
+        continue;
+      }
+      if (b < '0' || b > '7') {
+        throw new IOException("bad tar header");
+      }
+      value = value * 8 + (b - '0');
+    }
+    return value;
+  }
+
+  @NonNull @Override public String toString() {
+    return length < CHUNK_BYTES || gzip ? name : name + "@" + offset;
+  }
+
+  /**
+   * 只读取底层流的前 limit 个字节
+   */
+  private static final class RangeInputStream extends FilterInputStream {
+    private long remaining;
+
+    RangeInputStream(@NonNull InputStream in, long limit) {
+      super(in);
+      this.remaining = limit;
+    }
+
+    @Override public int read() throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int b = super.read();
+      if (b >= 0) {
+        remaining--;
+      }
+      return b;
+    }
+
+    @Override public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+      if (read > 0) {
+        remaining -= read;
+      }
+      return read;
+    }
+
+    @Override public long skip(long n) throws IOException {
+      long skipped = super.skip(Math.min(n, remaining));
+      remaining -= skipped;
+      return skipped;
+    }
+
+    @Override public int available() throws IOException {
+      return (int) Math.min(super.available(), remaining);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package com.kit.log.cli;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 写到临时文件中的一组按时间排序的输出行，合并时逐条读回，内存中只保留当前一条。
+ * <p>
+ * 每条记录为 {@code 时间戳(long) 长度(int) UTF-8 内容}，内容不含换行符。
+ */
+final class SortedRun {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  @NonNull final File file;
+  final long count; // 记录条数
+
+  SortedRun(@NonNull File file, long count) {
+    this.file = file;
+    this.count = count;
+  }
+
+  /**
+   * 在 dir 中新建一个临时文件，用于写入一组排序好的记录
+   */
+  @NonNull static Writer create(@NonNull File dir) throws IOException {
+    return new Writer(File.createTempFile("run", ".bin", dir));
+  }
+
+  @NonNull Reader open() throws IOException {
+    return new Reader(new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)));
+  }
+
+  void delete() {
+    file.delete();
+  }
+
+  /**
+   * 按时间顺序追加记录，关闭后通过 {@link #finish()} 得到对应的 {@link SortedRun}
+   */
+  static final class Writer implements Closeable {
+    @NonNull private final File file;
+    @NonNull private final DataOutputStream out;
+    private long count;
+
+    private Writer(@NonNull File file) throws IOException {
+      this.file = file;
+      this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+    }
+
+    void write(long timestamp, @NonNull byte[] line, int length) throws IOException {
+      out.writeLong(timestamp);
+      out.writeInt(length);
+      out.write(line, 0, length);
+      count++;
+    }
+
+    @NonNull SortedRun finish() throws IOException {
+      out.close();
+      return new SortedRun(file, count);
+    }
+
+    @Override public void close() throws IOException {
+      out.close();
+    }
+  }
+
+  /**
+   * 逐条读取记录，{@link #next()} 之后 {@link #timestamp} 和 {@link #line} 指向当前记录
+   */
+  static final class Reader implements Closeable {
+    @NonNull private final DataInputStream in;
+    long timestamp;
+    @NonNull byte[] line = new byte[256]; // 复用的缓冲区，只有前 length 个字节有效
+    int length;
+
+    private Reader(@NonNull DataInputStream in) {
+      this.in = in;
+    }
+
+    /**
+     * @return 是否读到了下一条记录
+     */
+    boolean next() throws IOException {
+      try {
+        timestamp = in.readLong();
+      } catch (EOFException e) {
+        return false;
+      }
+      length = in.readInt();
+      if (length > line.length) {
+        line = new byte[Math.max(length, line.length * 2)];
+      }
+      in.readFully(line, 0, length);
+      return true;
+    }
+
+    /**
+     * 把当前记录的内容写出
+     */
+    void copyTo(@NonNull OutputStream out) throws IOException {
+      out.write(line, 0, length);
+    }
+
+    @Override public void close() throws IOException {
+      in.close();
+    }
+  }
+}
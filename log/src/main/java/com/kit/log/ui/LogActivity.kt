@@ -1,6 +1,7 @@
 package com.kit.log.ui
 
 import android.app.Activity
+import android.app.AlertDialog
 import android.content.ClipData
 import android.content.ClipboardManager
 import android.content.Context
@@ -10,6 +11,7 @@ import android.view.GestureDetector
 import android.view.MotionEvent
 import android.view.View
 import android.widget.ImageView
+import android.widget.TextView
 import android.widget.Toast
 import androidx.activity.ComponentActivity
 import androidx.activity.viewModels
@@ -17,16 +19,23 @@ import androidx.lifecycle.lifecycleScope
 import androidx.recyclerview.widget.LinearLayoutManager
 import androidx.recyclerview.widget.RecyclerView
 import com.kit.log.R
+import com.orhanobut.logger.LogKit
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.collectLatest
+import kotlinx.coroutines.isActive
 import kotlinx.coroutines.launch
 
 internal class LogActivity : ComponentActivity() {
 
     private val viewModel by viewModels<LogViewModel>()
-    private val logAdapter = LogAdapter()
+    private val logAdapter = LogAdapter { showTrace(it) }
     private lateinit var tagAdapter: TagAdapter
     private lateinit var rcyLog: RecyclerView
     private lateinit var rcyTag: RecyclerView
+    private lateinit var tvMetrics: TextView
+    private lateinit var tvTail: TextView
+    private var metricsJob: Job? = null
 
 
     override fun onCreate(savedInstanceState: Bundle?) {
@@ -42,6 +51,8 @@ internal class LogActivity : ComponentActivity() {
         }
         rcyLog = findViewById(R.id.rcy_log)
         rcyTag = findViewById(R.id.rcy_tag)
+        tvMetrics = findViewById(R.id.tv_metrics)
+        tvTail = findViewById(R.id.tv_tail)
         rcyLog.apply {
             layoutManager = LinearLayoutManager(context, RecyclerView.VERTICAL, false)
             adapter = logAdapter
@@ -52,6 +63,8 @@ internal class LogActivity : ComponentActivity() {
         }
         findViewById<ImageView>(R.id.iv_back).setOnClickListener { finish() }
         findViewById<ImageView>(R.id.iv_menu).setOnClickListener { clickMenu() }
+        findViewById<TextView>(R.id.tv_metrics_toggle).setOnClickListener { clickMetrics() }
+        tvTail.setOnClickListener { viewModel.setTailing(!viewModel.tailingMSF.value) }
     }
 
 
@@ -68,6 +81,40 @@ internal class LogActivity : ComponentActivity() {
         }
     }
 
+    private fun showTrace(id: String) {
+        viewModel.findTrace(id) { trace ->
+            if (isFinishing) {
+                return@findTrace
+            }
+            if (trace == null) {
+                Toast.makeText(this, "未找到异常 $id 的完整堆栈", Toast.LENGTH_SHORT).show()
+                return@findTrace
+            }
+            AlertDialog.Builder(this)
+                .setTitle(id)
+                .setMessage(trace)
+                .setPositiveButton(android.R.string.ok, null)
+                .show()
+        }
+    }
+
+    //打开后每秒刷新一次日志管道的运行指标
+    private fun clickMetrics() {
+        if (tvMetrics.visibility == View.VISIBLE) {
+            tvMetrics.visibility = View.GONE
+            metricsJob?.cancel()
+            metricsJob = null
+            return
+        }
+        tvMetrics.visibility = View.VISIBLE
+        metricsJob = lifecycleScope.launch {
+            while (isActive) {
+                tvMetrics.text = LogKit.metrics().toString()
+                delay(METRICS_REFRESH_MS)
+            }
+        }
+    }
+
     private fun initData() {
         lifecycleScope.launch {
             viewModel.tagMSF.collectLatest {
@@ -76,11 +123,26 @@ internal class LogActivity : ComponentActivity() {
         }
         lifecycleScope.launch {
             viewModel.logMSF.collectLatest {
+                // 停留在最新一条时，实时追加的日志自动滚动到可见位置
+                val atNewest = !rcyLog.canScrollVertically(-1)
                 logAdapter.update(it)
+                if (atNewest && viewModel.tailingMSF.value) {
+                    rcyLog.scrollToPosition(0)
+                }
+            }
+        }
+        lifecycleScope.launch {
+            viewModel.tailingMSF.collectLatest {
+                tvTail.text = if (it) "实时" else "已暂停"
             }
         }
     }
 
+    override fun onTrimMemory(level: Int) {
+        super.onTrimMemory(level)
+        viewModel.trimMemory(level)
+    }
+
     override fun finish() {
         super.finish()
         overridePendingTransition(
@@ -90,6 +152,8 @@ internal class LogActivity : ComponentActivity() {
     }
 
     companion object {
+        private const val METRICS_REFRESH_MS = 1000L
+
         fun startActivity(activity: Activity) {
             val intent = Intent(activity, LogActivity::class.java)
             activity.startActivity(intent)
@@ -14,15 +14,49 @@ import android.widget.TextView
 import android.widget.Toast
 import androidx.recyclerview.widget.RecyclerView
 import com.kit.log.R
+import com.orhanobut.logger.ThrowableFingerprints
 import com.orhanobut.logger.Utils
 
-class LogAdapter : RecyclerView.Adapter<LogAdapter.VH>() {
+/**
+ * @param onTraceClick 点击包含异常引用标记的日志时回调指纹 id
+ */
+class LogAdapter(private val onTraceClick: (id: String) -> Unit) : RecyclerView.Adapter<LogAdapter.VH>() {
 
-    private var dataList: List<LogInfo> = emptyList()
+    private var snapshot: LogSnapshot = LogSnapshot.EMPTY
 
-    fun update(data: List<LogInfo>) {
-        dataList = data
-        notifyDataSetChanged()
+    init {
+        setHasStableIds(true)
+    }
+
+    /**
+     * 切换到新的快照，只通知变化的范围。
+     *
+     * 同一筛选条件下的两个快照只可能在最前面新增、在最后面淘汰若干行（行 id 单调递增），
+     * 直接比较首尾 id 即可得到差异，不需要像 DiffUtil 那样逐行生成并比较所有数据。
+     */
+    fun update(data: LogSnapshot) {
+        val old = snapshot
+        snapshot = data
+        if (old.filterTag != data.filterTag || old.size == 0 || data.size == 0) {
+            notifyDataSetChanged()
+            return
+        }
+        val inserted = data.positionOf(old.id(0))
+        if (inserted < 0) {
+            notifyDataSetChanged()
+            return
+        }
+        val removed = old.size - (data.size - inserted)
+        if (removed > 0) {
+            notifyItemRangeRemoved(old.size - removed, removed)
+        }
+        if (inserted > 0) {
+            notifyItemRangeInserted(0, inserted)
+        }
+    }
+
+    override fun getItemId(position: Int): Long {
+        return snapshot.id(position)
     }
 
     @SuppressLint("ClickableViewAccessibility")
@@ -33,13 +67,25 @@ class LogAdapter : RecyclerView.Adapter<LogAdapter.VH>() {
         recyclerView.setOnTouchListener(object : View.OnTouchListener {
             val gestureDetector =
                 GestureDetector(context, object : GestureDetector.SimpleOnGestureListener() {
+                    override fun onSingleTapUp(e: MotionEvent): Boolean {
+                        val childView = recyclerView.findChildViewUnder(e.x, e.y) ?: return false
+                        val position = recyclerView.getChildAdapterPosition(childView)
+                        if (position == RecyclerView.NO_POSITION) {
+                            return false
+                        }
+                        // 点击异常引用时展开第一次出现时的完整堆栈
+                        val id = ThrowableFingerprints.referenceId(snapshot.message(position)) ?: return false
+                        onTraceClick.invoke(id)
+                        return true
+                    }
+
                     override fun onLongPress(e: MotionEvent) {
                         super.onLongPress(e)
                         val childView = recyclerView.findChildViewUnder(e.x, e.y)
                         if (childView != null) {
                             val position = recyclerView.getChildAdapterPosition(childView)
                             if (position != RecyclerView.NO_POSITION) {
-                                val itemText = dataList.get(position).message
+                                val itemText = snapshot.message(position)
                                 copyToClipboard(recyclerView, itemText)
                             }
                         }
@@ -68,11 +114,12 @@ class LogAdapter : RecyclerView.Adapter<LogAdapter.VH>() {
     }
 
     override fun onBindViewHolder(holder: VH, position: Int) {
-        holder.updateItemView(dataList[position])
+        // 只为可见的行生成完整数据
+        holder.updateItemView(snapshot[position])
     }
 
     override fun getItemCount(): Int {
-        return dataList.size
+        return snapshot.size
     }
 
 
@@ -81,6 +128,13 @@ class LogAdapter : RecyclerView.Adapter<LogAdapter.VH>() {
             itemView.findViewById<TextView>(R.id.tv_tag).text = data.tag
             itemView.findViewById<TextView>(R.id.tv_date).text = data.dateString
             itemView.findViewById<TextView>(R.id.tv_msg).text = data.message
+            val fieldsView = itemView.findViewById<TextView>(R.id.tv_fields)
+            if (data.fields.isEmpty()) {
+                fieldsView.visibility = View.GONE
+            } else {
+                fieldsView.visibility = View.VISIBLE
+                fieldsView.text = data.fields.entries.joinToString("  ") { "${it.key}=${it.value}" }
+            }
             val color = when (Utils.logLevel(data.priority)) {
                 Utils.VERBOSE -> {
                     itemView.resources.getColor(R.color.verbose)
@@ -1,9 +1,11 @@
 package com.kit.log.ui
 
 data class LogInfo(
+  val id: Long,           //稳定 id，用于列表差量更新
   val date: Long,         //时间戳
   val dateString: String, //时间
   val priority: String,      //日志级别
   val tag: String,        //标签
-  val message: String     //内容
+  val message: String,    //内容
+  val fields: Map<String, String> = emptyMap() //结构化日志的键值对
 )
\ No newline at end of file
@@ -0,0 +1,241 @@
+package com.kit.log.ui
+
+import com.orhanobut.logger.CsvLogRecord
+import com.orhanobut.logger.Utils
+import java.text.SimpleDateFormat
+import java.util.Locale
+
+/**
+ * 日志查看页面使用的列式内存模型。
+ *
+ * 每条日志只占用几个基本类型数组中的一格：时间戳 `long[]`、级别 `byte[]`、标签 id `int[]`，
+ * 消息内容追加到同一个共享的 `char[]` 中，只记录起始偏移；标签字符串只保存一份，
+ * 可读时间在展示时再由时间戳格式化。需要展示时通过 [LogSnapshot] 按行生成 [LogInfo]。
+ *
+ * 数组只追加，扩容和淘汰旧数据时创建新数组，所以已经发出的快照不受之后写入的影响；
+ * 键值对表会随淘汰和清空而修改，生成快照时复制一份。写入和生成快照需要由调用方加锁，快照可以在任意线程读取。
+ *
+ * @param maxRows 最多保留的行数，超出后丢弃最旧的
+ */
+internal class LogStore(maxRows: Int) {
+
+    //最多保留的行数，内存紧张时可以临时调低
+    var maxRows = maxRows
+
+    private var timestamps = LongArray(INITIAL_ROWS)
+    private var levels = ByteArray(INITIAL_ROWS)
+    private var tagIds = IntArray(INITIAL_ROWS)
+    private var messageStarts = IntArray(INITIAL_ROWS + 1) //第 i 行消息为 text[messageStarts[i], messageStarts[i + 1])
+    private var text = CharArray(INITIAL_ROWS * 64)
+    private var size = 0
+
+    //第 0 行的 id，行 id 为 baseId + 行号，淘汰旧数据后保持不变
+    private var baseId = 0L
+
+    //标签字符串表，标签 id 为下标
+    private val tagNames = ArrayList<String>()
+    private val tagIndex = HashMap<String, Int>()
+
+    //只有少数日志带键值对，按行 id 稀疏保存
+    private val fields = HashMap<Long, Map<String, String>>()
+
+    /**
+     * 按时间顺序追加一行
+     *
+     * @return 格式不正确时返回 false
+     */
+    fun add(line: String): Boolean {
+        val record = CsvLogRecord.parse(line) ?: return false
+        if (size == timestamps.size) {
+            grow()
+        }
+        val message = record.message
+        val start = messageStarts[size]
+        if (start + message.length > text.size) {
+            text = text.copyOf(maxOf(text.size * 2, start + message.length))
+        }
+        message.toCharArray(text, start, 0, message.length)
+        timestamps[size] = record.timestamp
+        levels[size] = Utils.logLevel(record.level).toByte()
+        tagIds[size] = tagIndex.getOrPut(record.tag) {
+            tagNames.add(record.tag)
+            tagNames.size - 1
+        }
+        messageStarts[size + 1] = start + message.length
+        if (record.fields.isNotEmpty()) {
+            fields[baseId + size] = record.fields
+        }
+        size++
+        if (size >= maxRows + maxRows / 4) {
+            evict(size - maxRows)
+        }
+        return true
+    }
+
+    fun clear() {
+        timestamps = LongArray(INITIAL_ROWS)
+        levels = ByteArray(INITIAL_ROWS)
+        tagIds = IntArray(INITIAL_ROWS)
+        messageStarts = IntArray(INITIAL_ROWS + 1)
+        text = CharArray(INITIAL_ROWS * 64)
+        baseId += size
+        size = 0
+        tagNames.clear()
+        tagIndex.clear()
+        fields.clear()
+    }
+
+    /**
+     * 只保留最新的 rows 行，数组按剩余的数据重新分配；内存紧张时调用
+     */
+    fun trimTo(rows: Int) {
+        evict(maxOf(0, size - rows))
+    }
+
+    /**
+     * 所有出现过的标签，按首次出现的顺序
+     */
+    fun tags(): List<String> = tagNames.toList()
+
+    fun tagCount(): Int = tagNames.size
+
+    /**
+     * 生成当前数据的只读快照，最新的一行在最前面
+     *
+     * @param filterTag 只包含该标签的日志，null 表示全部
+     */
+    fun snapshot(filterTag: String?): LogSnapshot {
+        var rows: IntArray? = null
+        if (filterTag != null) {
+            val tagId = tagIndex[filterTag] ?: -1
+            var count = 0
+            for (i in 0 until size) {
+                if (tagIds[i] == tagId) count++
+            }
+            rows = IntArray(count)
+            var n = 0
+            for (i in 0 until size) {
+                if (tagIds[i] == tagId) rows[n++] = i
+            }
+        }
+        return LogSnapshot(
+            filterTag, timestamps, levels, tagIds, messageStarts, text, size, baseId,
+            tagNames.toTypedArray(), if (fields.isEmpty()) emptyMap() else HashMap(fields), rows
+        )
+    }
+
+    private fun grow() {
+        val capacity = timestamps.size * 2
+        timestamps = timestamps.copyOf(capacity)
+        levels = levels.copyOf(capacity)
+        tagIds = tagIds.copyOf(capacity)
+        messageStarts = messageStarts.copyOf(capacity + 1)
+    }
+
+    /**
+     * 丢弃最旧的 count 行，复制到新数组中
+     */
+    private fun evict(count: Int) {
+        val remain = size - count
+        val capacity = maxOf(INITIAL_ROWS, remain * 2)
+        val offset = messageStarts[count]
+        val textEnd = messageStarts[size]
+        val newStarts = IntArray(capacity + 1)
+        for (i in 0..remain) {
+            newStarts[i] = messageStarts[count + i] - offset
+        }
+        timestamps = timestamps.copyOfRange(count, size).copyOf(capacity)
+        levels = levels.copyOfRange(count, size).copyOf(capacity)
+        tagIds = tagIds.copyOfRange(count, size).copyOf(capacity)
+        messageStarts = newStarts
+        text = text.copyOfRange(offset, textEnd).copyOf(maxOf(INITIAL_ROWS * 64, (textEnd - offset) * 2))
+        for (i in 0 until count) {
+            fields.remove(baseId + i)
+        }
+        baseId += count
+        size = remain
+    }
+
+    companion object {
+        private const val INITIAL_ROWS = 256
+    }
+}
+
+/**
+ * [LogStore] 某一时刻的只读视图，按需生成每一行的 [LogInfo]，最新的一行位置为 0。
+ */
+class LogSnapshot internal constructor(
+    val filterTag: String?,
+    private val timestamps: LongArray,
+    private val levels: ByteArray,
+    private val tagIds: IntArray,
+    private val messageStarts: IntArray,
+    private val text: CharArray,
+    private val count: Int,
+    private val baseId: Long,
+    private val tagNames: Array<String>,
+    private val fields: Map<Long, Map<String, String>>,
+    private val rows: IntArray?
+) {
+
+    val size: Int
+        get() = rows?.size ?: count
+
+    /**
+     * 行 id，位置越靠前 id 越大
+     */
+    fun id(position: Int): Long = baseId + row(position)
+
+    fun message(position: Int): String {
+        val row = row(position)
+        return String(text, messageStarts[row], messageStarts[row + 1] - messageStarts[row])
+    }
+
+    /**
+     * 生成一行的完整数据，只应为可见的行调用
+     */
+    operator fun get(position: Int): LogInfo {
+        val row = row(position)
+        val id = baseId + row
+        return LogInfo(
+            id,
+            timestamps[row],
+            DATE_FORMAT.get()!!.format(timestamps[row]),
+            Utils.logLevel(levels[row].toInt()),
+            tagNames[tagIds[row]],
+            message(position),
+            fields[id] ?: emptyMap()
+        )
+    }
+
+    /**
+     * 查找 id 所在的位置，不存在时返回 -1
+     */
+    fun positionOf(id: Long): Int {
+        var low = 0
+        var high = size - 1
+        while (low <= high) {
+            val mid = (low + high) ushr 1
+            val midId = id(mid)
+            when {
+                midId > id -> low = mid + 1
+                midId < id -> high = mid - 1
+                else -> return mid
+            }
+        }
+        return -1
+    }
+
+    private fun row(position: Int): Int {
+        return rows?.let { it[it.size - 1 - position] } ?: (count - 1 - position)
+    }
+
+    companion object {
+        val EMPTY = LogStore(1).snapshot(null)
+
+        //与 CsvFormatStrategy 默认的日期格式一致
+        private val DATE_FORMAT = object : ThreadLocal<SimpleDateFormat>() {
+            override fun initialValue() = SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS", Locale.UK)
+        }
+    }
+}
@@ -1,67 +1,231 @@
 package com.kit.log.ui
 
-import android.util.Log
+import android.content.ComponentCallbacks2
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
+import com.orhanobut.logger.CsvLogRecord
 import com.orhanobut.logger.LogKit
+import com.orhanobut.logger.ThrowableFingerprints
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.*
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import java.io.Closeable
+import java.util.concurrent.ConcurrentLinkedQueue
 
 class LogViewModel : ViewModel() {
 
-    //log数据
-    private val logs = mutableListOf<LogInfo>()
+    //log数据，列式存储，只在持有 logs 锁时写入
+    private val logs = LogStore(MAX_LOGS)
 
-    //tag数据
-    private val tags = linkedSetOf<String>()
+    //当前筛选的标签
+    @Volatile
+    private var filterTag = TAG_SHOW_ALL_LOG
+
+    //实时接收到、尚未加入列表的日志行
+    private val pendingLines = ConcurrentLinkedQueue<String>()
+
+    //有新日志行时发出信号，多次信号合并为一次
+    private val tailSignal = MutableSharedFlow<Unit>(
+        extraBufferCapacity = 1,
+        onBufferOverflow = BufferOverflow.DROP_OLDEST
+    )
+
+    private var tail: Closeable? = null
+
+    //完整读取结果是否已经写入存储；读取在独立线程进行，之前收到的新日志行先留在 pendingLines 中
+    @Volatile
+    private var loaded = false
 
     //需要展示的标签
     val tagMSF: MutableStateFlow<List<String>> = MutableStateFlow(emptyList())
 
     //需要展示的Log
-    val logMSF: MutableStateFlow<List<LogInfo>> = MutableStateFlow(emptyList())
+    val logMSF: MutableStateFlow<LogSnapshot> = MutableStateFlow(LogSnapshot.EMPTY)
+
+    //是否实时追加新日志，暂停时新日志先缓存起来
+    val tailingMSF: MutableStateFlow<Boolean> = MutableStateFlow(true)
 
     init {
-        LogKit.readLog { result ->
-            logs.clear()
-            tags.clear()
-            tags.add(TAG_SHOW_ALL_LOG)
-            result.forEach { line ->
-                val oneLogLine = line.split(",", limit = 5)
-                val oneLogInfo = LogInfo(
-                    oneLogLine[0].toLong(),
-                    oneLogLine[1],
-                    oneLogLine[2],
-                    oneLogLine[3],
-                    oneLogLine.getOrNull(4) ?: ""
-                )
-                logs.add(oneLogInfo)
-                tags.add(oneLogInfo.tag)
+        // 先用内存中最近的日志尽快显示，完整结果读取完成后再替换；解析在后台进行，不占用主线程
+        viewModelScope.launch(Dispatchers.Default) {
+            val recent = LogKit.recentLogs()
+            if (recent.isEmpty()) {
+                return@launch
+            }
+            synchronized(logs) {
+                // 完整结果已经先写入时不再覆盖
+                if (loaded) {
+                    return@launch
+                }
+                for (i in recent.indices.reversed()) {
+                    logs.add(recent[i])
+                }
             }
             loadTag()
-            loadLog()
+            loadLog(filterTag)
+        }
+        tail = LogKit.readLog({ result ->
+            synchronized(logs) {
+                logs.clear()
+                // 读取结果最新的在前，按时间顺序写入
+                for (i in result.indices.reversed()) {
+                    logs.add(result[i])
+                }
+                loaded = true
+            }
+            loadTag()
+            loadLog(filterTag)
+            // 读取期间写入的日志行不在读取结果中，由 tail 补上
+            tailSignal.tryEmit(Unit)
+        }, { line ->
+            // 在磁盘写线程回调，只入队，不做解析
+            if (pendingLines.size < MAX_LOGS) {
+                pendingLines.offer(line)
+            }
+            tailSignal.tryEmit(Unit)
+        })
+        viewModelScope.launch(Dispatchers.Default) {
+            tailSignal.collect {
+                // 短时间内写入的多行合并为一次列表更新
+                delay(TAIL_BATCH_MS)
+                if (tailingMSF.value) {
+                    appendPending()
+                }
+            }
         }
     }
 
+    fun setTailing(tailing: Boolean) {
+        tailingMSF.value = tailing
+        if (tailing) {
+            viewModelScope.launch(Dispatchers.Default) { appendPending() }
+        }
+    }
+
+    /**
+     * 把缓存的新日志追加到存储中，发出新的快照，列表只插入新增的行
+     */
+    private suspend fun appendPending() {
+        if (!loaded) {
+            return
+        }
+        var added = false
+        var newTags: List<String>? = null
+        synchronized(logs) {
+            // 内存紧张期间只保留较少的行，压力解除后恢复
+            logs.maxRows = if (LogKit.isUnderMemoryPressure()) PRESSURE_LOGS else MAX_LOGS
+            val tagCount = logs.tagCount()
+            while (true) {
+                val line = pendingLines.poll() ?: break
+                added = logs.add(line) || added
+            }
+            if (logs.tagCount() != tagCount) {
+                newTags = logs.tags()
+            }
+        }
+        if (!added) {
+            return
+        }
+        newTags?.let { tagMSF.emit(listOf(TAG_SHOW_ALL_LOG) + it) }
+        logMSF.emit(snapshot(filterTag))
+    }
+
+    /**
+     * 系统要求释放内存时丢弃较旧的日志：一般紧张时保留 [PRESSURE_LOGS] 行，进程可能被回收时只保留 [MIN_LOGS] 行
+     */
+    fun trimMemory(level: Int) {
+        val keep = when {
+            level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                    || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL -> MIN_LOGS
+            level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                    || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW -> PRESSURE_LOGS
+            else -> return
+        }
+        synchronized(logs) {
+            logs.maxRows = keep
+            logs.trimTo(keep)
+        }
+        // 暂停期间缓存的新日志同样只保留最新的部分
+        repeat(pendingLines.size - keep) {
+            pendingLines.poll()
+        }
+        loadLog(filterTag)
+    }
+
     fun loadLog(filterTag: String = TAG_SHOW_ALL_LOG) {
+        this.filterTag = filterTag
+        viewModelScope.launch(Dispatchers.IO) {
+            logMSF.emit(snapshot(filterTag))
+        }
+    }
+
+    private fun snapshot(filterTag: String): LogSnapshot {
+        synchronized(logs) {
+            return logs.snapshot(if (filterTag == TAG_SHOW_ALL_LOG) null else filterTag)
+        }
+    }
+
+    /**
+     * 展开异常引用：先在已加载的日志中查找完整堆栈，找不到再到磁盘中查找
+     *
+     * @param id 指纹 id
+     * @param callback 在主线程回调堆栈内容，找不到时为 null
+     */
+    fun findTrace(id: String, callback: (String?) -> Unit) {
         viewModelScope.launch(Dispatchers.IO) {
-            if (filterTag == TAG_SHOW_ALL_LOG) {
-                logMSF.emit(logs)
-            } else {
-                logMSF.emit(logs.filter { it.tag == filterTag })
+            val all = snapshot(TAG_SHOW_ALL_LOG)
+            val loaded = (0 until all.size).asSequence()
+                .map { all.message(it) }
+                .firstOrNull { ThrowableFingerprints.isDefinition(it, id) }
+            if (loaded != null) {
+                withContext(Dispatchers.Main) { callback.invoke(toDisplayText(loaded)) }
+                return@launch
+            }
+            LogKit.findTrace(id) { line ->
+                val message = CsvLogRecord.parse(line)?.message
+                viewModelScope.launch(Dispatchers.Main) {
+                    callback.invoke(message?.let { toDisplayText(it) })
+                }
             }
         }
     }
 
+    private fun toDisplayText(message: String): String {
+        return message.replace(NEW_LINE_REPLACEMENT, "\n")
+    }
+
     fun loadTag() {
         viewModelScope.launch(Dispatchers.IO) {
-            tagMSF.emit(tags.toList())
+            tagMSF.emit(listOf(TAG_SHOW_ALL_LOG) + synchronized(logs) { logs.tags() })
         }
     }
 
+    override fun onCleared() {
+        super.onCleared()
+        tail?.close()
+        tail = null
+    }
+
 
     companion object {
         const val TAG_SHOW_ALL_LOG = "ALL TAG"
+
+        //与 CsvFormatStrategy 写入时替换换行符的内容一致
+        private const val NEW_LINE_REPLACEMENT = " <br> "
+
+        //最多保留的日志条数，实时追加超出后丢弃最旧的
+        private const val MAX_LOGS = 20_000
+
+        //内存紧张时保留的日志条数
+        private const val PRESSURE_LOGS = MAX_LOGS / 4
+
+        //进程可能被回收时保留的日志条数
+        private const val MIN_LOGS = 1_000
+
+        //实时追加的合并间隔
+        private const val TAIL_BATCH_MS = 200L
     }
-}
\ No newline at end of file
+}
@@ -1,23 +1,36 @@
 package com.kit.log.ui
 
-import android.annotation.SuppressLint
 import android.view.LayoutInflater
 import android.view.View
 import android.view.ViewGroup
 import android.widget.TextView
+import androidx.recyclerview.widget.DiffUtil
+import androidx.recyclerview.widget.ListAdapter
 import androidx.recyclerview.widget.RecyclerView
 import com.kit.log.R
 
 class TagAdapter(private val callback: (tag: String) -> Unit) :
-  RecyclerView.Adapter<TagAdapter.VH>() {
+  ListAdapter<String, TagAdapter.VH>(DIFF_CALLBACK) {
 
-  private var dataList: List<String> = emptyList()
-  private var selectPosition = 0
+  //选中的标签，按内容记录，列表变化后仍然有效
+  private var selectedTag: String? = null
+
+  //每个标签的稳定 id
+  private val ids = HashMap<String, Long>()
+
+  init {
+    setHasStableIds(true)
+  }
 
   fun update(data: List<String>) {
-    dataList = data
-    selectPosition = 0
-    notifyDataSetChanged()
+    if (selectedTag == null || selectedTag !in data) {
+      selectedTag = data.firstOrNull()
+    }
+    submitList(data)
+  }
+
+  override fun getItemId(position: Int): Long {
+    return ids.getOrPut(getItem(position)) { ids.size.toLong() }
   }
 
   override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): VH {
@@ -25,21 +38,25 @@ class TagAdapter(private val callback: (tag: String) -> Unit) :
     return VH(binding)
   }
 
-  override fun onBindViewHolder(holder: VH, @SuppressLint("RecyclerView") position: Int) {
-    val tag = dataList[position]
-    holder.tagView.isSelected = (selectPosition == position)
+  override fun onBindViewHolder(holder: VH, position: Int) {
+    val tag = getItem(position)
+    holder.tagView.isSelected = (selectedTag == tag)
     holder.tagView.text = tag
     holder.tagView.setOnClickListener {
-      selectPosition = position
+      val previous = currentList.indexOf(selectedTag)
+      selectedTag = tag
       callback.invoke(tag)
-      notifyDataSetChanged()
+      // 只刷新选中状态变化的两行
+      if (previous >= 0) {
+        notifyItemChanged(previous)
+      }
+      val current = holder.bindingAdapterPosition
+      if (current != RecyclerView.NO_POSITION) {
+        notifyItemChanged(current)
+      }
     }
   }
 
-  override fun getItemCount(): Int {
-    return dataList.size
-  }
-
   class VH(itemView: View) : RecyclerView.ViewHolder(itemView) {
     val tagView: TextView
 
@@ -47,4 +64,16 @@ class TagAdapter(private val callback: (tag: String) -> Unit) :
       tagView = itemView.findViewById(R.id.tv_tag)
     }
   }
-}
\ No newline at end of file
+
+  companion object {
+    private val DIFF_CALLBACK = object : DiffUtil.ItemCallback<String>() {
+      override fun areItemsTheSame(oldItem: String, newItem: String): Boolean {
+        return oldItem == newItem
+      }
+
+      override fun areContentsTheSame(oldItem: String, newItem: String): Boolean {
+        return oldItem == newItem
+      }
+    }
+  }
+}
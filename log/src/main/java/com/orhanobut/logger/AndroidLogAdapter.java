@@ -24,14 +24,19 @@ class AndroidLogAdapter implements LogAdapter {
     @NonNull
     private final FormatStrategy formatStrategy;
 
+    @NonNull
+    private final String metricsKey; // 格式化耗时的统计键
+
     // 默认构造函数，使用 PrettyFormatStrategy 格式化策略
     public AndroidLogAdapter() {
         this.formatStrategy = PrettyFormatStrategy.newBuilder().build();
+        this.metricsKey = LogMetrics.formatKey(formatStrategy);
     }
 
     // 构造函数，允许使用自定义的格式化策略
     public AndroidLogAdapter(@NonNull FormatStrategy formatStrategy) {
         this.formatStrategy = checkNotNull(formatStrategy);
+        this.metricsKey = LogMetrics.formatKey(formatStrategy);
     }
 
     /**
@@ -39,11 +44,12 @@ class AndroidLogAdapter implements LogAdapter {
      *
      * @param priority 日志级别，例如 DEBUG、WARNING
      * @param tag      日志消息的标签
-     * @return 是否需要输出日志，默认为始终输出 (返回 true)。
+     * @return 是否需要输出日志，由 {@link LevelPolicy} 中 {@link LevelPolicy#LOGCAT} 的规则决定，默认始终输出。
      */
     @Override
     public boolean isLoggable(int priority, @Nullable String tag) {
-        return true;
+        return LevelPolicy.getDefault().isLoggable(LevelPolicy.LOGCAT, priority,
+                LevelPolicy.effectiveTag(formatStrategy, tag));
     }
 
     /**
@@ -55,7 +61,19 @@ class AndroidLogAdapter implements LogAdapter {
      */
     @Override
     public void log(int priority, @Nullable String tag, @NonNull String message) {
+        long start = System.nanoTime();
         formatStrategy.log(priority, tag, message);
+        LogMetrics.get().onFormat(metricsKey, System.nanoTime() - start);
+    }
+
+    /**
+     * 根据格式化策略输出带键值对的结构化日志。
+     */
+    @Override
+    public void log(int priority, @Nullable String tag, @NonNull String message, @NonNull LogFields fields) {
+        long start = System.nanoTime();
+        formatStrategy.log(priority, tag, message, fields);
+        LogMetrics.get().onFormat(metricsKey, System.nanoTime() - start);
     }
 
 }
@@ -0,0 +1,263 @@
+package com.orhanobut.logger;
+
+import static com.orhanobut.logger.Utils.ERROR;
+import static com.orhanobut.logger.Utils.checkNotNull;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 把任意 {@link LogAdapter} 放到独立的工作线程中执行，每个适配器有自己的有界队列。
+ * <p>
+ * 日志内容（包括参数格式化、异常堆栈）在 {@link LoggerPrinter} 中只生成一次，然后分发到各个适配器；
+ * 包装之后调用方只负责入队，一个慢的输出目标（网络、加密等）不会拖慢 Logcat 或调用方。
+ * 队列满时丢弃新日志并计入 {@link LogMetrics.Snapshot#drops}；内存紧张期间（见 {@link MemoryTrimHook}）
+ * 普通队列只用到四分之一的容量，积压的日志不再继续占用内存。
+ * ERROR / ASSERT 进入单独的优先队列，工作线程总是先处理它们，普通队列积压或已满时也不会被挡在后面。
+ * 工作线程在第一次入队时启动，空闲一段时间后自动退出，下次入队时重新启动。
+ *
+ * <pre><code>
+ *   LogAdapter adapter = AsyncLogAdapter.newBuilder()
+ *       .adapter(new DiskLogAdapter())  // 被包装的适配器
+ *       .queueCapacity(1024)            // (Optional) 队列容量。Default 1024
+ *       .name("disk")                   // (Optional) 工作线程名称
+ *       .idleTimeout(60_000)            // (Optional) 工作线程空闲多久后退出，毫秒。Default 60s
+ *       .build();
+ *   Logger.addLogAdapter(adapter);
+ * </code></pre>
+ */
+final class AsyncLogAdapter implements LogAdapter, CrashFlushHook.Target {
+
+  private static final AtomicInteger threadIndex = new AtomicInteger();
+
+  /**
+   * 优先队列有新日志时用来唤醒工作线程的空事件
+   */
+  private static final Event WAKE = new Event(0, null, "", null, null);
+
+  @NonNull private final LogAdapter delegate;
+  @NonNull private final ArrayBlockingQueue<Event> queue;
+  @NonNull private final ArrayBlockingQueue<Event> urgent; // ERROR / ASSERT
+  @NonNull private final String name;
+  private final int pressureCapacity; // 内存紧张时普通队列的上限
+  private final long idleTimeoutMs; // 工作线程空闲多久后退出
+  private final Object lock = new Object();
+  private volatile boolean running; // 工作线程是否存活
+  @Nullable private volatile Thread worker;
+
+  private AsyncLogAdapter(@NonNull Builder builder) {
+    delegate = builder.adapter;
+    queue = new ArrayBlockingQueue<>(builder.queueCapacity);
+    urgent = new ArrayBlockingQueue<>(Math.max(16, builder.queueCapacity / 4));
+    pressureCapacity = Math.max(1, builder.queueCapacity / 4);
+    idleTimeoutMs = builder.idleTimeoutMs;
+    name = builder.name != null ? builder.name : "AsyncLogAdapter-" + threadIndex.incrementAndGet();
+    // 崩溃时先把本队列交给被包装的适配器，再由磁盘写线程落盘
+    CrashFlushHook.registerUpstream(this);
+  }
+
+  @NonNull public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * 在调用线程判断，不需要输出的日志不会入队
+   */
+  @Override public boolean isLoggable(int priority, @Nullable String tag) {
+    return delegate.isLoggable(priority, tag);
+  }
+
+  /**
+   * 入队本身是线程安全的，不需要 {@link LoggerPrinter} 加锁
+   */
+  @Override public boolean isConcurrent() {
+    return true;
+  }
+
+  @Override public void log(int priority, @Nullable String tag, @NonNull String message) {
+    enqueue(new Event(priority, tag, checkNotNull(message), null, null));
+  }
+
+  /**
+   * 键值对只在本次调用期间有效，入队前复制一份
+   */
+  @Override public void log(int priority, @Nullable String tag, @NonNull String message, @NonNull LogFields fields) {
+    enqueue(new Event(priority, tag, checkNotNull(message), fields.copy(), null));
+  }
+
+  /**
+   * 等待此前入队的日志全部交给被包装的适配器
+   */
+  @Override public void flushBlocking(long timeoutMs) {
+    if (Thread.currentThread() == worker) {
+      return;
+    }
+    CountDownLatch latch = new CountDownLatch(1);
+    try {
+      long deadline = System.currentTimeMillis() + timeoutMs;
+      if (!queue.offer(new Event(0, null, "", null, latch), timeoutMs, TimeUnit.MILLISECONDS)) {
+        return;
+      }
+      ensureRunning();
+      latch.await(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void enqueue(@NonNull Event event) {
+    if (event.priority >= ERROR) {
+      if (!urgent.offer(event)) {
+        LogMetrics.get().onDrop(1);
+        return;
+      }
+      // 工作线程只会阻塞在空的普通队列上；普通队列已满时它不会阻塞，放不进去也没关系
+      queue.offer(WAKE);
+      ensureRunning();
+      return;
+    }
+    if ((MemoryTrimHook.isUnderPressure() && queue.size() >= pressureCapacity) || !queue.offer(event)) {
+      LogMetrics.get().onDrop(1);
+      return;
+    }
+    ensureRunning();
+  }
+
+  private void ensureRunning() {
+    if (running) {
+      return;
+    }
+    synchronized (lock) {
+      if (running) {
+        return;
+      }
+      running = true;
+      Thread thread = new Thread(this::drain, name);
+      thread.setDaemon(true);
+      worker = thread;
+      thread.start();
+    }
+  }
+
+  private void drain() {
+    while (true) {
+      Event event = urgent.poll();
+      if (event == null) {
+        try {
+          event = queue.poll(idleTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          event = null;
+        }
+      }
+      if (event == WAKE) {
+        continue;
+      }
+      if (event == null) {
+        if (retire()) {
+          return;
+        }
+        continue;
+      }
+      if (event.latch != null) {
+        event.latch.countDown();
+        continue;
+      }
+      try {
+        if (event.fields == null) {
+          delegate.log(event.priority, event.tag, event.message);
+        } else {
+          delegate.log(event.priority, event.tag, event.message, event.fields);
+        }
+      } catch (RuntimeException e) {
+        // 一个输出目标出错不能让工作线程退出
+        LogMetrics.get().onDrop(1);
+      }
+    }
+  }
+
+  /**
+   * 空闲超时后尝试退出工作线程。
+   * <p>
+   * 调用方先入队再检查 running，这里先清除 running 再检查队列：两边至少有一方能看到对方的写入，
+   * 要么调用方看到 running 为 false 而启动新线程，要么这里看到刚入队的日志而继续处理，不会出现日志留在队列中却没有线程的情况。
+   *
+   * @return 是否可以退出；false 表示队列中还有日志，当前线程继续作为工作线程
+   */
+  private boolean retire() {
+    synchronized (lock) {
+      running = false;
+    }
+    if (queue.isEmpty() && urgent.isEmpty()) {
+      return true;
+    }
+    synchronized (lock) {
+      if (running) {
+        // 调用方已经看到 running 为 false 并启动了新的工作线程，由它处理
+        return true;
+      }
+      running = true;
+      worker = Thread.currentThread();
+      return false;
+    }
+  }
+
+  /**
+   * 队列中的一条日志，latch 不为 null 时表示 flush 标记
+   */
+  private static final class Event {
+    final int priority;
+    @Nullable final String tag;
+    @NonNull final String message;
+    @Nullable final LogFields fields;
+    @Nullable final CountDownLatch latch;
+
+    Event(int priority, @Nullable String tag, @NonNull String message, @Nullable LogFields fields,
+          @Nullable CountDownLatch latch) {
+      this.priority = priority;
+      this.tag = tag;
+      this.message = message;
+      this.fields = fields;
+      this.latch = latch;
+    }
+  }
+
+  public static final class Builder {
+    LogAdapter adapter;
+    int queueCapacity = 1024;
+    String name;
+    long idleTimeoutMs = 60_000;
+
+    private Builder() {
+    }
+
+    @NonNull public Builder adapter(@NonNull LogAdapter val) {
+      adapter = val;
+      return this;
+    }
+
+    @NonNull public Builder queueCapacity(int val) {
+      queueCapacity = Math.max(1, val);
+      return this;
+    }
+
+    @NonNull public Builder name(@Nullable String val) {
+      name = val;
+      return this;
+    }
+
+    @NonNull public Builder idleTimeout(long millis) {
+      idleTimeoutMs = Math.max(1, millis);
+      return this;
+    }
+
+    @NonNull public AsyncLogAdapter build() {
+      checkNotNull(adapter);
+      return new AsyncLogAdapter(this);
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package com.orhanobut.logger;
+
+import static com.orhanobut.logger.Utils.checkNotNull;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 进程因未捕获异常即将退出时，同步清空各个磁盘日志队列并落盘。
+ * <p>
+ * 安装后会包装原有的 {@link Thread.UncaughtExceptionHandler}，先等待所有已注册的写线程处理完
+ * 崩溃前入队的日志（包括崩溃时刚打印的那条），再交给原处理器结束进程。
+ */
+final class CrashFlushHook implements Thread.UncaughtExceptionHandler {
+
+  /**
+   * 所有写线程加起来最多等待的时间，避免拖慢崩溃退出
+   */
+  private static final long FLUSH_TIMEOUT_MS = 2000;
+
+  private static final CopyOnWriteArrayList<WeakReference<Target>> targets = new CopyOnWriteArrayList<>();
+  private static boolean installed;
+
+  @Nullable private final Thread.UncaughtExceptionHandler delegate;
+
+  private CrashFlushHook(@Nullable Thread.UncaughtExceptionHandler delegate) {
+    this.delegate = delegate;
+  }
+
+  /**
+   * 注册一个需要在崩溃时落盘的写入目标，首次注册时安装全局异常处理器
+   */
+  static void register(@NonNull Target target) {
+    prune();
+    targets.add(new WeakReference<>(checkNotNull(target)));
+    install();
+  }
+
+  private static void install() {
+    synchronized (CrashFlushHook.class) {
+      if (!installed) {
+        installed = true;
+        Thread.setDefaultUncaughtExceptionHandler(
+            new CrashFlushHook(Thread.getDefaultUncaughtExceptionHandler()));
+      }
+    }
+  }
+
+  /**
+   * 注册一个位于其他目标上游的目标（它的输出会流入其他目标的队列），崩溃时最先清空
+   */
+  static void registerUpstream(@NonNull Target target) {
+    prune();
+    targets.add(0, new WeakReference<>(checkNotNull(target)));
+    install();
+  }
+
+  /**
+   * 去掉已被回收的目标，反复初始化日志时列表不会一直增长
+   */
+  private static void prune() {
+    for (WeakReference<Target> reference : targets) {
+      if (reference.get() == null) {
+        targets.remove(reference);
+      }
+    }
+  }
+
+  /**
+   * 同步清空所有已注册目标的队列并落盘
+   */
+  static void flushAll() {
+    long deadline = System.currentTimeMillis() + FLUSH_TIMEOUT_MS;
+    for (WeakReference<Target> reference : targets) {
+      Target target = reference.get();
+      if (target == null) {
+        targets.remove(reference);
+        continue;
+      }
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
+        return;
+      }
+      target.flushBlocking(remaining);
+    }
+  }
+
+  @Override public void uncaughtException(@NonNull Thread thread, @NonNull Throwable throwable) {
+    try {
+      flushAll();
+    } catch (Throwable ignored) {
+      // 不能让落盘失败掩盖原始异常
+    }
+    if (delegate != null) {
+      delegate.uncaughtException(thread, throwable);
+    }
+  }
+
+  /**
+   * 可以在崩溃时同步落盘的写入目标
+   */
+  interface Target {
+
+    /**
+     * 等待此前入队的日志全部写入并落盘
+     *
+     * @param timeoutMs 最长等待时间
+     */
+    void flushBlocking(long timeoutMs);
+  }
+}
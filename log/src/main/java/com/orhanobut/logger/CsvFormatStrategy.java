@@ -3,8 +3,6 @@ package com.orhanobut.logger;
 import static com.orhanobut.logger.Utils.checkNotNull;
 
 import android.os.Environment;
-import android.os.Handler;
-import android.os.HandlerThread;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -22,7 +20,9 @@ import java.util.Locale;
  * 2. ISO8601 时间戳（人类可读格式）
  * 3. 日志级别
  * 4. 标签
- * 5. 日志消息
+ * 5. 日志消息，结构化日志的键值对以 {@link CsvLogRecord#FIELD_SEPARATOR} 分隔追加在消息之后
+ *
+ * @see CsvLogRecord 对应的解析类
  */
  class CsvFormatStrategy implements FormatStrategy {
 
@@ -61,6 +61,19 @@ import java.util.Locale;
    * @param message     日志消息
    */
   @Override public void log(int priority, @Nullable String onceOnlyTag, @NonNull String message) {
+    log(priority, onceOnlyTag, message, null);
+  }
+
+  /**
+   * 输出带键值对的结构化日志，键值对保存在消息之后，可被 {@link CsvLogRecord} 解析。
+   *
+   * @param priority    日志级别
+   * @param onceOnlyTag 临时标签
+   * @param message     日志消息
+   * @param fields      键值对
+   */
+  @Override public void log(int priority, @Nullable String onceOnlyTag, @NonNull String message,
+                            @Nullable LogFields fields) {
     checkNotNull(message);
 
     // 格式化标签
@@ -91,7 +104,25 @@ import java.util.Locale;
       message = message.replaceAll(NEW_LINE, NEW_LINE_REPLACEMENT);
     }
     builder.append(SEPARATOR);
-    builder.append(message);
+    builder.append(message.replace(CsvLogRecord.FIELD_SEPARATOR, ' '));
+
+    // 日志序号和键值对
+    if (fields != null) {
+      if (fields.sequence() > 0) {
+        builder.append(CsvLogRecord.FIELD_SEPARATOR)
+            .append(CsvLogRecord.SEQUENCE_KEY)
+            .append(CsvLogRecord.KEY_VALUE_SEPARATOR)
+            .append(fields.sequence());
+      }
+      for (int i = 0; i < fields.size(); i++) {
+        builder.append(CsvLogRecord.FIELD_SEPARATOR);
+        appendKey(builder, fields.key(i));
+        builder.append(CsvLogRecord.KEY_VALUE_SEPARATOR);
+        int start = builder.length();
+        fields.appendValue(i, builder);
+        escapeTail(builder, start);
+      }
+    }
 
     // 添加换行符
     builder.append(NEW_LINE);
@@ -100,13 +131,45 @@ import java.util.Locale;
     logStrategy.log(priority, tag, builder.toString());
   }
 
+  /**
+   * 追加键值对的键，去掉会破坏行格式的字符
+   */
+  private static void appendKey(@NonNull StringBuilder builder, @NonNull String key) {
+    int start = builder.length();
+    builder.append(key);
+    escapeTail(builder, start);
+    for (int i = start; i < builder.length(); i++) {
+      if (builder.charAt(i) == CsvLogRecord.KEY_VALUE_SEPARATOR) {
+        builder.setCharAt(i, '_');
+      }
+    }
+    if (CsvLogRecord.SEQUENCE_KEY.contentEquals(builder.subSequence(start, builder.length()))) {
+      builder.insert(start, '_'); // 序号的键保留给日志序号
+    }
+  }
+
+  /**
+   * 把 builder 中从 start 开始的换行符和字段分隔符替换掉，保证一条日志只占一行
+   */
+  private static void escapeTail(@NonNull StringBuilder builder, int start) {
+    for (int i = start; i < builder.length(); i++) {
+      char c = builder.charAt(i);
+      if (c == CsvLogRecord.FIELD_SEPARATOR || c == '\r') {
+        builder.setCharAt(i, ' ');
+      } else if (c == '\n') {
+        builder.replace(i, i + 1, NEW_LINE_REPLACEMENT);
+        i += NEW_LINE_REPLACEMENT.length() - 1;
+      }
+    }
+  }
+
   /**
    * 格式化日志标签。
    *
    * @param tag 临时标签
    * @return 格式化后的标签
    */
-  @Nullable private String formatTag(@Nullable String tag) {
+  @Nullable String formatTag(@Nullable String tag) {
     if (!Utils.isEmpty(tag) && !Utils.equals(this.tag, tag)) {
       return tag;
     }
@@ -122,6 +185,7 @@ import java.util.Locale;
     Date date; // 当前时间
     SimpleDateFormat dateFormat; // 日期格式化
     LogStrategy logStrategy; // 日志策略
+    DurabilityPolicy durability; // 默认磁盘策略的落盘策略
     String tag = "PRETTY_LOGGER"; // 默认标签
 
     private Builder() {
@@ -142,6 +206,14 @@ import java.util.Locale;
       return this;
     }
 
+    /**
+     * 设置默认磁盘策略的落盘策略，仅在未指定 {@link #logStrategy(LogStrategy)} 时生效
+     */
+    @NonNull public Builder durability(@Nullable DurabilityPolicy val) {
+      durability = val;
+      return this;
+    }
+
     @NonNull public Builder tag(@Nullable String tag) {
       this.tag = tag;
       return this;
@@ -161,13 +233,16 @@ import java.util.Locale;
         dateFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS", Locale.UK);
       }
       if (logStrategy == null) {
-        String diskPath = Environment.getExternalStorageDirectory().getAbsolutePath();
-        String folder = diskPath + File.separatorChar + "logger";
-
-        HandlerThread ht = new HandlerThread("AndroidFileLogger." + folder);
-        ht.start();
-        Handler handler = new DiskLogStrategy.WriteHandler(ht.getLooper(), folder, MAX_BYTES);
-        logStrategy = new DiskLogStrategy(handler);
+        if (durability == null) {
+          durability = DurabilityPolicy.defaultPolicy();
+        }
+        DurabilityPolicy policy = durability;
+        // 存储目录在写线程上解析，线程在第一条日志到来时才启动
+        logStrategy = new DiskLogStrategy(new LazyHandler("AndroidFileLogger", looper -> {
+          String diskPath = Environment.getExternalStorageDirectory().getAbsolutePath();
+          String folder = diskPath + File.separatorChar + "logger";
+          return new DiskLogStrategy.WriteHandler(looper, folder, MAX_BYTES, policy);
+        }), policy);
       }
       return new CsvFormatStrategy(this);
     }
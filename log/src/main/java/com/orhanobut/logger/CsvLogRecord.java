@@ -0,0 +1,136 @@
+package com.orhanobut.logger;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link CsvFormatStrategy} 写出的一行日志的解析结果。
+ * <p>
+ * 行格式为 {@code 时间戳,可读时间,级别,标签,消息}，消息之后可以跟随若干个以
+ * {@link #FIELD_SEPARATOR} 开头的 {@code key=value} 键值对。
+ * 键为 {@link #SEQUENCE_KEY} 的键值对是日志序号，解析到 {@link #sequence}，不出现在 {@link #fields} 中。
+ */
+public final class CsvLogRecord {
+
+  /**
+   * 键值对之间的分隔符（ASCII Unit Separator），不会出现在正常的日志文本中
+   */
+  public static final char FIELD_SEPARATOR = '\u001F';
+
+  /**
+   * 键与值之间的分隔符
+   */
+  public static final char KEY_VALUE_SEPARATOR = '=';
+
+  /**
+   * 日志序号的键，见 {@link LogSequenceCheck}
+   */
+  public static final String SEQUENCE_KEY = "_seq";
+
+  public final long timestamp; // 时间戳
+  @NonNull public final String date; // 人类可读的时间
+  @NonNull public final String level; // 日志级别，例如 DEBUG
+  @NonNull public final String tag; // 标签
+  @NonNull public final String message; // 日志消息，不含键值对
+  @NonNull public final Map<String, String> fields; // 键值对，按写入顺序
+  public final long sequence; // 日志序号，没有时为 -1
+
+  private CsvLogRecord(long timestamp, @NonNull String date, @NonNull String level, @NonNull String tag,
+                       @NonNull String message, @NonNull Map<String, String> fields, long sequence) {
+    this.timestamp = timestamp;
+    this.date = date;
+    this.level = level;
+    this.tag = tag;
+    this.message = message;
+    this.fields = fields;
+    this.sequence = sequence;
+  }
+
+  /**
+   * 解析一行日志
+   *
+   * @param line 一行日志，不含换行符
+   * @return 解析结果，格式不正确时返回 null
+   */
+  @Nullable public static CsvLogRecord parse(@Nullable String line) {
+    if (line == null) {
+      return null;
+    }
+    int c1 = line.indexOf(',');
+    int c2 = c1 < 0 ? -1 : line.indexOf(',', c1 + 1);
+    int c3 = c2 < 0 ? -1 : line.indexOf(',', c2 + 1);
+    if (c3 < 0) {
+      return null;
+    }
+    long timestamp;
+    try {
+      timestamp = Long.parseLong(line.substring(0, c1));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    int c4 = line.indexOf(',', c3 + 1);
+    String tag = c4 < 0 ? line.substring(c3 + 1) : line.substring(c3 + 1, c4);
+    String body = c4 < 0 ? "" : line.substring(c4 + 1);
+
+    int fieldStart = body.indexOf(FIELD_SEPARATOR);
+    if (fieldStart < 0) {
+      return new CsvLogRecord(timestamp, line.substring(c1 + 1, c2), line.substring(c2 + 1, c3), tag, body,
+          Collections.<String, String>emptyMap(), -1);
+    }
+    Map<String, String> fields = new LinkedHashMap<>();
+    long sequence = -1;
+    int start = fieldStart + 1;
+    while (start <= body.length()) {
+      int end = body.indexOf(FIELD_SEPARATOR, start);
+      if (end < 0) {
+        end = body.length();
+      }
+      int eq = body.indexOf(KEY_VALUE_SEPARATOR, start);
+      if (eq >= 0 && eq < end) {
+        if (body.startsWith(SEQUENCE_KEY, start) && eq == start + SEQUENCE_KEY.length()) {
+          sequence = parseSequence(body, eq + 1, end);
+        } else {
+          fields.put(body.substring(start, eq), body.substring(eq + 1, end));
+        }
+      }
+      start = end + 1;
+    }
+    return new CsvLogRecord(timestamp, line.substring(c1 + 1, c2), line.substring(c2 + 1, c3), tag,
+        body.substring(0, fieldStart), Collections.unmodifiableMap(fields), sequence);
+  }
+
+  /**
+   * 从行首快速取出日志序号，不解析其他内容
+   *
+   * @return 日志序号，没有时返回 -1
+   */
+  public static long sequenceOf(@NonNull String line) {
+    String marker = FIELD_SEPARATOR + SEQUENCE_KEY + KEY_VALUE_SEPARATOR;
+    int start = line.indexOf(marker);
+    if (start < 0) {
+      return -1;
+    }
+    start += marker.length();
+    int end = line.indexOf(FIELD_SEPARATOR, start);
+    return parseSequence(line, start, end < 0 ? line.length() : end);
+  }
+
+  private static long parseSequence(@NonNull String text, int start, int end) {
+    if (start >= end) {
+      return -1;
+    }
+    long value = 0;
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+}
@@ -8,9 +8,9 @@ import android.os.Message;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -19,13 +19,27 @@ import java.io.IOException;
  *
  * 将所有日志以 CSV 格式写入磁盘。
  */
- class DiskLogStrategy implements LogStrategy {
+ class DiskLogStrategy implements LogStrategy, CrashFlushHook.Target, MemoryTrimHook.Target {
 
-  @NonNull private final Handler handler;
+  private static final int WHAT_WRITE = 1;
+  private static final int WHAT_SYNC = 2;
+  private static final int WHAT_FLUSH = 3;
+  private static final int WHAT_TRIM = 4;
+
+  @NonNull private final LazyHandler handler;
+  @NonNull private final DurabilityPolicy durability;
 
   // 构造函数，接收一个 Handler 实例，用于后台线程处理
   public DiskLogStrategy(@NonNull Handler handler) {
+    this(new LazyHandler(handler), DurabilityPolicy.defaultPolicy());
+  }
+
+  // 写线程在第一条日志到来时才启动，之前的日志缓存在内存中
+  DiskLogStrategy(@NonNull LazyHandler handler, @NonNull DurabilityPolicy durability) {
     this.handler = checkNotNull(handler);
+    this.durability = checkNotNull(durability);
+    CrashFlushHook.register(this);
+    MemoryTrimHook.register(this);
   }
 
   /**
@@ -39,7 +53,58 @@ import java.io.IOException;
     checkNotNull(message);
 
     // 在调用线程中不做任何处理，直接将标签和消息传递给后台线程
-    handler.sendMessage(handler.obtainMessage(level, message));
+    long start = System.nanoTime();
+    boolean sent;
+    if (durability.isUrgent(level)) {
+      // 越过积压的低级别日志先写入并落盘
+      sent = handler.sendUrgent(WHAT_WRITE, level, message);
+    } else {
+      sent = handler.send(WHAT_WRITE, level, message);
+    }
+    if (sent) {
+      LogMetrics.get().onEnqueue(System.nanoTime() - start);
+    } else {
+      // 写线程已退出，没有进入队列的消息不计入队列深度
+      LogMetrics.get().onDrop(1);
+    }
+  }
+
+  /**
+   * 等待此前入队的日志全部写入并落盘，可在任意线程调用。
+   * 仅当 handler 为 {@link WriteHandler} 时有效。
+   *
+   * @param timeoutMs 最长等待时间
+   */
+  @Override public void flushBlocking(long timeoutMs) {
+    if (!handler.isStarted()) {
+      return; // 还没有写过任何日志
+    }
+    Handler current = handler.peek();
+    if (current != null && !(current instanceof WriteHandler)) {
+      return;
+    }
+    if (handler.isCurrentThread()) {
+      // 就在写线程上，直接落盘，避免自己等自己
+      ((WriteHandler) current).sync();
+      return;
+    }
+    CountDownLatch latch = new CountDownLatch(1);
+    handler.send(WHAT_FLUSH, latch);
+    try {
+      latch.await(timeoutMs, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * 内存紧张时让写线程在写完积压的日志后落盘并释放编码缓冲区。
+   * 仅当 handler 为 {@link WriteHandler} 时有效。
+   */
+  @Override public void onTrimMemory(int level) {
+    if (handler.isStarted() && handler.peek() instanceof WriteHandler) {
+      handler.send(WHAT_TRIM, null);
+    }
   }
 
   /**
@@ -47,14 +112,20 @@ import java.io.IOException;
    */
   static class WriteHandler extends Handler {
 
-    @NonNull private final String folder; // 存储日志的文件夹路径
-    private final int maxFileSize; // 文件大小限制
+    @NonNull private final LogSegmentWriter writer; // 当前分段的写入器
+    @NonNull private final DurabilityPolicy durability; // 落盘策略
+    private boolean syncScheduled; // 是否已安排定时落盘
 
     // 构造函数，初始化 Handler 和相关参数
     WriteHandler(@NonNull Looper looper, @NonNull String folder, int maxFileSize) {
+      this(looper, folder, maxFileSize, DurabilityPolicy.defaultPolicy());
+    }
+
+    WriteHandler(@NonNull Looper looper, @NonNull String folder, int maxFileSize,
+                 @NonNull DurabilityPolicy durability) {
       super(checkNotNull(looper));
-      this.folder = checkNotNull(folder);
-      this.maxFileSize = maxFileSize;
+      this.writer = new LogSegmentWriter(checkNotNull(folder), "logs", maxFileSize);
+      this.durability = checkNotNull(durability);
     }
 
     /**
@@ -62,84 +133,64 @@ import java.io.IOException;
      *
      * @param msg 包含日志内容的消息对象
      */
-    @SuppressWarnings("checkstyle:emptyblock")
     @Override public void handleMessage(@NonNull Message msg) {
-      String content = (String) msg.obj;
-
-      FileWriter fileWriter = null;
-      File logFile = getLogFile(folder, "logs"); // 获取日志文件
-
-      try {
-        fileWriter = new FileWriter(logFile, true); // 以追加模式打开文件
-
-        writeLog(fileWriter, content); // 写入日志
-
-        fileWriter.flush();
-        fileWriter.close(); // 完成后关闭文件流
-      } catch (IOException e) {
-        if (fileWriter != null) {
+      switch (msg.what) {
+        case WHAT_WRITE: {
+          String content = (String) msg.obj;
+          LogMetrics.get().onDequeue(1);
           try {
-            fileWriter.flush();
-            fileWriter.close();
-          } catch (IOException e1) { /* 静默失败 */ }
+            writeLog(msg.arg1, content);
+          } catch (IOException e) {
+            LogMetrics.get().onDrop(1); // 静默失败
+          }
+        }
+        break;
+        case WHAT_SYNC: {
+          syncScheduled = false;
+          sync();
         }
+        break;
+        case WHAT_FLUSH: {
+          // 队列按顺序处理，执行到这里时此前入队的日志都已写入
+          sync();
+          ((CountDownLatch) msg.obj).countDown();
+        }
+        break;
+        case WHAT_TRIM: {
+          sync();
+          writer.releaseBuffers();
+        }
+        break;
       }
     }
 
     /**
-     * 在后台线程中写入日志。
-     * 实现类只负责写入文件，其他的由抽象类处理，包括关闭流和捕获 IO 异常。
+     * 在后台线程中写入日志，并按落盘策略决定立即落盘还是稍后合并落盘。
      *
-     * @param fileWriter 已初始化的 FileWriter 实例
+     * @param priority 日志级别
      * @param content 日志内容
      */
-    private void writeLog(@NonNull FileWriter fileWriter, @NonNull String content) throws IOException {
-      checkNotNull(fileWriter);
+    private void writeLog(int priority, @NonNull String content) throws IOException {
       checkNotNull(content);
 
-      fileWriter.append(content); // 写入日志内容
+      writer.writeLine(content);
+      if (durability.shouldSyncNow(priority, writer.unsyncedBytes())) {
+        sync();
+      } else if (durability.syncIntervalMs > 0 && !syncScheduled && writer.unsyncedBytes() > 0) {
+        // 时间窗口内的写入合并为一次 force
+        syncScheduled = true;
+        sendEmptyMessageDelayed(WHAT_SYNC, durability.syncIntervalMs);
+      }
     }
 
     /**
-     * 获取日志文件，如果文件夹不存在则创建。
-     * 如果文件已经存在且文件大小超出限制，则创建新的日志文件。
-     *
-     * @param folderName 文件夹路径
-     * @param fileName 基础文件名
-     * @return 日志文件
+     * 把已写入的数据落盘
      */
-    private File getLogFile(@NonNull String folderName, @NonNull String fileName) {
-      checkNotNull(folderName);
-      checkNotNull(fileName);
-
-      File folder = new File(folderName);
-      if (!folder.exists()) {
-        // 如果文件夹不存在，尝试创建文件夹
-        folder.mkdirs();
-      }
-
-      int newFileCount = 0; // 新文件计数
-      File newFile;
-      File existingFile = null;
-
-      // 生成新的文件名，直到文件名不重复
-      newFile = new File(folder, String.format("%s_%s.csv", fileName, newFileCount));
-      while (newFile.exists()) {
-        existingFile = newFile;
-        newFileCount++;
-        newFile = new File(folder, String.format("%s_%s.csv", fileName, newFileCount));
-      }
-
-      // 如果已存在文件，且文件大小超过最大限制，则返回新文件
-      if (existingFile != null) {
-        if (existingFile.length() >= maxFileSize) {
-          return newFile;
-        }
-        return existingFile;
-      }
-
-      return newFile; // 如果没有找到现有文件，返回新文件
+    @SuppressWarnings("checkstyle:emptyblock")
+    void sync() {
+      try {
+        writer.force();
+      } catch (IOException e) { /* 静默失败 */ }
     }
   }
 }
-
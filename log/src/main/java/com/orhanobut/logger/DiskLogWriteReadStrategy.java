@@ -5,7 +5,6 @@ import static com.orhanobut.logger.Utils.checkNotNull;
 
 import android.content.Context;
 import android.os.Handler;
-import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
 
@@ -14,25 +13,54 @@ import androidx.annotation.Nullable;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
- class DiskLogWriteReadStrategy implements LogStrategy {
+ class DiskLogWriteReadStrategy implements LogStrategy, CrashFlushHook.Target, MemoryTrimHook.Target {
 
   private static final int MAX_READ_LINES = 3000; // 最大可读3000 行
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
   private static final int MAX_BYTES = 500 * 1024; // 每个文件最大 500KB，约 4000 行
+  static final int DEFAULT_RECENT_CAPACITY = 512; // 默认在内存中保留的最近日志行数
+  private static final long EXPORT_FLUSH_TIMEOUT_MS = 2000; // 导出前等待写入的最长时间
   private static final int WHAT_WRITE = 1;
   private static final int WHAT_READ = 2;
-
-  @NonNull private final Handler handler;
+  private static final int WHAT_SYNC = 3;
+  private static final int WHAT_FLUSH = 4;
+  private static final int WHAT_FIND_TRACE = 5;
+  private static final int WHAT_REMOVE_TAIL = 6;
+  private static final int WHAT_CHECK_SEQUENCE = 7;
+  private static final int WHAT_TRIM = 8;
+
+  @NonNull private final LazyHandler handler; // 第一次使用时才启动写线程
+  @NonNull private final LazyHandler reader; // 读取线程，读文件不阻塞写入
+  @NonNull private final Context context;
+  @NonNull private final DurabilityPolicy durability;
+  @Nullable private final RecentLogRing recent; // 最近写入的日志行，为 null 表示未开启
+  private final int recentCapacity; // 最近日志行的配置容量
 
   // 构造函数，接收一个 Handler 实例，用于后台线程处理
-  private DiskLogWriteReadStrategy(@NonNull Handler handler) {
+  private DiskLogWriteReadStrategy(@NonNull LazyHandler handler, @NonNull LazyHandler reader,
+                                   @NonNull Context context, @NonNull DurabilityPolicy durability,
+                                   @Nullable RecentLogRing recent, int recentCapacity) {
     this.handler = checkNotNull(handler);
+    this.reader = checkNotNull(reader);
+    this.context = checkNotNull(context);
+    this.durability = checkNotNull(durability);
+    this.recent = recent;
+    this.recentCapacity = recentCapacity;
   }
 
   /**
@@ -46,20 +74,160 @@ import java.util.List;
     checkNotNull(message);
 
     // 在调用线程中不做任何处理，直接将标签和消息传递给后台线程
-    handler.sendMessage(handler.obtainMessage(WHAT_WRITE, message));
+    long start = System.nanoTime();
+    boolean sent;
+    if (durability.isUrgent(level)) {
+      // 越过积压的低级别日志先写入并落盘
+      sent = handler.sendUrgent(WHAT_WRITE, level, message);
+    } else {
+      sent = handler.send(WHAT_WRITE, level, message);
+    }
+    if (sent) {
+      LogMetrics.get().onEnqueue(System.nanoTime() - start);
+    } else {
+      // 写线程已退出，没有进入队列的消息不计入队列深度
+      LogMetrics.get().onDrop(1);
+    }
   }
 
   public void readLog(@NonNull LogCallback callback) {
-    handler.sendMessage(handler.obtainMessage(WHAT_READ, callback));
+    readLog(callback, null);
+  }
+
+  /**
+   * 读取最近的日志，同时在写线程上注册 tail 监听，之后写入的每一行都会回调给它。
+   * 写线程只记录读取快照并注册监听，两者在同一个消息中完成，不会遗漏或重复任何一行；
+   * 文件在独立的读取线程中读取，不会阻塞写入。tail 回调可能早于读取结果到达。
+   *
+   * @param callback 读取结果回调，在读取线程回调
+   * @param tail     新日志监听，在写线程回调，需要尽快返回；为 null 时只读取
+   */
+  public void readLog(@NonNull LogCallback callback, @Nullable TailListener tail) {
+    handler.send(WHAT_READ, new ReadRequest(callback, tail));
+  }
+
+  /**
+   * 直接从内存中获取最近写入磁盘的日志行，不涉及 IO，可在任意线程调用（例如崩溃上报）
+   *
+   * @param max 最多返回的行数
+   * @return 最新的在前；没有开启内存缓冲时返回空列表
+   */
+  @NonNull public List<String> recentLogs(int max) {
+    return recent == null ? new ArrayList<String>() : recent.snapshot(max);
+  }
+
+  /**
+   * 把所有进程的日志分段导出为一个 tar 归档。会阻塞调用线程，不要在主线程调用。
+   *
+   * @param out    输出流，不会被关闭
+   * @param filter 筛选条件
+   * @return 归档中的条目数
+   */
+  public int export(@NonNull OutputStream out, @NonNull LogExportFilter filter) throws IOException {
+    // 先让此前入队的日志写入文件
+    flushBlocking(EXPORT_FLUSH_TIMEOUT_MS);
+    return LogExporter.export(new File(folder(context)), out, filter);
+  }
+
+  /**
+   * 取消 tail 监听
+   */
+  public void removeTailListener(@NonNull TailListener tail) {
+    handler.send(WHAT_REMOVE_TAIL, checkNotNull(tail));
+  }
+
+  /**
+   * 查找某个异常指纹第一次出现时记录的完整日志行
+   *
+   * @param id       指纹 id，见 {@link ThrowableFingerprints}
+   * @param callback 回调，找不到时返回 null
+   */
+  public void findTrace(@NonNull String id, @NonNull TraceCallback callback) {
+    reader.send(WHAT_FIND_TRACE, new TraceQuery(id, callback));
+  }
+
+  /**
+   * 在读取线程中按日志序号检查当前进程的所有日志文件，报告丢失和乱序
+   *
+   * @param callback 在读取线程回调
+   */
+  public void checkSequence(@NonNull SequenceCallback callback) {
+    reader.send(WHAT_CHECK_SEQUENCE, checkNotNull(callback));
+  }
+
+  /**
+   * 等待此前入队的日志全部写入并落盘，可在任意线程调用。
+   *
+   * @param timeoutMs 最长等待时间
+   */
+  @Override public void flushBlocking(long timeoutMs) {
+    if (!handler.isStarted()) {
+      return; // 还没有写过任何日志
+    }
+    if (handler.isCurrentThread()) {
+      // 就在写线程上，直接落盘，避免自己等自己
+      ((WriteReadHandler) handler.peek()).sync();
+      return;
+    }
+    CountDownLatch latch = new CountDownLatch(1);
+    handler.send(WHAT_FLUSH, latch);
+    try {
+      latch.await(timeoutMs, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * 内存紧张时按级别缩小最近日志的缓冲，并让写线程在写完积压的日志后落盘、释放编码缓冲区
+   */
+  @Override public void onTrimMemory(int level) {
+    if (recent != null) {
+      recent.shrink(MemoryTrimHook.retain(recentCapacity, level));
+    }
+    if (handler.isStarted()) {
+      handler.send(WHAT_TRIM, null);
+    }
   }
 
   public static DiskLogWriteReadStrategy build(Context context) {
+    return build(context, DurabilityPolicy.defaultPolicy());
+  }
+
+  public static DiskLogWriteReadStrategy build(@NonNull Context context, @NonNull DurabilityPolicy durability) {
+    return build(context, durability, DEFAULT_RECENT_CAPACITY);
+  }
+
+  /**
+   * 日志目录
+   */
+  @NonNull static String folder(@NonNull Context context) {
     String diskPath = context.getFilesDir().getAbsolutePath();
-    String folder = diskPath + File.separatorChar + "logger";
-    HandlerThread ht = new HandlerThread("AndroidFileLogger." + folder);
-    ht.start();
-    Handler handler = new DiskLogWriteReadStrategy.WriteReadHandler(ht.getLooper(), folder, MAX_BYTES);
-    return new DiskLogWriteReadStrategy(handler);
+    return diskPath + File.separatorChar + "logger";
+  }
+
+  /**
+   * @param recentCapacity 在内存中保留的最近日志行数，读取日志时这部分不再读文件；0 表示不保留
+   */
+  public static DiskLogWriteReadStrategy build(@NonNull Context context, @NonNull DurabilityPolicy durability,
+                                               int recentCapacity) {
+    // 这里只保存参数，立即返回；目录解析、进程名读取和写线程启动都推迟到第一次使用，并在写线程上完成
+    Context appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+    RecentLogRing recent = recentCapacity > 0 ? new RecentLogRing(recentCapacity) : null;
+    LazyHandler reader = new LazyHandler("AndroidFileLogger-read", looper -> new ReadHandler(looper,
+        folder(appContext), LogSegments.fileNameForCurrentProcess(appContext.getPackageName())));
+    LazyHandler handler = new LazyHandler("AndroidFileLogger", looper -> {
+      String folder = folder(appContext);
+      // 每个进程写自己的分段文件，见 LogSegments
+      String fileName = LogSegments.fileNameForCurrentProcess(appContext.getPackageName());
+      return new WriteReadHandler(looper, folder, fileName, MAX_BYTES, durability, recent, reader);
+    });
+    DiskLogWriteReadStrategy strategy = new DiskLogWriteReadStrategy(handler, reader, appContext, durability,
+        recent, recentCapacity);
+    CrashFlushHook.register(strategy);
+    MemoryTrimHook.register(strategy);
+    MemoryTrimHook.install(appContext);
+    return strategy;
   }
 
   /**
@@ -68,13 +236,25 @@ import java.util.List;
   static class WriteReadHandler extends Handler {
 
     @NonNull private final String folder; // 存储日志的文件夹路径
-    private final int maxFileSize; // 文件大小限制
+    @NonNull private final String fileName; // 当前进程分段文件的基础文件名
+    @NonNull private final LogSegmentWriter writer; // 当前分段的写入器
+    @NonNull private final DurabilityPolicy durability; // 落盘策略
+    @Nullable private final RecentLogRing recent; // 最近写入的日志行
+    @NonNull private final List<TailListener> tailListeners = new ArrayList<>(); // 只在写线程访问
+    @NonNull private final LazyHandler reader; // 读取线程
+    private boolean syncScheduled; // 是否已安排定时落盘
 
     // 构造函数，初始化 Handler 和相关参数
-    WriteReadHandler(@NonNull Looper looper, @NonNull String folder, int maxFileSize) {
+    WriteReadHandler(@NonNull Looper looper, @NonNull String folder, @NonNull String fileName, int maxFileSize,
+                     @NonNull DurabilityPolicy durability, @Nullable RecentLogRing recent,
+                     @NonNull LazyHandler reader) {
       super(checkNotNull(looper));
+      this.reader = checkNotNull(reader);
       this.folder = checkNotNull(folder);
-      this.maxFileSize = maxFileSize;
+      this.fileName = checkNotNull(fileName);
+      this.writer = new LogSegmentWriter(folder, fileName, maxFileSize);
+      this.durability = checkNotNull(durability);
+      this.recent = recent;
     }
 
     /**
@@ -87,134 +267,402 @@ import java.util.List;
       switch (msg.what) {
         case WHAT_WRITE: {
           String content = (String) msg.obj;
+          LogMetrics.get().onDequeue(1);
           try {
-            writeLog(folder, "logs", content);
+            writeLog(msg.arg1, content);
           } catch (IOException e) {
+            LogMetrics.get().onDrop(1);
             e.printStackTrace();
           }
         }
         break;
+        case WHAT_SYNC: {
+          syncScheduled = false;
+          sync();
+        }
+        break;
+        case WHAT_FLUSH: {
+          // 队列按顺序处理，执行到这里时此前入队的日志都已写入
+          sync();
+          ((CountDownLatch) msg.obj).countDown();
+        }
+        break;
         case WHAT_READ: {
-          LogCallback callback = (LogCallback) msg.obj;
-          try {
-            readLog(folder, "logs", callback);
-          } catch (Exception e) {
-            e.printStackTrace();
+          ReadRequest request = (ReadRequest) msg.obj;
+          // 写线程只记录快照，读文件交给读取线程；快照和注册 tail 在同一个消息中完成，两者之间不会遗漏或重复任何一行
+          reader.send(WHAT_READ, snapshot(request.callback));
+          if (request.tail != null) {
+            tailListeners.add(request.tail);
           }
         }
         break;
+        case WHAT_REMOVE_TAIL: {
+          tailListeners.remove((TailListener) msg.obj);
+        }
+        break;
+        case WHAT_TRIM: {
+          // 此前入队的日志已写入，落盘后释放编码缓冲区
+          sync();
+          writer.releaseBuffers();
+        }
+        break;
       }
 
     }
 
     /**
-     * 在后台线程中写入日志。
-     * 实现类只负责写入文件，其他的由抽象类处理，包括关闭流和捕获 IO 异常。
+     * 在后台线程中写入日志，并按落盘策略决定立即落盘还是稍后合并落盘。
      *
-     * @param content 日志内容
+     * @param priority 日志级别
+     * @param content  日志内容
      */
-    private void writeLog(@NonNull String folderName, @NonNull String fileName, @NonNull String content) throws IOException {
-      File logFile = getWriteLogFile(folderName, fileName); // 获取日志文件
-      FileWriter fileWriter = new FileWriter(logFile, true); // 以追加模式打开文件
-      fileWriter.append(content); // 写入日志内容
-      fileWriter.flush();
-      fileWriter.close(); // 完成后关闭文件流
+    private void writeLog(int priority, @NonNull String content) throws IOException {
+      content = writer.writeLine(content); // 按分段去重后实际写入的内容
+      if (recent != null || !tailListeners.isEmpty()) {
+        String line = content.endsWith("\n") ? content.substring(0, content.length() - 1) : content;
+        if (recent != null) {
+          recent.add(line);
+        }
+        for (int i = 0; i < tailListeners.size(); i++) {
+          tailListeners.get(i).onLogWritten(line);
+        }
+      }
+      if (durability.shouldSyncNow(priority, writer.unsyncedBytes())) {
+        sync();
+      } else if (durability.syncIntervalMs > 0 && !syncScheduled && writer.unsyncedBytes() > 0) {
+        // 时间窗口内的写入合并为一次 force
+        syncScheduled = true;
+        sendEmptyMessageDelayed(WHAT_SYNC, durability.syncIntervalMs);
+      }
     }
 
     /**
-     * 获取日志文件，如果文件夹不存在则创建。
-     * 如果文件已经存在且文件大小超出限制，则创建新的日志文件。
-     *
-     * @param folderName 文件夹路径
-     * @param fileName   基础文件名
-     * @return 日志文件
+     * 记录当前一致的读取位置：内存中的最近日志行，以及当前分段的序号和已写入长度
      */
-    private File getWriteLogFile(@NonNull String folderName, @NonNull String fileName) {
-      checkNotNull(folderName);
-      checkNotNull(fileName);
+    @NonNull private ReadTask snapshot(@NonNull LogCallback callback) {
+      List<String> cached = recent == null ? new ArrayList<String>() : recent.snapshot(MAX_READ_LINES);
+      int index = writer.currentIndex();
+      long length = writer.currentSize();
+      if (index < 0) {
+        // 本次启动还没有写过日志，以目录中最新的分段为准
+        File[] files = LogSegments.list(new File(folder), fileName);
+        if (files.length > 0) {
+          index = LogSegments.segmentIndex(files[0].getName(), fileName);
+          length = files[0].length();
+        }
+      }
+      return new ReadTask(callback, cached, index, length);
+    }
 
-      File folder = new File(folderName);
-      if (!folder.exists()) {
-        // 如果文件夹不存在，尝试创建文件夹
-        folder.mkdirs();
+    /**
+     * 把已写入的数据落盘
+     */
+    void sync() {
+      try {
+        writer.force();
+      } catch (IOException e) {
+        e.printStackTrace();
       }
+    }
+  }
 
-      int newFileCount = 0; // 新文件计数
-      File newFile;
-      File existingFile = null;
+  /**
+   * 读取线程，读文件、查找堆栈都在这里进行，不占用写线程。
+   * 当前进程的分段按写线程记录的快照读取：已封存的分段加上当前分段快照时的长度，之后追加的内容不会读到。
+   */
+  static final class ReadHandler extends Handler {
 
-      // 生成新的文件名，直到文件名不重复
-      newFile = new File(folder, String.format("%s_%s.csv", fileName, newFileCount));
-      while (newFile.exists()) {
-        existingFile = newFile;
-        newFileCount++;
-        newFile = new File(folder, String.format("%s_%s.csv", fileName, newFileCount));
-      }
+    @NonNull private final String folder; // 存储日志的文件夹路径
+    @NonNull private final String fileName; // 当前进程分段文件的基础文件名
+
+    ReadHandler(@NonNull Looper looper, @NonNull String folder, @NonNull String fileName) {
+      super(checkNotNull(looper));
+      this.folder = checkNotNull(folder);
+      this.fileName = checkNotNull(fileName);
+    }
 
-      // 如果已存在文件，且文件大小超过最大限制，则返回新文件
-      if (existingFile != null) {
-        if (existingFile.length() >= maxFileSize) {
-          return newFile;
+    @Override public void handleMessage(@NonNull Message msg) {
+      switch (msg.what) {
+        case WHAT_READ: {
+          try {
+            readLog((ReadTask) msg.obj);
+          } catch (Exception e) {
+            e.printStackTrace();
+          }
+        }
+        break;
+        case WHAT_FIND_TRACE: {
+          TraceQuery query = (TraceQuery) msg.obj;
+          String line = null;
+          try {
+            line = findTrace(folder, query.id);
+          } catch (Exception e) {
+            e.printStackTrace();
+          }
+          query.callback.onTraceFound(line);
         }
-        return existingFile;
+        break;
+        case WHAT_CHECK_SEQUENCE: {
+          LogSequenceCheck.Report report;
+          try {
+            report = checkSequence();
+          } catch (IOException e) {
+            e.printStackTrace();
+            report = new LogSequenceCheck().finish();
+          }
+          ((SequenceCallback) msg.obj).onChecked(report);
+        }
+        break;
       }
+    }
 
-      return newFile; // 如果没有找到现有文件，返回新文件
+    /**
+     * 按写入顺序（最早的分段在前）读取当前进程的全部日志并检查序号
+     */
+    @NonNull private LogSequenceCheck.Report checkSequence() throws IOException {
+      File[] files = LogSegments.list(new File(folder), fileName);
+      LogSequenceCheck check = new LogSequenceCheck();
+      for (int i = files.length - 1; i >= 0; i--) {
+        try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader(new FileInputStream(files[i]), UTF_8))) {
+          String line;
+          while ((line = reader.readLine()) != null) {
+            check.add(line);
+          }
+        }
+      }
+      return check.finish();
     }
 
     /**
-     * 从日志文件中读取最近的日志行。
-     * 如果日志内容超过一个文件，则跨文件整合最新日志。
+     * 读取最近的日志行，最新的在前。
+     * 当前进程先取内存中最近写入的行，不够时再从文件中读取更早的日志，文件中最后的若干行就是内存中的这些行，读取时跳过。
+     * 其他进程的分段文件各自读取最近的日志，最后按时间戳做 k 路归并。
      */
-    private void readLog(@NonNull String folderName, @NonNull String fileName, LogCallback callback) throws Exception {
-      File folder = new File(folderName);
+    private void readLog(@NonNull ReadTask task) throws IOException {
+      List<String> cached = task.cached;
+      LogCallback callback = task.callback;
+
+      File folder = new File(this.folder);
       if (!folder.exists()) {
-        callback.onLogsRead(null);// 如果文件夹不存在，返回空内容
+        callback.onLogsRead(cached.isEmpty() ? null : cached);// 如果文件夹不存在，返回空内容
         return;
       }
 
-      // 获取所有日志文件并按编号排序
-      File[] files = folder.listFiles((dir, name) -> name.startsWith(fileName) && name.endsWith(".csv"));
-      if (files == null || files.length == 0) {
-        callback.onLogsRead(null);//  // 没有日志文件
-        return;
+      Map<String, File[]> groups = LogSegments.listAll(folder);
+      List<List<String>> sources = new ArrayList<>(groups.size() + 1);
+      LinkedList<String> own = new LinkedList<>(cached);
+      if (cached.size() < MAX_READ_LINES) {
+        File[] files = groups.get(fileName);
+        if (files != null) {
+          readRecent(files, own, cached.size(), task);
+        }
+      }
+      sources.add(own);
+      for (Map.Entry<String, File[]> group : groups.entrySet()) {
+        if (!group.getKey().equals(fileName)) {
+          LinkedList<String> lines = new LinkedList<>();
+          readRecent(group.getValue(), lines, 0, null);
+          sources.add(lines);
+        }
       }
-      Arrays.sort(files, (f1, f2) -> {
-        String num1 = f1.getName().replace(fileName + "_", "").replace(".csv", "");
-        String num2 = f2.getName().replace(fileName + "_", "").replace(".csv", "");
-        return Integer.compare(Integer.parseInt(num2), Integer.parseInt(num1)); // 降序排序
-      });
 
-      LinkedList<String> recentLogs = new LinkedList<>();
+      List<String> merged = sources.size() == 1 ? own : mergeNewestFirst(sources, MAX_READ_LINES);
+      callback.onLogsRead(merged.isEmpty() ? null : merged);
+    }
 
+    /**
+     * 从最新的分段开始读取，把最近的日志行（最新的在前）追加到 into，直到达到 MAX_READ_LINES
+     *
+     * @param files 一个进程的分段文件，最新的在前
+     * @param skip  跳过文件末尾的行数
+     * @param task  当前进程的读取快照，只读取快照时已经存在的内容；其他进程为 null，读取文件全部内容
+     */
+    private void readRecent(@NonNull File[] files, @NonNull LinkedList<String> into, int skip,
+                            @Nullable ReadTask task) throws IOException {
       // 从最新文件开始读取日志
       for (File file : files) {
+        long limit = Long.MAX_VALUE;
+        if (task != null) {
+          int index = LogSegments.segmentIndex(file.getName(), fileName);
+          if (index > task.activeIndex) {
+            continue; // 快照之后才创建的分段
+          }
+          if (index == task.activeIndex) {
+            limit = task.activeLength; // 快照之后追加的内容由 tail 监听接收
+          }
+        }
 
         //把文件中所有内容读取出来
-        BufferedReader reader = new BufferedReader(new FileReader(file));
         LinkedList<String> currentFileLines = new LinkedList<>();
-        String line;
-        while ((line = reader.readLine()) != null) {
-          currentFileLines.add(line);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new LogExporter.LimitedInputStream(new FileInputStream(file), limit), UTF_8))) {
+          String line;
+          while ((line = reader.readLine()) != null) {
+            currentFileLines.add(line);
+          }
         }
 
         // 将当前文件的内容添加到总结果中
-        while (!currentFileLines.isEmpty() && recentLogs.size() < MAX_READ_LINES) {
-          recentLogs.add(currentFileLines.pollLast());
+        while (!currentFileLines.isEmpty() && skip > 0) {
+          currentFileLines.pollLast();
+          skip--;
+        }
+        while (!currentFileLines.isEmpty() && into.size() < MAX_READ_LINES) {
+          into.add(currentFileLines.pollLast());
         }
         // 如果已经读取足够的行，退出循环
-        if (recentLogs.size() >= MAX_READ_LINES) {
+        if (into.size() >= MAX_READ_LINES) {
           break;
         }
       }
+    }
+
+    /**
+     * 从最新的文件开始查找包含指纹定义标记的日志行，当前进程的文件优先
+     */
+    @Nullable private String findTrace(@NonNull String folderName, @NonNull String id) throws IOException {
+      Map<String, File[]> groups = LogSegments.listAll(new File(folderName));
+      List<File> files = new ArrayList<>();
+      File[] own = groups.remove(fileName);
+      if (own != null) {
+        files.addAll(Arrays.asList(own));
+      }
+      for (File[] group : groups.values()) {
+        files.addAll(Arrays.asList(group));
+      }
+      for (File file : files) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8))) {
+          String line;
+          while ((line = reader.readLine()) != null) {
+            if (ThrowableFingerprints.isDefinition(line, id)) {
+              return line;
+            }
+          }
+        }
+      }
+      return null;
+    }
+  }
 
-       callback.onLogsRead(recentLogs);
+  /**
+   * 按时间戳归并多个各自有序（最新的在前）的日志列表
+   *
+   * @param sources 每个进程的日志行
+   * @param max     最多返回的行数
+   */
+  @NonNull static List<String> mergeNewestFirst(@NonNull List<List<String>> sources, int max) {
+    PriorityQueue<Cursor> queue = new PriorityQueue<>(Math.max(1, sources.size()),
+        (a, b) -> Long.compare(b.timestamp, a.timestamp));
+    for (List<String> source : sources) {
+      Iterator<String> iterator = source.iterator();
+      if (iterator.hasNext()) {
+        queue.add(new Cursor(iterator));
+      }
+    }
+    List<String> merged = new ArrayList<>(max);
+    while (!queue.isEmpty() && merged.size() < max) {
+      Cursor cursor = queue.poll();
+      merged.add(cursor.line);
+      if (cursor.advance()) {
+        queue.add(cursor);
+      }
     }
+    return merged;
   }
 
+  /**
+   * 归并时每个列表的读取位置
+   */
+  private static final class Cursor {
+    @NonNull private final Iterator<String> iterator;
+    String line;
+    long timestamp;
+
+    Cursor(@NonNull Iterator<String> iterator) {
+      this.iterator = iterator;
+      advance();
+    }
+
+    boolean advance() {
+      if (!iterator.hasNext()) {
+        return false;
+      }
+      line = iterator.next();
+      timestamp = timestampOf(line);
+      return true;
+    }
+
+    /**
+     * 行首的时间戳，无法解析时返回 0
+     */
+    private static long timestampOf(@NonNull String line) {
+      long value = 0;
+      for (int i = 0; i < line.length(); i++) {
+        char c = line.charAt(i);
+        if (c < '0' || c > '9') {
+          return i > 0 && c == ',' ? value : 0;
+        }
+        value = value * 10 + (c - '0');
+      }
+      return 0;
+    }
+  }
 
   // 用于日志读取完成后的回调接口
   public interface LogCallback {
     void onLogsRead(List<String> logs);
   }
+
+  // 用于实时接收新写入日志的回调接口
+  public interface TailListener {
+    void onLogWritten(@NonNull String line);
+  }
+
+  // 交给读取线程的读取任务：写线程记录的一致快照
+  private static final class ReadTask {
+    @NonNull final LogCallback callback;
+    @NonNull final List<String> cached; // 内存中最近写入的行，最新的在前
+    final int activeIndex; // 快照时当前分段的序号，-1 表示没有分段
+    final long activeLength; // 快照时当前分段已写入的长度
+
+    ReadTask(@NonNull LogCallback callback, @NonNull List<String> cached, int activeIndex, long activeLength) {
+      this.callback = callback;
+      this.cached = cached;
+      this.activeIndex = activeIndex;
+      this.activeLength = activeLength;
+    }
+  }
+
+  // 读取请求，可以同时注册 tail 监听
+  private static final class ReadRequest {
+    @NonNull final LogCallback callback;
+    @Nullable final TailListener tail;
+
+    ReadRequest(@NonNull LogCallback callback, @Nullable TailListener tail) {
+      this.callback = checkNotNull(callback);
+      this.tail = tail;
+    }
+  }
+
+  // 异常堆栈查找请求
+  private static final class TraceQuery {
+    @NonNull final String id;
+    @NonNull final TraceCallback callback;
+
+    TraceQuery(@NonNull String id, @NonNull TraceCallback callback) {
+      this.id = checkNotNull(id);
+      this.callback = checkNotNull(callback);
+    }
+  }
+
+  // 用于日志序号检查完成后的回调接口
+  public interface SequenceCallback {
+    void onChecked(@NonNull LogSequenceCheck.Report report);
+  }
+
+  // 用于异常堆栈查找完成后的回调接口
+  public interface TraceCallback {
+    void onTraceFound(@Nullable String line);
+  }
 }
@@ -0,0 +1,124 @@
+package com.orhanobut.logger;
+
+import static com.orhanobut.logger.Utils.ERROR;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 磁盘日志的持久化策略，决定何时调用 {@code FileChannel.force} 把数据真正落盘。
+ * <p>
+ * 每条日志写入后都已经进入系统页缓存，进程崩溃不会丢失；force 只用来防止断电或系统崩溃丢数据。
+ * 以下条件可以组合使用，任意一个满足即触发一次 force，期间累积的所有写入合并为一次提交：
+ * <ul>
+ *   <li>距第一条未落盘的写入 N 毫秒（组提交：计时从这一批的第一条开始，之后的写入不会推迟它）</li>
+ *   <li>未落盘的数据达到 N 字节</li>
+ *   <li>写入了 ERROR / ASSERT 级别的日志</li>
+ * </ul>
+ * 另外 ERROR / ASSERT 默认走优先通道：越过写线程队列中积压的低级别日志先写入，崩溃前打印的错误不会排在队尾。
+ *
+ * <pre><code>
+ *   DurabilityPolicy policy = DurabilityPolicy.newBuilder()
+ *       .syncIntervalMs(1000)  // (Optional) 最多延迟 1 秒落盘。Default 1000
+ *       .syncBytes(64 * 1024)  // (Optional) 累积 64KB 立即落盘。Default 0（不按字节数）
+ *       .syncOnError(true)     // (Optional) ERROR/ASSERT 立即落盘。Default true
+ *       .errorsFirst(true)     // (Optional) ERROR/ASSERT 越过积压的日志先写入。Default true
+ *       .build();
+ * </code></pre>
+ */
+public final class DurabilityPolicy {
+
+  private static final DurabilityPolicy DEFAULT = newBuilder().build();
+
+  final long syncIntervalMs; // 第一条未落盘的写入之后多久落盘，0 表示不定时
+  final long syncBytes; // 按累积字节数落盘，0 表示不按字节数
+  final boolean syncOnError; // 错误级别日志是否立即落盘
+  final boolean errorsFirst; // 错误级别日志是否越过队列中积压的日志先写入
+
+  private DurabilityPolicy(@NonNull Builder builder) {
+    syncIntervalMs = builder.syncIntervalMs;
+    syncBytes = builder.syncBytes;
+    syncOnError = builder.syncOnError;
+    errorsFirst = builder.errorsFirst;
+  }
+
+  @NonNull public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * 默认策略：最多延迟 1 秒落盘，ERROR/ASSERT 立即落盘
+   */
+  @NonNull public static DurabilityPolicy defaultPolicy() {
+    return DEFAULT;
+  }
+
+  /**
+   * 从不主动 force，完全交给系统回写
+   */
+  @NonNull public static DurabilityPolicy none() {
+    return newBuilder().syncIntervalMs(0).syncOnError(false).build();
+  }
+
+  /**
+   * 每次写入都立即 force，最安全也最慢
+   */
+  @NonNull public static DurabilityPolicy always() {
+    return newBuilder().syncIntervalMs(0).syncBytes(1).build();
+  }
+
+  /**
+   * 写入一条日志后是否需要立即落盘
+   *
+   * @param priority      刚写入的日志级别
+   * @param unsyncedBytes 自上次落盘以来写入的字节数
+   */
+  boolean shouldSyncNow(int priority, long unsyncedBytes) {
+    if (syncOnError && priority >= ERROR) {
+      return true;
+    }
+    return syncBytes > 0 && unsyncedBytes >= syncBytes;
+  }
+
+  /**
+   * 该级别的日志是否走优先通道
+   *
+   * @param priority 日志级别
+   */
+  boolean isUrgent(int priority) {
+    return errorsFirst && priority >= ERROR;
+  }
+
+  public static final class Builder {
+    long syncIntervalMs = 1000;
+    long syncBytes = 0;
+    boolean syncOnError = true;
+    boolean errorsFirst = true;
+
+    private Builder() {
+    }
+
+    @NonNull public Builder syncIntervalMs(long val) {
+      syncIntervalMs = Math.max(0, val);
+      return this;
+    }
+
+    @NonNull public Builder syncBytes(long val) {
+      syncBytes = Math.max(0, val);
+      return this;
+    }
+
+    @NonNull public Builder syncOnError(boolean val) {
+      syncOnError = val;
+      return this;
+    }
+
+    @NonNull public Builder errorsFirst(boolean val) {
+      errorsFirst = val;
+      return this;
+    }
+
+    @NonNull public DurabilityPolicy build() {
+      return new DurabilityPolicy(this);
+    }
+  }
+}
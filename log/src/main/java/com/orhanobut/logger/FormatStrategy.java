@@ -19,5 +19,17 @@ import androidx.annotation.Nullable;
    * @param message 日志消息内容
    */
   void log(int priority, @Nullable String tag, @NonNull String message);
+
+  /**
+   * 记录一条带键值对的结构化日志。默认把键值对拼接到消息末尾。
+   *
+   * @param priority 日志优先级（如 DEBUG、INFO 等）
+   * @param tag 日志标签
+   * @param message 日志消息内容
+   * @param fields 键值对，仅在本次调用期间有效
+   */
+  default void log(int priority, @Nullable String tag, @NonNull String message, @NonNull LogFields fields) {
+    log(priority, tag, fields.appendTo(message));
+  }
 }
 
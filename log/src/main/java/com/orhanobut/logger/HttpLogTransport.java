@@ -0,0 +1,59 @@
+package com.orhanobut.logger;
+
+import static com.orhanobut.logger.Utils.checkNotNull;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * 通过 {@link HttpURLConnection} POST 上传日志，请求体为 gzip 压缩的 CSV 行。
+ * <p>
+ * 请求头 {@code X-Log-Segment} / {@code X-Log-Offset} 标识这批数据在分段中的位置，服务端可据此去重。
+ * 2xx 视为成功。
+ */
+final class HttpLogTransport implements LogShipper.Transport {
+
+  private static final int TIMEOUT_MS = 15_000;
+
+  @NonNull private final String endpoint;
+
+  HttpLogTransport(@NonNull String endpoint) {
+    this.endpoint = checkNotNull(endpoint);
+  }
+
+  @Override public boolean send(@NonNull String segment, long offset, @NonNull byte[] gzipped) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(endpoint).openConnection();
+    try {
+      connection.setRequestMethod("POST");
+      connection.setConnectTimeout(TIMEOUT_MS);
+      connection.setReadTimeout(TIMEOUT_MS);
+      connection.setDoOutput(true);
+      connection.setFixedLengthStreamingMode(gzipped.length);
+      connection.setRequestProperty("Content-Type", "text/csv; charset=utf-8");
+      connection.setRequestProperty("Content-Encoding", "gzip");
+      connection.setRequestProperty("X-Log-Segment", segment);
+      connection.setRequestProperty("X-Log-Offset", Long.toString(offset));
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(gzipped);
+      }
+      int code = connection.getResponseCode();
+      // 读完响应体，连接才能被复用
+      InputStream body = code >= 400 ? connection.getErrorStream() : connection.getInputStream();
+      if (body != null) {
+        byte[] skip = new byte[512];
+        while (body.read(skip) > 0) {
+          // discard
+        }
+        body.close();
+      }
+      return code >= 200 && code < 300;
+    } finally {
+      connection.disconnect();
+    }
+  }
+}
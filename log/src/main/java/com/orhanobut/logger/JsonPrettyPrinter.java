@@ -0,0 +1,336 @@
+package com.orhanobut.logger;
+
+import static com.orhanobut.logger.Utils.checkNotNull;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 单遍扫描的 JSON 格式化器，不构建 JSONObject / JSONArray 对象树。
+ * <p>
+ * 一边校验一边把缩进后的内容直接写入输出缓冲区，输出格式与 {@code JSONObject.toString(2)} 一致
+ * （字符串和数字按原文输出）。遇到格式错误（包括不符合 JSON 语法的数字）时停止并返回错误描述，
+ * 已经输出的部分保留在缓冲区中。输出长度在复制单个字符串时也会检查，超长的字符串不会被完整复制。
+ */
+final class JsonPrettyPrinter {
+
+  private static final String TRUNCATED = "...(truncated)";
+  private static final String[] LITERALS = {"true", "false", "null"};
+
+  private final int indent; // 每层缩进的空格数
+  private final int maxChars; // 最多输出的字符数，0 表示不限制
+
+  /**
+   * @param indent   每层缩进的空格数
+   * @param maxChars 最多输出的字符数，超出后截断，0 表示不限制
+   */
+  JsonPrettyPrinter(int indent, int maxChars) {
+    this.indent = indent;
+    this.maxChars = maxChars;
+  }
+
+  /**
+   * 格式化 json 并追加到 out。顶层必须是对象或数组。
+   *
+   * @param json 原始内容
+   * @param out  输出缓冲区
+   * @return 格式正确（或因超出长度被截断）时返回 null，否则返回错误描述
+   */
+  @Nullable String print(@NonNull CharSequence json, @NonNull StringBuilder out) {
+    checkNotNull(json);
+    checkNotNull(out);
+
+    return new Scanner(json, out, maxChars > 0 ? out.length() + maxChars : Integer.MAX_VALUE).run();
+  }
+
+  /**
+   * 一次格式化的扫描状态
+   */
+  private final class Scanner {
+    @NonNull private final CharSequence in;
+    @NonNull private final StringBuilder out;
+    private final int limit;
+    private int pos;
+    private int depth;
+    private boolean truncated; // 复制字符串时达到了长度上限
+
+    Scanner(@NonNull CharSequence in, @NonNull StringBuilder out, int limit) {
+      this.in = in;
+      this.out = out;
+      this.limit = limit;
+    }
+
+    @Nullable String run() {
+      skipWhitespace();
+      if (pos >= in.length() || (in.charAt(pos) != '{' && in.charAt(pos) != '[')) {
+        return error("expected '{' or '['");
+      }
+      // 容器栈：true 表示对象，false 表示数组
+      boolean[] stack = new boolean[16];
+      boolean expectValue = true; // 下一个 token 应该是值（或对象的键）
+      boolean afterOpen = false; // 刚读到 '{' 或 '['
+
+      while (true) {
+        if (out.length() >= limit) {
+          return truncate();
+        }
+        skipWhitespace();
+        if (pos >= in.length()) {
+          return depth == 0 && !expectValue ? null : error("unexpected end of input");
+        }
+        char c = in.charAt(pos);
+
+        if (depth == 0 && !expectValue) {
+          return error("unexpected trailing content");
+        }
+
+        if (expectValue) {
+          boolean inObject = depth > 0 && stack[depth - 1];
+          if (afterOpen && (c == '}' || c == ']')) {
+            // 空容器直接闭合为 {} 或 []
+            if (c != (inObject ? '}' : ']')) {
+              return error("mismatched '" + c + "'");
+            }
+            pos++;
+            depth--;
+            out.append(c);
+            afterOpen = false;
+            expectValue = false;
+            continue;
+          }
+          if (afterOpen) {
+            newLine(depth);
+            afterOpen = false;
+          }
+          if (inObject) {
+            // 对象成员：键、冒号，然后读取值
+            if (c != '"') {
+              return error("expected string key");
+            }
+            String err = copyString();
+            if (err != null || truncated) {
+              return truncated ? truncate() : err;
+            }
+            skipWhitespace();
+            if (pos >= in.length() || in.charAt(pos) != ':') {
+              return error("expected ':'");
+            }
+            pos++;
+            out.append(": ");
+            skipWhitespace();
+            if (pos >= in.length()) {
+              return error("unexpected end of input");
+            }
+            c = in.charAt(pos);
+          }
+          if (c == '{' || c == '[') {
+            if (depth == stack.length) {
+              boolean[] grown = new boolean[depth * 2];
+              System.arraycopy(stack, 0, grown, 0, depth);
+              stack = grown;
+            }
+            stack[depth++] = c == '{';
+            pos++;
+            out.append(c);
+            afterOpen = true;
+            continue;
+          }
+          String err = copyScalar(c);
+          if (err != null || truncated) {
+            return truncated ? truncate() : err;
+          }
+          expectValue = false;
+          continue;
+        }
+
+        // 已读完一个值，接下来应该是 ',' 或闭合符
+        if (c == ',') {
+          pos++;
+          out.append(',');
+          newLine(depth);
+          expectValue = true;
+          if (stack[depth - 1]) {
+            // 对象中逗号之后必须是键，交给上面的对象成员分支处理
+            skipWhitespace();
+            if (pos < in.length() && in.charAt(pos) != '"') {
+              return error("expected string key");
+            }
+          }
+          continue;
+        }
+        if (c == '}' || c == ']') {
+          if (c != (stack[depth - 1] ? '}' : ']')) {
+            return error("mismatched '" + c + "'");
+          }
+          pos++;
+          depth--;
+          newLine(depth);
+          out.append(c);
+          continue;
+        }
+        return error("expected ',' or closing bracket");
+      }
+    }
+
+    /**
+     * 截断输出并追加截断标记，返回 null 表示没有格式错误
+     */
+    @Nullable private String truncate() {
+      out.setLength(Math.min(out.length(), limit));
+      out.append(TRUNCATED);
+      return null;
+    }
+
+    /**
+     * 原样复制一个字符串 token（含引号），校验转义序列。
+     * 复制的内容会超出长度上限时只复制到上限并设置 {@link #truncated}
+     */
+    @Nullable private String copyString() {
+      int start = pos++;
+      int room = limit - out.length();
+      while (pos < in.length()) {
+        if (pos - start >= room) {
+          out.append(in, start, start + Math.max(0, room));
+          truncated = true;
+          return null;
+        }
+        char c = in.charAt(pos);
+        if (c == '"') {
+          pos++;
+          out.append(in, start, pos);
+          return null;
+        }
+        if (c == '\\') {
+          if (pos + 1 >= in.length()) {
+            break;
+          }
+          char next = in.charAt(pos + 1);
+          if (next == 'u') {
+            if (pos + 6 > in.length() || !isHex(pos + 2, 4)) {
+              return error("invalid unicode escape");
+            }
+            pos += 6;
+            continue;
+          }
+          if ("\"\\/bfnrt".indexOf(next) < 0) {
+            return error("invalid escape");
+          }
+          pos += 2;
+          continue;
+        }
+        if (c < 0x20) {
+          return error("control character in string");
+        }
+        pos++;
+      }
+      out.append(in, start, Math.min(in.length(), start + Math.max(0, room)));
+      return error("unterminated string");
+    }
+
+    /**
+     * 复制字符串、数字或 true / false / null
+     */
+    @Nullable private String copyScalar(char c) {
+      if (c == '"') {
+        return copyString();
+      }
+      if (c == '-' || (c >= '0' && c <= '9')) {
+        return copyNumber();
+      }
+      for (String literal : LITERALS) {
+        if (regionMatches(literal)) {
+          pos += literal.length();
+          out.append(literal);
+          return null;
+        }
+      }
+      return error("unexpected character '" + c + "'");
+    }
+
+    /**
+     * 按 JSON 语法复制一个数字：{@code -? (0 | [1-9][0-9]*) (. [0-9]+)? ([eE] [+-]? [0-9]+)?}。
+     * 数字之后的内容（例如 {@code 01} 中的 1）交给调用方按分隔符检查
+     */
+    @Nullable private String copyNumber() {
+      int start = pos;
+      if (in.charAt(pos) == '-') {
+        pos++;
+      }
+      if (pos < in.length() && in.charAt(pos) == '0') {
+        pos++;
+      } else if (skipDigits() == 0) {
+        return error("invalid number");
+      }
+      if (pos < in.length() && in.charAt(pos) == '.') {
+        pos++;
+        if (skipDigits() == 0) {
+          return error("invalid number");
+        }
+      }
+      if (pos < in.length() && (in.charAt(pos) == 'e' || in.charAt(pos) == 'E')) {
+        pos++;
+        if (pos < in.length() && (in.charAt(pos) == '+' || in.charAt(pos) == '-')) {
+          pos++;
+        }
+        if (skipDigits() == 0) {
+          return error("invalid number");
+        }
+      }
+      out.append(in, start, pos);
+      return null;
+    }
+
+    /**
+     * @return 跳过的数字个数
+     */
+    private int skipDigits() {
+      int start = pos;
+      while (pos < in.length() && in.charAt(pos) >= '0' && in.charAt(pos) <= '9') {
+        pos++;
+      }
+      return pos - start;
+    }
+
+    private boolean regionMatches(@NonNull String literal) {
+      if (pos + literal.length() > in.length()) {
+        return false;
+      }
+      for (int i = 0; i < literal.length(); i++) {
+        if (in.charAt(pos + i) != literal.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private boolean isHex(int from, int count) {
+      for (int i = from; i < from + count; i++) {
+        if (Character.digit(in.charAt(i), 16) < 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void skipWhitespace() {
+      while (pos < in.length()) {
+        char c = in.charAt(pos);
+        if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+          return;
+        }
+        pos++;
+      }
+    }
+
+    private void newLine(int level) {
+      out.append('\n');
+      for (int i = level * indent; i > 0; i--) {
+        out.append(' ');
+      }
+    }
+
+    @NonNull private String error(@NonNull String reason) {
+      return reason + " at " + pos;
+    }
+  }
+}
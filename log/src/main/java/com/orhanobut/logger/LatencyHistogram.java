@@ -0,0 +1,98 @@
+package com.orhanobut.logger;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 以 2 的幂为桶边界的耗时直方图（单位纳秒）。
+ * <p>
+ * 记录只需要一次原子自增加两次分段累加，分位数按桶上界估算，误差在 2 倍以内。
+ * 桶与 {@link StripedCounter} 一样按线程分段，每个槽位有一组自己的桶，读取时按桶求和。
+ */
+final class LatencyHistogram {
+
+  private static final int BUCKETS = 64;
+
+  /**
+   * 每个槽位占用的 long 个数：一组桶之后再空出 8 个 long（64 字节），相邻槽位的桶不落在同一条缓存行
+   */
+  private static final int STRIDE = BUCKETS + 8;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(StripedCounter.STRIPES * STRIDE);
+  private final StripedCounter count = new StripedCounter();
+  private final StripedCounter total = new StripedCounter();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * 记录一次耗时
+   *
+   * @param nanos 耗时，单位纳秒
+   */
+  void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    buckets.incrementAndGet(StripedCounter.stripe() * STRIDE + bucketOf(nanos));
+    count.increment();
+    total.add(nanos);
+
+    long current;
+    while (nanos > (current = max.get())) {
+      if (max.compareAndSet(current, nanos)) {
+        break;
+      }
+    }
+  }
+
+  @NonNull LogMetrics.Latency snapshot() {
+    long[] counts = new long[BUCKETS];
+    long n = 0;
+    for (int stripe = 0; stripe < StripedCounter.STRIPES; stripe++) {
+      for (int i = 0; i < BUCKETS; i++) {
+        counts[i] += buckets.get(stripe * STRIDE + i);
+      }
+    }
+    for (int i = 0; i < BUCKETS; i++) {
+      n += counts[i];
+    }
+    return new LogMetrics.Latency(
+        count.sum(),
+        total.sum(),
+        max.get(),
+        percentile(counts, n, 0.5),
+        percentile(counts, n, 0.99));
+  }
+
+  void reset() {
+    for (int i = 0; i < buckets.length(); i++) {
+      buckets.set(i, 0);
+    }
+    count.reset();
+    total.reset();
+    max.set(0);
+  }
+
+  private static int bucketOf(long nanos) {
+    return 63 - Long.numberOfLeadingZeros(nanos | 1);
+  }
+
+  /**
+   * 按桶上界估算分位数
+   */
+  private static long percentile(long[] counts, long n, double fraction) {
+    if (n == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(n * fraction);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+}
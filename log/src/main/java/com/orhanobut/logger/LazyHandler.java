@@ -0,0 +1,177 @@
+package com.orhanobut.logger;
+
+import static com.orhanobut.logger.Utils.checkNotNull;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 延迟创建的后台 Handler，用于让日志初始化立即返回。
+ * <p>
+ * 创建时不启动线程；第一次发送消息时才启动 HandlerThread，Handler 由 {@link Factory} 在新线程上创建，
+ * 目录解析、分段查找等 IO 都在后台完成。线程就绪之前发送的消息先缓存在内存中，就绪后按原顺序转交，
+ * 之后的消息直接发送，不再加锁。
+ * <p>
+ * {@link #sendUrgent} 发送的消息进入单独的优先通道，越过队列中积压的普通消息先处理，优先消息之间保持先后顺序。
+ */
+final class LazyHandler {
+
+  /**
+   * 在后台线程上创建 Handler
+   */
+  interface Factory {
+    @NonNull Handler create(@NonNull Looper looper);
+  }
+
+  @NonNull private final String name;
+  @Nullable private final Factory factory;
+  private final List<Pending> pending = new ArrayList<>(); // 线程就绪前的消息，持有 this 锁访问
+  private final ConcurrentLinkedQueue<Pending> urgent = new ConcurrentLinkedQueue<>(); // 优先通道
+  private final Runnable drainUrgent = this::drainUrgent;
+  private volatile Handler handler;
+  private boolean started;
+
+  /**
+   * @param name    线程名称
+   * @param factory 在新线程上创建 Handler
+   */
+  LazyHandler(@NonNull String name, @NonNull Factory factory) {
+    this.name = checkNotNull(name);
+    this.factory = checkNotNull(factory);
+  }
+
+  /**
+   * 包装一个已经创建好的 Handler
+   */
+  LazyHandler(@NonNull Handler handler) {
+    this.name = "";
+    this.factory = null;
+    this.handler = checkNotNull(handler);
+    this.started = true;
+  }
+
+  /**
+   * 发送消息，线程未就绪时先缓存，必要时启动线程
+   *
+   * @return 消息是否被接收；线程的 Looper 已退出时返回 false，消息被丢弃
+   */
+  boolean send(int what, int arg1, @Nullable Object obj) {
+    Handler current = handler;
+    if (current == null) {
+      synchronized (this) {
+        current = handler;
+        if (current == null) {
+          pending.add(new Pending(what, arg1, obj));
+          start();
+          return true;
+        }
+      }
+    }
+    return current.sendMessage(current.obtainMessage(what, arg1, 0, obj));
+  }
+
+  boolean send(int what, @Nullable Object obj) {
+    return send(what, 0, obj);
+  }
+
+  /**
+   * 通过优先通道发送消息，排在所有普通消息之前处理
+   *
+   * @return 消息是否被接收，与 {@link #send} 相同
+   */
+  boolean sendUrgent(int what, int arg1, @Nullable Object obj) {
+    Pending message = new Pending(what, arg1, obj);
+    urgent.add(message);
+    Handler current = handler;
+    if (current == null) {
+      synchronized (this) {
+        current = handler;
+        if (current == null) {
+          // 线程就绪时会先处理优先通道
+          start();
+          return true;
+        }
+      }
+    }
+    if (current.postAtFrontOfQueue(drainUrgent)) {
+      return true;
+    }
+    urgent.remove(message);
+    return false;
+  }
+
+  /**
+   * 已创建的 Handler，线程未就绪时返回 null
+   */
+  @Nullable Handler peek() {
+    return handler;
+  }
+
+  /**
+   * 是否已经有消息发送过（线程已启动或正在启动）
+   */
+  synchronized boolean isStarted() {
+    return started;
+  }
+
+  /**
+   * 当前线程是否就是后台线程
+   */
+  boolean isCurrentThread() {
+    Handler current = handler;
+    return current != null && Looper.myLooper() == current.getLooper();
+  }
+
+  private void start() {
+    if (started || factory == null) {
+      return;
+    }
+    started = true;
+    new HandlerThread(name) {
+      @Override protected void onLooperPrepared() {
+        Handler created = factory.create(getLooper());
+        synchronized (LazyHandler.this) {
+          // 持锁转交，期间其他线程的消息只能排在后面，顺序不变
+          created.post(drainUrgent);
+          for (Pending message : pending) {
+            created.sendMessage(created.obtainMessage(message.what, message.arg1, 0, message.obj));
+          }
+          pending.clear();
+          handler = created;
+        }
+      }
+    }.start();
+  }
+
+  /**
+   * 在后台线程上依次处理优先通道中的消息。每条优先消息都会插入一次，之后的几次可能已经没有消息
+   */
+  private void drainUrgent() {
+    Handler current = handler;
+    Pending message;
+    while ((message = urgent.poll()) != null) {
+      current.handleMessage(current.obtainMessage(message.what, message.arg1, 0, message.obj));
+    }
+  }
+
+  private static final class Pending {
+    final int what;
+    final int arg1;
+    @Nullable final Object obj;
+
+    Pending(int what, int arg1, @Nullable Object obj) {
+      this.what = what;
+      this.arg1 = arg1;
+      this.obj = obj;
+    }
+  }
+}
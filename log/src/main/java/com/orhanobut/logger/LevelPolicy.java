@@ -0,0 +1,456 @@
+package com.orhanobut.logger;
+
+import static com.orhanobut.logger.Utils.ASSERT;
+import static com.orhanobut.logger.Utils.DEBUG;
+import static com.orhanobut.logger.Utils.ERROR;
+import static com.orhanobut.logger.Utils.INFO;
+import static com.orhanobut.logger.Utils.VERBOSE;
+import static com.orhanobut.logger.Utils.WARN;
+import static com.orhanobut.logger.Utils.checkNotNull;
+
+import android.os.Build;
+import android.os.FileObserver;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 按标签配置每个输出目标的最低日志级别，可以在运行时从配置文件重新加载。
+ * <p>
+ * 配置文件每行一条规则 {@code 标签 = 级别}，标签以 {@code *} 结尾表示前缀，单独的 {@code *} 表示默认级别；
+ * {@code [logcat]}、{@code [disk]} 开始的段落只对对应的输出目标生效，段落之前的规则对所有目标生效；
+ * 段落中有规则（包括段落中的 {@code *}）匹配时，不再查看段落之前的规则。
+ * 级别可以是 VERBOSE / DEBUG / INFO / WARN / ERROR / ASSERT / OFF 或对应的数字，{@code #} 开头的行是注释。
+ *
+ * <pre>
+ *   * = INFO
+ *   net* = DEBUG
+ *
+ *   [disk]
+ *   net.http = VERBOSE
+ *
+ *   [logcat]
+ *   * = WARN
+ * </pre>
+ *
+ * 规则在加载时编译为查找表：完整标签走哈希表，前缀走字符前缀树，查找不分配对象；
+ * {@link LoggerPrinter} 还会按标签缓存结果，替换策略时缓存一并失效。策略对象不可变，替换是一次引用赋值。
+ *
+ * <pre><code>
+ *   LevelPolicy.watch(new File(context.getFilesDir(), "log-levels.conf"));  // 文件变化时自动重新加载
+ *   LevelPolicy.setDefault(LevelPolicy.newBuilder()
+ *       .level("net*", Utils.DEBUG)               // 所有输出目标
+ *       .level(LevelPolicy.DISK, "*", Utils.INFO)   // 只对磁盘日志
+ *       .build());
+ * </code></pre>
+ */
+public final class LevelPolicy {
+
+  /**
+   * Logcat 输出目标
+   */
+  public static final String LOGCAT = "logcat";
+
+  /**
+   * 磁盘日志输出目标
+   */
+  public static final String DISK = "disk";
+
+  /**
+   * 关闭输出
+   */
+  public static final int OFF = ASSERT + 1;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final LevelPolicy ALL = newBuilder().build();
+
+  private static volatile LevelPolicy current = ALL;
+
+  @Nullable private static FileObserver observer; // 持有引用，否则会被回收而停止监听
+
+  @NonNull private final Table common; // 对所有输出目标生效的规则
+  @NonNull private final Map<String, Table> scoped; // 输出目标 -> 只对它生效的规则
+
+  private LevelPolicy(@NonNull Builder builder) {
+    common = builder.common.compile(null);
+    scoped = new HashMap<>();
+    for (Map.Entry<String, Rules> entry : builder.scoped.entrySet()) {
+      scoped.put(entry.getKey(), entry.getValue().compile(common));
+    }
+  }
+
+  @NonNull public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * 当前生效的策略，默认所有级别都输出
+   */
+  @NonNull public static LevelPolicy getDefault() {
+    return current;
+  }
+
+  /**
+   * 替换当前策略，之后的日志立即按新策略判断
+   */
+  public static void setDefault(@NonNull LevelPolicy policy) {
+    current = checkNotNull(policy);
+    Logger.invalidateLoggableCache();
+  }
+
+  /**
+   * 解析配置内容，无法识别的行会被忽略
+   */
+  @NonNull public static LevelPolicy parse(@NonNull String config) {
+    try {
+      return parse(new StringReader(checkNotNull(config)));
+    } catch (IOException e) {
+      throw new IllegalStateException(e); // StringReader 不会抛出
+    }
+  }
+
+  /**
+   * 读取并解析配置文件
+   */
+  @NonNull public static LevelPolicy load(@NonNull File file) throws IOException {
+    try (Reader reader = new InputStreamReader(new FileInputStream(checkNotNull(file)), UTF_8)) {
+      return parse(reader);
+    }
+  }
+
+  /**
+   * 加载配置文件并在它被修改、替换或删除时自动重新加载；文件不存在时所有级别都输出。
+   * 同一时间只监听一个文件，再次调用会替换之前的监听。
+   */
+  public static synchronized void watch(@NonNull final File file) {
+    checkNotNull(file);
+    unwatch();
+    // 监听所在目录而不是文件本身，这样先写临时文件再重命名的更新方式也能收到
+    File dir = file.getAbsoluteFile().getParentFile();
+    int mask = FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO | FileObserver.CREATE | FileObserver.DELETE;
+    observer = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+        ? new ConfigObserver(dir, mask, file)
+        : new ConfigObserver(dir.getPath(), mask, file);
+    observer.startWatching();
+    reload(file);
+  }
+
+  /**
+   * 停止监听配置文件，当前策略保持不变
+   */
+  public static synchronized void unwatch() {
+    if (observer != null) {
+      observer.stopWatching();
+      observer = null;
+    }
+  }
+
+  private static void reload(@NonNull File file) {
+    if (!file.exists()) {
+      setDefault(ALL);
+      return;
+    }
+    try {
+      setDefault(load(file));
+    } catch (IOException ignored) {
+      // 读取失败时保留原有策略
+    }
+  }
+
+  /**
+   * 某个输出目标对该标签的最低级别
+   *
+   * @param scope 输出目标，例如 {@link #LOGCAT}、{@link #DISK}
+   * @param tag   日志标签
+   */
+  public int minLevel(@NonNull String scope, @Nullable String tag) {
+    Table table = scoped.get(scope);
+    return (table != null ? table : common).lookup(tag);
+  }
+
+  /**
+   * 某个输出目标是否输出该级别、标签的日志
+   */
+  public boolean isLoggable(@NonNull String scope, int priority, @Nullable String tag) {
+    return priority >= minLevel(scope, tag);
+  }
+
+  /**
+   * 规则匹配的标签：与格式化策略实际写出的一致，没有临时标签时是策略的默认标签（例如 PRETTY_LOGGER）
+   */
+  @Nullable static String effectiveTag(@NonNull FormatStrategy strategy, @Nullable String tag) {
+    if (strategy instanceof CsvFormatStrategy) {
+      return ((CsvFormatStrategy) strategy).formatTag(tag);
+    }
+    if (strategy instanceof PrettyFormatStrategy) {
+      return ((PrettyFormatStrategy) strategy).formatTag(tag);
+    }
+    return tag;
+  }
+
+  @NonNull private static LevelPolicy parse(@NonNull Reader reader) throws IOException {
+    Builder builder = newBuilder();
+    String scope = null;
+    BufferedReader lines = new BufferedReader(reader);
+    String line;
+    while ((line = lines.readLine()) != null) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      if (line.startsWith("[") && line.endsWith("]")) {
+        scope = line.substring(1, line.length() - 1).trim();
+        continue;
+      }
+      int eq = line.indexOf('=');
+      if (eq <= 0) {
+        continue;
+      }
+      int level = parseLevel(line.substring(eq + 1).trim());
+      if (level < 0) {
+        continue;
+      }
+      String pattern = line.substring(0, eq).trim();
+      if (scope == null) {
+        builder.level(pattern, level);
+      } else {
+        builder.level(scope, pattern, level);
+      }
+    }
+    return builder.build();
+  }
+
+  private static int parseLevel(@NonNull String value) {
+    switch (value.toUpperCase(Locale.US)) {
+      case "VERBOSE":
+      case "V":
+        return VERBOSE;
+      case "DEBUG":
+      case "D":
+        return DEBUG;
+      case "INFO":
+      case "I":
+        return INFO;
+      case "WARN":
+      case "W":
+        return WARN;
+      case "ERROR":
+      case "E":
+        return ERROR;
+      case "ASSERT":
+      case "A":
+        return ASSERT;
+      case "OFF":
+        return OFF;
+      default:
+        try {
+          return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+          return -1;
+        }
+    }
+  }
+
+  /**
+   * 监听配置文件所在目录，只处理配置文件本身的事件
+   */
+  private static final class ConfigObserver extends FileObserver {
+    @NonNull private final File file;
+    @NonNull private final String name;
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    ConfigObserver(@NonNull File dir, int mask, @NonNull File file) {
+      super(dir, mask);
+      this.file = file;
+      this.name = file.getName();
+    }
+
+    @SuppressWarnings("deprecation") // 基于路径的构造方法在 API 29 废弃，只在更早的版本上使用
+    ConfigObserver(@NonNull String dir, int mask, @NonNull File file) {
+      super(dir, mask);
+      this.file = file;
+      this.name = file.getName();
+    }
+
+    @Override public void onEvent(int event, @Nullable String path) {
+      if (name.equals(path)) {
+        reload(file);
+      }
+    }
+  }
+
+  /**
+   * 构建中的一组规则
+   */
+  private static final class Rules {
+    final Map<String, Integer> exact = new HashMap<>();
+    final Map<String, Integer> prefixes = new HashMap<>();
+    int fallback = -1; // "*" 对应的级别，-1 表示未配置
+
+    void put(@NonNull String pattern, int level) {
+      if (pattern.equals("*")) {
+        fallback = level;
+      } else if (pattern.endsWith("*")) {
+        prefixes.put(pattern.substring(0, pattern.length() - 1), level);
+      } else {
+        exact.put(pattern, level);
+      }
+    }
+
+    /**
+     * @param parent 本组规则都不匹配时使用的规则，为 null 时默认 VERBOSE
+     */
+    @NonNull Table compile(@Nullable Table parent) {
+      Node root = new Node();
+      for (Map.Entry<String, Integer> entry : prefixes.entrySet()) {
+        Node node = root;
+        String prefix = entry.getKey();
+        for (int i = 0; i < prefix.length(); i++) {
+          node = node.child(prefix.charAt(i), true);
+        }
+        node.level = entry.getValue();
+      }
+      return new Table(new HashMap<>(exact), root, fallback, parent);
+    }
+  }
+
+  /**
+   * 编译后的只读查找表
+   */
+  private static final class Table {
+    @NonNull final Map<String, Integer> exact;
+    @NonNull final Node prefixes;
+    final int fallback;
+    @Nullable final Table parent;
+
+    Table(@NonNull Map<String, Integer> exact, @NonNull Node prefixes, int fallback, @Nullable Table parent) {
+      this.exact = exact;
+      this.prefixes = prefixes;
+      this.fallback = fallback;
+      this.parent = parent;
+    }
+
+    /**
+     * 依次匹配完整标签、最长前缀、本表默认级别，都没有时交给上一级
+     */
+    int lookup(@Nullable String tag) {
+      if (tag != null) {
+        Integer level = exact.get(tag);
+        if (level != null) {
+          return level;
+        }
+        int matched = prefixes.level;
+        Node node = prefixes;
+        for (int i = 0; i < tag.length(); i++) {
+          node = node.child(tag.charAt(i), false);
+          if (node == null) {
+            break;
+          }
+          if (node.level >= 0) {
+            matched = node.level;
+          }
+        }
+        if (matched >= 0) {
+          return matched;
+        }
+      }
+      if (fallback >= 0) {
+        return fallback;
+      }
+      return parent != null ? parent.lookup(tag) : VERBOSE;
+    }
+  }
+
+  /**
+   * 前缀树节点，子节点按字符有序存放，查找时二分
+   */
+  private static final class Node {
+    @NonNull char[] keys = new char[0];
+    @NonNull Node[] children = new Node[0];
+    int level = -1; // 以该节点结束的前缀对应的级别，-1 表示没有
+
+    @Nullable Node child(char c, boolean create) {
+      int lo = 0;
+      int hi = keys.length - 1;
+      while (lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        if (keys[mid] < c) {
+          lo = mid + 1;
+        } else if (keys[mid] > c) {
+          hi = mid - 1;
+        } else {
+          return children[mid];
+        }
+      }
+      if (!create) {
+        return null;
+      }
+      char[] newKeys = new char[keys.length + 1];
+      Node[] newChildren = new Node[children.length + 1];
+      System.arraycopy(keys, 0, newKeys, 0, lo);
+      System.arraycopy(children, 0, newChildren, 0, lo);
+      System.arraycopy(keys, lo, newKeys, lo + 1, keys.length - lo);
+      System.arraycopy(children, lo, newChildren, lo + 1, children.length - lo);
+      Node node = new Node();
+      newKeys[lo] = c;
+      newChildren[lo] = node;
+      keys = newKeys;
+      children = newChildren;
+      return node;
+    }
+  }
+
+  public static final class Builder {
+    final Rules common = new Rules();
+    final Map<String, Rules> scoped = new HashMap<>();
+
+    private Builder() {
+    }
+
+    /**
+     * 对所有输出目标生效
+     *
+     * @param pattern 完整标签、以 {@code *} 结尾的前缀或单独的 {@code *}
+     * @param level   最低输出级别，{@link #OFF} 表示不输出
+     */
+    @NonNull public Builder level(@NonNull String pattern, int level) {
+      common.put(checkNotNull(pattern), level);
+      return this;
+    }
+
+    /**
+     * 只对指定输出目标生效
+     *
+     * @param scope   输出目标，例如 {@link #LOGCAT}、{@link #DISK}
+     * @param pattern 完整标签、以 {@code *} 结尾的前缀或单独的 {@code *}
+     * @param level   最低输出级别，{@link #OFF} 表示不输出
+     */
+    @NonNull public Builder level(@NonNull String scope, @NonNull String pattern, int level) {
+      Rules rules = scoped.get(checkNotNull(scope));
+      if (rules == null) {
+        rules = new Rules();
+        scoped.put(scope, rules);
+      }
+      rules.put(checkNotNull(pattern), level);
+      return this;
+    }
+
+    @NonNull public LevelPolicy build() {
+      return new LevelPolicy(this);
+    }
+  }
+}
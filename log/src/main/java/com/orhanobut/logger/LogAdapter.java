@@ -29,4 +29,24 @@ import androidx.annotation.Nullable;
    * @param message 日志消息的具体内容
    */
   void log(int priority, @Nullable String tag, @NonNull String message);
+
+  /**
+   * 输出一条带键值对的结构化日志。默认把键值对拼接到消息末尾。
+   *
+   * @param priority 日志级别，例如 DEBUG、WARNING
+   * @param tag 日志消息的标签
+   * @param message 日志消息的具体内容
+   * @param fields 键值对，仅在本次调用期间有效
+   */
+  default void log(int priority, @Nullable String tag, @NonNull String message, @NonNull LogFields fields) {
+    log(priority, tag, fields.appendTo(message));
+  }
+
+  /**
+   * 是否允许多个线程同时调用 log。返回 true 时 {@link LoggerPrinter} 不再为它加锁，
+   * 调用方之间不会因为这个适配器互相等待。
+   */
+  default boolean isConcurrent() {
+    return false;
+  }
 }
@@ -0,0 +1,142 @@
+package com.orhanobut.logger;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 结构化日志的链式构建器。
+ *
+ * <pre><code>
+ *   LogKit.atInfo().tag("net").kv("latencyMs", 42).kv("status", 200).log("done");
+ * </code></pre>
+ *
+ * 键值对会单独保存在磁盘日志中，便于按字段过滤。数值类型有专门的重载，不会装箱。
+ * 当前级别不输出时返回一个共享的空实现，所有方法直接返回，不产生任何分配；
+ * 输出时每个线程复用同一个构建器，因此不要跨线程或在调用 {@link #log(String)} 之后继续持有它。
+ * <p>
+ * 通过 {@link #tag(String)} 修改标签后，{@link #log(String)} 会按最终的标签重新判断是否输出；
+ * 但开始构建时的标签已被过滤时拿到的是空实现，需要按标签放行的日志请使用 {@link Logger#at(int, String)}。
+ */
+public final class LogEventBuilder {
+
+  /**
+   * 级别被过滤时返回的空实现
+   */
+  static final LogEventBuilder DISABLED = new LogEventBuilder(null);
+
+  @Nullable private final LoggerPrinter printer;
+  @Nullable private final LogFields fields;
+  private int priority;
+  @Nullable private String tag;
+  @Nullable private String startTag; // 开始构建时已判断过的标签
+  @Nullable private Throwable throwable;
+  boolean building; // 已开始构建，还没有调用 log()
+  boolean printing; // 正在 log() 中输出，嵌套调用时不能复用
+
+  LogEventBuilder(@Nullable LoggerPrinter printer) {
+    this.printer = printer;
+    this.fields = printer == null ? null : new LogFields();
+  }
+
+  /**
+   * 开始构建一条新日志
+   */
+  void start(int priority, @Nullable String tag) {
+    this.priority = priority;
+    this.tag = tag;
+    this.startTag = tag;
+    this.throwable = null;
+    this.building = true;
+  }
+
+  /**
+   * 当前级别是否会被输出
+   */
+  public boolean isEnabled() {
+    return printer != null;
+  }
+
+  @NonNull public LogEventBuilder tag(@Nullable String tag) {
+    if (printer != null) {
+      this.tag = tag;
+    }
+    return this;
+  }
+
+  /**
+   * 附带异常信息
+   */
+  @NonNull public LogEventBuilder withCause(@Nullable Throwable throwable) {
+    if (printer != null) {
+      this.throwable = throwable;
+    }
+    return this;
+  }
+
+  @NonNull public LogEventBuilder kv(@NonNull String key, int value) {
+    if (fields != null) {
+      fields.add(key, (long) value);
+    }
+    return this;
+  }
+
+  @NonNull public LogEventBuilder kv(@NonNull String key, long value) {
+    if (fields != null) {
+      fields.add(key, value);
+    }
+    return this;
+  }
+
+  @NonNull public LogEventBuilder kv(@NonNull String key, double value) {
+    if (fields != null) {
+      fields.add(key, value);
+    }
+    return this;
+  }
+
+  @NonNull public LogEventBuilder kv(@NonNull String key, boolean value) {
+    if (fields != null) {
+      fields.add(key, value);
+    }
+    return this;
+  }
+
+  @NonNull public LogEventBuilder kv(@NonNull String key, @Nullable String value) {
+    if (fields != null) {
+      fields.add(key, (Object) value);
+    }
+    return this;
+  }
+
+  @NonNull public LogEventBuilder kv(@NonNull String key, @Nullable Object value) {
+    if (fields != null) {
+      fields.add(key, value);
+    }
+    return this;
+  }
+
+  /**
+   * 输出日志，之后构建器被回收复用
+   *
+   * @param message 日志内容
+   */
+  public void log(@Nullable String message) {
+    if (printer == null || fields == null) {
+      return;
+    }
+    building = false;
+    printing = true;
+    try {
+      // 标签改过时按最终的标签重新判断，按标签配置的规则才能生效
+      if (Utils.equals(tag, startTag) || printer.isLoggable(priority, tag)) {
+        printer.log(priority, tag, message, throwable, fields);
+      }
+    } finally {
+      fields.clear();
+      tag = null;
+      startTag = null;
+      throwable = null;
+      printing = false;
+    }
+  }
+}
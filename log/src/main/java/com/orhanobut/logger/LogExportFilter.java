@@ -0,0 +1,119 @@
+package com.orhanobut.logger;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 导出日志时的筛选条件：时间范围、标签、最低级别。
+ * <p>
+ * 不设置任何条件时导出全部日志，分段文件原样写入归档。
+ *
+ * <pre><code>
+ *   LogExportFilter filter = LogExportFilter.newBuilder()
+ *       .from(System.currentTimeMillis() - 3600_000)  // (Optional) 起始时间（含）。Default 不限
+ *       .to(System.currentTimeMillis())               // (Optional) 结束时间（含）。Default 不限
+ *       .tags("net", "db")                            // (Optional) 只导出这些标签。Default 全部
+ *       .minLevel(Utils.WARN)                         // (Optional) 最低级别。Default 全部
+ *       .build();
+ * </code></pre>
+ */
+public final class LogExportFilter {
+
+  private static final LogExportFilter ALL = newBuilder().build();
+
+  final long from; // 起始时间戳（含）
+  final long to; // 结束时间戳（含）
+  @Nullable final Set<String> tags; // 为 null 表示不限标签
+  final int minLevel; // 最低级别
+
+  private LogExportFilter(@NonNull Builder builder) {
+    from = builder.from;
+    to = builder.to;
+    tags = builder.tags;
+    minLevel = builder.minLevel;
+  }
+
+  @NonNull public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * 导出全部日志
+   */
+  @NonNull public static LogExportFilter all() {
+    return ALL;
+  }
+
+  /**
+   * 是否只有时间范围条件
+   */
+  boolean isTimeOnly() {
+    return tags == null && minLevel <= Utils.VERBOSE;
+  }
+
+  /**
+   * 时间范围是否完全包含 [start, end]
+   */
+  boolean covers(long start, long end) {
+    return from <= start && end <= to;
+  }
+
+  /**
+   * 时间范围是否与 [start, end] 有交集
+   */
+  boolean overlaps(long start, long end) {
+    return from <= end && start <= to;
+  }
+
+  /**
+   * 一行日志是否满足条件，格式不正确的行不导出
+   */
+  boolean accept(@NonNull String line) {
+    CsvLogRecord record = CsvLogRecord.parse(line);
+    if (record == null || record.timestamp < from || record.timestamp > to) {
+      return false;
+    }
+    if (tags != null && !tags.contains(record.tag)) {
+      return false;
+    }
+    return minLevel <= Utils.VERBOSE || Utils.logLevel(record.level) >= minLevel;
+  }
+
+  public static final class Builder {
+    long from = Long.MIN_VALUE;
+    long to = Long.MAX_VALUE;
+    Set<String> tags;
+    int minLevel = Utils.VERBOSE;
+
+    private Builder() {
+    }
+
+    @NonNull public Builder from(long val) {
+      from = val;
+      return this;
+    }
+
+    @NonNull public Builder to(long val) {
+      to = val;
+      return this;
+    }
+
+    @NonNull public Builder tags(@Nullable String... val) {
+      tags = val == null || val.length == 0 ? null : new HashSet<>(Arrays.asList(val));
+      return this;
+    }
+
+    @NonNull public Builder minLevel(int val) {
+      minLevel = val;
+      return this;
+    }
+
+    @NonNull public LogExportFilter build() {
+      return new LogExportFilter(this);
+    }
+  }
+}
@@ -0,0 +1,297 @@
+package com.orhanobut.logger;
+
+import static com.orhanobut.logger.Utils.checkNotNull;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 把日志分段导出为一个 tar 归档，用于上传或分享。
+ * <p>
+ * 完全满足条件的分段（没有标签、级别条件，且整段都在时间范围内）以 {@code <name>.csv} 原样写入，
+ * 内容通过 {@link FileChannel#transferTo} 直接从文件传输到输出，目标是文件时由内核完成拷贝；
+ * 需要筛选的分段逐行过滤后以 {@code <name>.csv.gz} 流式压缩写入。
+ * tar 头部需要预先知道条目大小，所以压缩条目会先流式压缩一遍只统计长度，再压缩一遍写出，
+ * 用 CPU 换取不产生临时文件，也不把内容读入内存。
+ */
+final class LogExporter {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int BLOCK = 512;
+
+  private LogExporter() {
+    // no instance
+  }
+
+  /**
+   * 导出目录中所有进程的日志分段
+   *
+   * @param folder 日志目录
+   * @param out    输出流，不会被关闭
+   * @param filter 筛选条件
+   * @return 写入归档的条目数
+   */
+  static int export(@NonNull File folder, @NonNull OutputStream out, @NonNull LogExportFilter filter)
+      throws IOException {
+    checkNotNull(folder);
+    checkNotNull(out);
+    checkNotNull(filter);
+
+    // 输出是文件时直接使用它的通道，transferTo 可以在内核中完成拷贝
+    WritableByteChannel target = out instanceof FileOutputStream
+        ? ((FileOutputStream) out).getChannel()
+        : Channels.newChannel(out);
+    int entries = 0;
+    for (Map.Entry<String, File[]> group : LogSegments.listAll(folder).entrySet()) {
+      File[] files = group.getValue();
+      // 按时间顺序写入，最旧的分段在前
+      for (int i = files.length - 1; i >= 0; i--) {
+        if (exportSegment(files[i], out, target, filter)) {
+          entries++;
+        }
+      }
+    }
+    out.write(new byte[BLOCK * 2]); // 归档结束标记
+    out.flush();
+    return entries;
+  }
+
+  private static boolean exportSegment(@NonNull File file, @NonNull OutputStream out,
+                                       @NonNull WritableByteChannel target, @NonNull LogExportFilter filter)
+      throws IOException {
+    long length = file.length();
+    if (length == 0) {
+      return false;
+    }
+    long first = firstTimestamp(file);
+    long last = file.lastModified(); // 分段中最后一行的写入时间不会晚于文件修改时间
+    if (last < first) {
+      last = Long.MAX_VALUE; // 系统时间被调整过，无法据此判断
+    }
+    if (first >= 0 && !filter.overlaps(first, last)) {
+      return false;
+    }
+
+    if (first >= 0 && filter.isTimeOnly() && filter.covers(first, last)) {
+      writeHeader(out, file.getName(), length, last);
+      out.flush();
+      try (FileInputStream in = new FileInputStream(file)) {
+        FileChannel channel = in.getChannel();
+        long position = 0;
+        while (position < length) {
+          long sent = channel.transferTo(position, length - position, target);
+          if (sent <= 0) {
+            break;
+          }
+          position += sent;
+        }
+        if (position < length) {
+          throw new IOException("short transfer for " + file.getName());
+        }
+      }
+      pad(out, length);
+      return true;
+    }
+
+    // 第一遍只统计压缩后的长度，没有匹配的行时跳过
+    // 两遍都只读取到此刻的长度，正在写入的分段之后追加的内容不影响结果
+    CountingOutputStream counter = new CountingOutputStream(null);
+    if (compress(file, length, counter, filter) == 0) {
+      return false;
+    }
+    long size = counter.count;
+    writeHeader(out, file.getName() + ".gz", size, last);
+    CountingOutputStream body = new CountingOutputStream(out);
+    compress(file, length, body, filter);
+    if (body.count != size) {
+      // 两遍之间文件内容被修改，已写出的头部无法修改
+      throw new IOException("segment changed during export: " + file.getName());
+    }
+    pad(out, size);
+    return true;
+  }
+
+  /**
+   * 逐行过滤并压缩到 out
+   *
+   * @param length 只读取文件的前 length 个字节
+   * @return 满足条件的行数
+   */
+  private static int compress(@NonNull File file, long length, @NonNull OutputStream out,
+                              @NonNull LogExportFilter filter) throws IOException {
+    int lines = 0;
+    GZIPOutputStream gzip = new GZIPOutputStream(new NonClosingOutputStream(out), 8192);
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(new LimitedInputStream(new FileInputStream(file), length), UTF_8))) {
+      Writer writer = new OutputStreamWriter(gzip, UTF_8);
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (filter.accept(line)) {
+          writer.write(line);
+          writer.write('\n');
+          lines++;
+        }
+      }
+      writer.flush();
+    }
+    gzip.finish();
+    return lines;
+  }
+
+  /**
+   * 分段第一行的时间戳，无法解析时返回 -1
+   */
+  private static long firstTimestamp(@NonNull File file) throws IOException {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8), 256)) {
+      CsvLogRecord record = CsvLogRecord.parse(reader.readLine());
+      return record == null ? -1 : record.timestamp;
+    }
+  }
+
+  /**
+   * 写入 ustar 格式的条目头部
+   */
+  private static void writeHeader(@NonNull OutputStream out, @NonNull String name, long size, long mtime)
+      throws IOException {
+    byte[] header = new byte[BLOCK];
+    put(header, 0, 100, name);
+    put(header, 100, 8, "0000644");
+    put(header, 108, 8, "0000000");
+    put(header, 116, 8, "0000000");
+    put(header, 124, 12, octal(size, 11));
+    put(header, 136, 12, octal(Math.max(0, mtime / 1000), 11));
+    header[156] = '0'; // 普通文件
+    put(header, 257, 6, "ustar");
+    put(header, 263, 2, "00");
+    // 计算校验和时校验和字段按 8 个空格计算
+    for (int i = 148; i < 156; i++) {
+      header[i] = ' ';
+    }
+    long checksum = 0;
+    for (byte b : header) {
+      checksum += b & 0xff;
+    }
+    put(header, 148, 7, octal(checksum, 6));
+    out.write(header);
+  }
+
+  private static void pad(@NonNull OutputStream out, long size) throws IOException {
+    int remainder = (int) (size % BLOCK);
+    if (remainder != 0) {
+      out.write(new byte[BLOCK - remainder]);
+    }
+  }
+
+  private static void put(@NonNull byte[] header, int offset, int length, @NonNull String value) {
+    byte[] bytes = value.getBytes(UTF_8);
+    System.arraycopy(bytes, 0, header, offset, Math.min(length, bytes.length));
+  }
+
+  @NonNull private static String octal(long value, int digits) {
+    StringBuilder builder = new StringBuilder(Long.toOctalString(value));
+    while (builder.length() < digits) {
+      builder.insert(0, '0');
+    }
+    return builder.toString();
+  }
+
+  /**
+   * 统计写入的字节数，out 为 null 时只统计不输出
+   */
+  private static final class CountingOutputStream extends FilterOutputStream {
+    long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override public void write(int b) throws IOException {
+      count++;
+      if (out != null) {
+        out.write(b);
+      }
+    }
+
+    @Override public void write(@NonNull byte[] b, int off, int len) throws IOException {
+      count += len;
+      if (out != null) {
+        out.write(b, off, len);
+      }
+    }
+
+    @Override public void flush() throws IOException {
+      if (out != null) {
+        out.flush();
+      }
+    }
+  }
+
+  /**
+   * 最多读取 limit 个字节
+   */
+  static final class LimitedInputStream extends FilterInputStream {
+    private long remaining;
+
+    LimitedInputStream(@NonNull InputStream in, long limit) {
+      super(in);
+      remaining = limit;
+    }
+
+    @Override public int read() throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int b = in.read();
+      if (b >= 0) {
+        remaining--;
+      }
+      return b;
+    }
+
+    @Override public int read(@NonNull byte[] b, int off, int len) throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int read = in.read(b, off, (int) Math.min(len, remaining));
+      if (read > 0) {
+        remaining -= read;
+      }
+      return read;
+    }
+  }
+
+  /**
+   * 防止 GZIPOutputStream 结束时关闭外层输出
+   */
+  private static final class NonClosingOutputStream extends FilterOutputStream {
+    NonClosingOutputStream(@NonNull OutputStream out) {
+      super(out);
+    }
+
+    @Override public void write(@NonNull byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override public void close() throws IOException {
+      flush();
+    }
+  }
+}
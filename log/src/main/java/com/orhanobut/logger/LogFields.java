@@ -0,0 +1,182 @@
+package com.orhanobut.logger;
+
+import static com.orhanobut.logger.Utils.checkNotNull;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * 一条结构化日志附带的键值对。
+ * <p>
+ * 数值按原始类型存放在并行数组中，不装箱；对象在输出时才渲染为字符串。
+ * 实例随 {@link LogEventBuilder} 复用，只在一次 log 调用期间有效，需要跨线程保留时使用 {@link #copy()}。
+ * <p>
+ * 另外携带 {@link LoggerPrinter} 为每条日志分配的序号，没有键值对的日志也会带一个空的实例传递序号。
+ */
+final class LogFields {
+
+  private static final byte TYPE_LONG = 0;
+  private static final byte TYPE_DOUBLE = 1;
+  private static final byte TYPE_BOOLEAN = 2;
+  private static final byte TYPE_OBJECT = 3;
+
+  private static final String[] NO_KEYS = new String[0];
+  private static final byte[] NO_TYPES = new byte[0];
+  private static final long[] NO_LONGS = new long[0];
+  private static final double[] NO_DOUBLES = new double[0];
+  private static final Object[] NO_OBJECTS = new Object[0];
+
+  private String[] keys;
+  private byte[] types;
+  private long[] longs;
+  private double[] doubles;
+  private Object[] objects;
+  private int size;
+  private long sequence; // 日志序号，0 表示没有
+
+  LogFields() {
+    this(8);
+  }
+
+  private LogFields(int capacity) {
+    if (capacity == 0) {
+      // 没有键值对的副本只用来携带序号，不分配数组
+      keys = NO_KEYS;
+      types = NO_TYPES;
+      longs = NO_LONGS;
+      doubles = NO_DOUBLES;
+      objects = NO_OBJECTS;
+      return;
+    }
+    keys = new String[capacity];
+    types = new byte[capacity];
+    longs = new long[capacity];
+    doubles = new double[capacity];
+    objects = new Object[capacity];
+  }
+
+  void add(@NonNull String key, long value) {
+    int i = next(key, TYPE_LONG);
+    longs[i] = value;
+  }
+
+  void add(@NonNull String key, double value) {
+    int i = next(key, TYPE_DOUBLE);
+    doubles[i] = value;
+  }
+
+  void add(@NonNull String key, boolean value) {
+    int i = next(key, TYPE_BOOLEAN);
+    longs[i] = value ? 1 : 0;
+  }
+
+  void add(@NonNull String key, @Nullable Object value) {
+    int i = next(key, TYPE_OBJECT);
+    objects[i] = value;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * 日志序号，由 {@link LoggerPrinter} 在分发前设置，0 表示没有
+   */
+  long sequence() {
+    return sequence;
+  }
+
+  void sequence(long sequence) {
+    this.sequence = sequence;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  @NonNull String key(int index) {
+    return keys[index];
+  }
+
+  /**
+   * 把第 index 个值追加到 out，数值不经过字符串中转
+   */
+  void appendValue(int index, @NonNull StringBuilder out) {
+    switch (types[index]) {
+      case TYPE_LONG:
+        out.append(longs[index]);
+        break;
+      case TYPE_DOUBLE:
+        out.append(doubles[index]);
+        break;
+      case TYPE_BOOLEAN:
+        out.append(longs[index] != 0);
+        break;
+      default:
+        ObjectRenderer.getDefault().render(objects[index], out);
+        break;
+    }
+  }
+
+  /**
+   * 没有专门处理键值对的输出目标使用此格式：{@code message {k1=v1, k2=v2}}
+   */
+  @NonNull String appendTo(@NonNull String message) {
+    if (size == 0) {
+      return message;
+    }
+    StringBuilder builder = new StringBuilder(message.length() + size * 16);
+    builder.append(message).append(" {");
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+      builder.append(keys[i]).append('=');
+      appendValue(i, builder);
+    }
+    return builder.append('}').toString();
+  }
+
+  /**
+   * 复制一份独立的键值对，对象值会先渲染为字符串，避免之后被调用方修改
+   */
+  @NonNull LogFields copy() {
+    LogFields copy = new LogFields(size);
+    copy.sequence = sequence;
+    for (int i = 0; i < size; i++) {
+      copy.keys[i] = keys[i];
+      copy.types[i] = types[i];
+      copy.longs[i] = longs[i];
+      copy.doubles[i] = doubles[i];
+      if (types[i] == TYPE_OBJECT) {
+        copy.objects[i] = ObjectRenderer.getDefault().render(objects[i]);
+      }
+    }
+    copy.size = size;
+    return copy;
+  }
+
+  void clear() {
+    Arrays.fill(keys, 0, size, null);
+    Arrays.fill(objects, 0, size, null);
+    size = 0;
+    sequence = 0;
+  }
+
+  private int next(@NonNull String key, byte type) {
+    checkNotNull(key);
+    if (size == keys.length) {
+      int capacity = Math.max(8, size * 2);
+      keys = Arrays.copyOf(keys, capacity);
+      types = Arrays.copyOf(types, capacity);
+      longs = Arrays.copyOf(longs, capacity);
+      doubles = Arrays.copyOf(doubles, capacity);
+      objects = Arrays.copyOf(objects, capacity);
+    }
+    keys[size] = key;
+    types[size] = type;
+    return size++;
+  }
+}
@@ -3,10 +3,55 @@ package com.orhanobut.logger
 import android.app.Activity
 import android.content.Context
 import com.kit.log.ui.LogActivity.Companion.startActivity
+import java.io.Closeable
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.OutputStream
 
 object LogKit {
 
-    private const val TAG = "LogKit"
+    @PublishedApi
+    internal const val TAG = "LogKit"
+
+    /**
+     * 最低输出级别，低于此级别的 LogKit 调用直接返回，运行时可以随时修改。
+     *
+     * 库本身不附带任何 R8 规则，默认情况下它只是一个普通的运行时判断。
+     * 希望 release 包彻底删除低级别日志的应用，可以在自己模块的 proguard-rules.pro 中让 R8 把它当作常量（这里 4 = INFO），
+     * 内联到调用处的 `if (级别 >= minLevel)` 判断会被折叠，低级别的日志代码连同 lambda 一起被删除：
+     * ```
+     * -assumevalues class com.orhanobut.logger.LogKit {
+     *     int minLevel return 4;
+     * }
+     * ```
+     * 加入这条规则后，release 包中对 minLevel 的赋值不再生效；需要调整级别时修改规则中的数值，
+     * 或者删除这条规则恢复运行时判断。debug 包不经过 R8，不受影响。
+     */
+    @JvmField
+    var minLevel: Int = Utils.VERBOSE
+
+    /**
+     * 判断某个级别和标签的日志是否会被输出，先比较 [minLevel]，再查询适配器的缓存结果
+     */
+    @Suppress("NOTHING_TO_INLINE")
+    inline fun isLoggable(priority: Int, tag: String): Boolean {
+        return priority >= minLevel && isLoggableByAdapters(priority, tag)
+    }
+
+    /*
+     * Logger 和 Printer 不是公开 API，公开的内联函数不能直接访问，统一经过下面两个非内联的入口
+     */
+
+    @PublishedApi
+    internal fun isLoggableByAdapters(priority: Int, tag: String): Boolean {
+        return Logger.isLoggable(priority, tag)
+    }
+
+    @PublishedApi
+    internal fun print(priority: Int, tag: String, throwable: Throwable?, message: String) {
+        Logger.log(priority, tag, message, throwable)
+    }
 
     fun initOnlyAndroidLog() {
         Logger.clearLogAdapters()
@@ -20,20 +65,74 @@ object LogKit {
 
     private var diskLogWriteReadStrategy: DiskLogWriteReadStrategy? = null
 
-    fun initAllLog(context: Context) {
+    /**
+     * 同时输出到 Logcat 和磁盘
+     *
+     * 可以在 Application.onCreate 中直接调用：这里不做任何 IO，写线程和日志目录在第一条日志到来时才在后台准备，
+     * 准备期间的日志先缓存在内存中。系统要求释放内存时会自动落盘并缩小内存中的缓冲，见 [trimMemory]。
+     *
+     * @param durability 磁盘日志的落盘策略
+     * @param isolateSinks 为 true 时 Logcat 和磁盘各自在独立的工作线程中输出，调用方只负责入队
+     * @param recentCapacity 在内存中保留的最近日志行数，见 [recentLogs]；0 表示不保留
+     * @param stagePerThread 为 true 时磁盘日志先写入各线程自己的缓冲区，再成批按时间合并输出，
+     * 多线程频繁打印时调用方之间几乎不竞争，见 [StagedLogAdapter]
+     */
+    @JvmOverloads
+    fun initAllLog(
+        context: Context,
+        durability: DurabilityPolicy = DurabilityPolicy.defaultPolicy(),
+        isolateSinks: Boolean = false,
+        recentCapacity: Int = DiskLogWriteReadStrategy.DEFAULT_RECENT_CAPACITY,
+        stagePerThread: Boolean = false
+    ) {
         Logger.clearLogAdapters()
-        Logger.addLogAdapter(AndroidLogAdapter())
-        diskLogWriteReadStrategy = DiskLogWriteReadStrategy.build(context)
+        Logger.addLogAdapter(isolate(AndroidLogAdapter(), "logcat", isolateSinks))
+        diskLogWriteReadStrategy = DiskLogWriteReadStrategy.build(context, durability, recentCapacity)
         val csvFormatStrategy = CsvFormatStrategy.newBuilder()
             .logStrategy(diskLogWriteReadStrategy)
             .build()
+        val diskAdapter = DiskLogAdapter(csvFormatStrategy)
         Logger.addLogAdapter(
-            DiskLogAdapter(
-                csvFormatStrategy
-            )
+            if (stagePerThread) {
+                StagedLogAdapter.newBuilder()
+                    .adapter(diskAdapter)
+                    .name("LogKit-disk")
+                    .build()
+            } else {
+                isolate(diskAdapter, "disk", isolateSinks)
+            }
         )
     }
 
+    private fun isolate(adapter: LogAdapter, name: String, isolate: Boolean): LogAdapter {
+        if (!isolate) {
+            return adapter
+        }
+        return AsyncLogAdapter.newBuilder()
+            .adapter(adapter)
+            .name("LogKit-$name")
+            .build()
+    }
+
+    /**
+     * 让日志管道释放内存：上游队列立即交给写线程，写线程落盘并释放编码缓冲区，最近日志的缓冲按级别缩小。
+     *
+     * [initAllLog] 已经向 Application 注册了回调，不需要手动调用；只使用 [initOnlyDiskLog] 等方式时，
+     * 可以在 Application.onTrimMemory 中转发。
+     *
+     * @param level ComponentCallbacks2 中的 TRIM_MEMORY_* 级别
+     */
+    fun trimMemory(level: Int) {
+        MemoryTrimHook.trimAll(level)
+    }
+
+    /**
+     * 最近是否收到过内存紧张的回调，期间各个内存缓冲使用较低的上限
+     */
+    fun isUnderMemoryPressure(): Boolean {
+        return MemoryTrimHook.isUnderPressure()
+    }
+
     fun showLogUi(activity: Activity) {
         startActivity(activity)
     }
@@ -44,6 +143,140 @@ object LogKit {
         }
     }
 
+    /**
+     * 直接从内存中获取最近写入磁盘的日志行，不读文件，可在任意线程调用，例如在崩溃上报中附带最近的日志
+     *
+     * @param max 最多返回的行数
+     * @return 最新的在前
+     */
+    @JvmOverloads
+    fun recentLogs(max: Int = Int.MAX_VALUE): List<String> {
+        return diskLogWriteReadStrategy?.recentLogs(max) ?: emptyList()
+    }
+
+    /**
+     * 把日志导出为一个 tar 归档，用于上传或分享。会阻塞调用线程，不要在主线程调用。
+     *
+     * 未筛选的分段原样写入（由 FileChannel.transferTo 传输），需要筛选的分段过滤后以 gzip 流式压缩写入，
+     * 整个过程不产生临时文件，也不会把日志读入内存。
+     *
+     * @param out 输出流，不会被关闭
+     * @param filter 筛选条件
+     * @return 归档中的条目数；没有初始化磁盘日志时返回 0
+     */
+    @JvmOverloads
+    @Throws(IOException::class)
+    fun exportLogs(out: OutputStream, filter: LogExportFilter = LogExportFilter.all()): Int {
+        return diskLogWriteReadStrategy?.export(out, filter) ?: 0
+    }
+
+    /**
+     * 把日志导出到文件，例如 `File(context.cacheDir, "logs.tar")`
+     */
+    @JvmOverloads
+    @Throws(IOException::class)
+    fun exportLogs(file: File, filter: LogExportFilter = LogExportFilter.all()): Int {
+        return FileOutputStream(file).use { exportLogs(it, filter) }
+    }
+
+    /**
+     * 在后台把写满的日志分段分批上传到 [endpoint]，进程重启后从断点继续。
+     * 多进程应用只需在主进程中调用；应用需要声明 INTERNET 权限。
+     *
+     * @return 上传器，可用于 [LogShipper.shipNow] 或 [LogShipper.stop]；需要自定义参数时使用 [LogShipper.newBuilder]
+     */
+    fun startShipping(context: Context, endpoint: String): LogShipper {
+        val shipper = LogShipper.newBuilder()
+            .endpoint(endpoint)
+            .build(context)
+        shipper.start()
+        return shipper
+    }
+
+    /**
+     * 读取最近的日志，之后每写入一行新日志都会回调 [onNewLine]，两者之间不会遗漏或重复
+     *
+     * @param onNewLine 在磁盘写线程回调，需要尽快返回
+     * @return 调用 close 停止接收新日志；没有初始化磁盘日志时返回 null
+     */
+    fun readLog(callback: (List<String>) -> Unit, onNewLine: (String) -> Unit): Closeable? {
+        val strategy = diskLogWriteReadStrategy ?: return null
+        val tail = DiskLogWriteReadStrategy.TailListener { onNewLine.invoke(it) }
+        strategy.readLog({ callback.invoke(it ?: emptyList()) }, tail)
+        return Closeable { strategy.removeTailListener(tail) }
+    }
+
+    /**
+     * 按日志序号检查当前进程磁盘日志的丢失和乱序，在读取线程回调；没有开启磁盘日志时回调 null
+     */
+    fun checkSequence(callback: (LogSequenceCheck.Report?) -> Unit) {
+        val strategy = diskLogWriteReadStrategy
+        if (strategy == null) {
+            callback.invoke(null)
+            return
+        }
+        strategy.checkSequence { callback.invoke(it) }
+    }
+
+    /**
+     * 查找某个异常指纹第一次出现时记录的完整日志行，找不到时回调 null
+     *
+     * @param id 指纹 id，见 [ThrowableFingerprints]
+     */
+    fun findTrace(id: String, callback: (String?) -> Unit) {
+        val strategy = diskLogWriteReadStrategy
+        if (strategy == null) {
+            callback.invoke(null)
+            return
+        }
+        strategy.findTrace(id) {
+            callback.invoke(it)
+        }
+    }
+
+    /**
+     * 同步等待已打印的磁盘日志全部写入并落盘，例如在主动退出进程前调用
+     */
+    fun flush() {
+        CrashFlushHook.flushAll()
+    }
+
+    /**
+     * 获取日志管道自身的运行指标快照
+     */
+    fun metrics(): LogMetrics.Snapshot {
+        return LogMetrics.get().snapshot()
+    }
+
+    /**
+     * 结构化日志，键值对会单独保存，可在日志查看页面中按字段展示
+     *
+     * ```
+     * LogKit.atInfo().tag("net").kv("latencyMs", 42).log("done")
+     * ```
+     * 级别被过滤时返回的空实现不会产生任何分配。
+     */
+    fun atVerbose(): LogEventBuilder =
+        if (Utils.VERBOSE < minLevel) LogEventBuilder.DISABLED else Logger.atVerbose()
+
+    fun atDebug(): LogEventBuilder =
+        if (Utils.DEBUG < minLevel) LogEventBuilder.DISABLED else Logger.atDebug()
+
+    fun atInfo(): LogEventBuilder =
+        if (Utils.INFO < minLevel) LogEventBuilder.DISABLED else Logger.atInfo()
+
+    fun atWarn(): LogEventBuilder =
+        if (Utils.WARN < minLevel) LogEventBuilder.DISABLED else Logger.atWarn()
+
+    fun atError(): LogEventBuilder =
+        if (Utils.ERROR < minLevel) LogEventBuilder.DISABLED else Logger.atError()
+
+    /**
+     * 指定标签的结构化日志，按该标签的规则判断是否输出
+     */
+    fun at(priority: Int, tag: String?): LogEventBuilder =
+        if (priority < minLevel) LogEventBuilder.DISABLED else Logger.at(priority, tag)
+
     /**
      * 打印调试级别的日志信息
      *
@@ -51,10 +284,12 @@ object LogKit {
      * @param args    可选的参数
      */
     fun d(tag: String, message: String) {
+        if (Utils.DEBUG < minLevel) return
         Logger.t(tag).d(message)
     }
 
     fun d(message: String) {
+        if (Utils.DEBUG < minLevel) return
         Logger.t(TAG).d(message)
     }
 
@@ -65,10 +300,12 @@ object LogKit {
      * @param args    可选的参数
      */
     fun e(tag: String, message: String) {
+        if (Utils.ERROR < minLevel) return
         Logger.t(tag).e(null, message)
     }
 
     fun e(message: String) {
+        if (Utils.ERROR < minLevel) return
         Logger.t(TAG).e(null, message)
     }
 
@@ -80,10 +317,12 @@ object LogKit {
      * @param args      可选的参数
      */
     fun e(tag: String, throwable: Throwable?, message: String) {
+        if (Utils.ERROR < minLevel) return
         Logger.t(tag).e(throwable, message)
     }
 
     fun e(throwable: Throwable?, message: String) {
+        if (Utils.ERROR < minLevel) return
         Logger.t(TAG).e(throwable, message)
     }
 
@@ -94,10 +333,12 @@ object LogKit {
      * @param args    可选的参数
      */
     fun i(tag: String, message: String) {
+        if (Utils.INFO < minLevel) return
         Logger.t(tag).i(message)
     }
 
     fun i(message: String) {
+        if (Utils.INFO < minLevel) return
         Logger.t(TAG).i(message)
     }
 
@@ -108,10 +349,12 @@ object LogKit {
      * @param args    可选的参数
      */
     fun v(tag: String, message: String) {
+        if (Utils.VERBOSE < minLevel) return
         Logger.t(tag).v(message)
     }
 
     fun v(message: String) {
+        if (Utils.VERBOSE < minLevel) return
         Logger.t(TAG).v(message)
     }
 
@@ -122,10 +365,12 @@ object LogKit {
      * @param args    可选的参数
      */
     fun w(tag: String, message: String) {
+        if (Utils.WARN < minLevel) return
         Logger.t(tag).w(message)
     }
 
     fun w(message: String) {
+        if (Utils.WARN < minLevel) return
         Logger.t(TAG).w(message)
     }
 
@@ -137,10 +382,12 @@ object LogKit {
      * @param args    可选的参数
      */
     fun wtf(tag: String, message: String) {
+        if (Utils.ASSERT < minLevel) return
         Logger.t(tag).wtf(message)
     }
 
     fun wtf(message: String) {
+        if (Utils.ASSERT < minLevel) return
         Logger.t(TAG).wtf(message)
     }
 
@@ -150,10 +397,12 @@ object LogKit {
      * @param json JSON 内容
      */
     fun json(tag: String, json: String?) {
+        if (Utils.DEBUG < minLevel) return
         Logger.t(tag).json(json)
     }
 
     fun json(json: String?) {
+        if (Utils.DEBUG < minLevel) return
         Logger.t(TAG).json(json)
     }
 
@@ -163,11 +412,83 @@ object LogKit {
      * @param xml XML 内容
      */
     fun xml(tag: String, xml: String?) {
+        if (Utils.DEBUG < minLevel) return
         Logger.t(tag).xml(xml)
     }
 
     fun xml(xml: String?) {
+        if (Utils.DEBUG < minLevel) return
         Logger.t(TAG).xml(xml)
     }
 
-}
\ No newline at end of file
+    /*
+     * 以下是接收 lambda 的内联重载，供 Kotlin 调用：字符串模板放在 lambda 中，
+     * 级别被过滤时不会求值，也不会创建 lambda 对象。
+     */
+
+    /**
+     * 打印调试级别的日志，只有会被输出时才调用 [message] 构建内容
+     */
+    inline fun d(tag: String, message: () -> String) {
+        if (isLoggable(Utils.DEBUG, tag)) {
+            print(Utils.DEBUG, tag, null, message())
+        }
+    }
+
+    inline fun d(message: () -> String) {
+        d(TAG, message)
+    }
+
+    /**
+     * 打印信息级别的日志，只有会被输出时才调用 [message] 构建内容
+     */
+    inline fun i(tag: String, message: () -> String) {
+        if (isLoggable(Utils.INFO, tag)) {
+            print(Utils.INFO, tag, null, message())
+        }
+    }
+
+    inline fun i(message: () -> String) {
+        i(TAG, message)
+    }
+
+    /**
+     * 打印详细级别的日志，只有会被输出时才调用 [message] 构建内容
+     */
+    inline fun v(tag: String, message: () -> String) {
+        if (isLoggable(Utils.VERBOSE, tag)) {
+            print(Utils.VERBOSE, tag, null, message())
+        }
+    }
+
+    inline fun v(message: () -> String) {
+        v(TAG, message)
+    }
+
+    /**
+     * 打印警告级别的日志，只有会被输出时才调用 [message] 构建内容
+     */
+    inline fun w(tag: String, message: () -> String) {
+        if (isLoggable(Utils.WARN, tag)) {
+            print(Utils.WARN, tag, null, message())
+        }
+    }
+
+    inline fun w(message: () -> String) {
+        w(TAG, message)
+    }
+
+    /**
+     * 打印错误级别的日志，只有会被输出时才调用 [message] 构建内容
+     */
+    inline fun e(tag: String, throwable: Throwable? = null, message: () -> String) {
+        if (isLoggable(Utils.ERROR, tag)) {
+            print(Utils.ERROR, tag, throwable, message())
+        }
+    }
+
+    inline fun e(throwable: Throwable? = null, message: () -> String) {
+        e(TAG, throwable, message)
+    }
+
+}
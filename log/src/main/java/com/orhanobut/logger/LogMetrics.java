@@ -0,0 +1,313 @@
+package com.orhanobut.logger;
+
+import static com.orhanobut.logger.Utils.ASSERT;
+import static com.orhanobut.logger.Utils.VERBOSE;
+import static com.orhanobut.logger.Utils.checkNotNull;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 日志管道自身的运行指标。
+ * <p>
+ * 统计内容包括：
+ * <ul>
+ *   <li>各级别的日志条数</li>
+ *   <li>入队耗时、队列深度及其历史峰值</li>
+ *   <li>写入字节数及写入速率</li>
+ *   <li>写入耗时、落盘（force）耗时、文件轮转耗时</li>
+ *   <li>丢弃的日志条数</li>
+ *   <li>每种 {@link FormatStrategy} 的格式化耗时</li>
+ * </ul>
+ * 计数均使用 {@link StripedCounter}，打印线程之间几乎没有争用。
+ * 通过 {@link #snapshot()} 或 {@code LogKit.metrics()} 获取快照。
+ */
+public final class LogMetrics {
+
+  private static final LogMetrics INSTANCE = new LogMetrics();
+
+  private final StripedCounter[] events = new StripedCounter[ASSERT + 1];
+  private final LatencyHistogram enqueueLatency = new LatencyHistogram();
+  private final LatencyHistogram flushLatency = new LatencyHistogram();
+  private final LatencyHistogram syncLatency = new LatencyHistogram();
+  private final LatencyHistogram rotationLatency = new LatencyHistogram();
+  private final StripedCounter bytesWritten = new StripedCounter();
+  private final StripedCounter drops = new StripedCounter();
+  private final AtomicInteger queueDepth = new AtomicInteger();
+  private final AtomicInteger queueHighWaterMark = new AtomicInteger();
+  private final ConcurrentHashMap<String, LatencyHistogram> formatLatency = new ConcurrentHashMap<>();
+
+  // 上一次快照的时间和写入字节数，用于计算写入速率
+  private long lastSnapshotNanos = System.nanoTime();
+  private long lastSnapshotBytes;
+
+  private LogMetrics() {
+    for (int i = 0; i < events.length; i++) {
+      events[i] = new StripedCounter();
+    }
+  }
+
+  @NonNull public static LogMetrics get() {
+    return INSTANCE;
+  }
+
+  /**
+   * 记录一条进入 Printer 的日志
+   *
+   * @param priority 日志级别
+   */
+  void onEvent(int priority) {
+    if (priority >= VERBOSE && priority <= ASSERT) {
+      events[priority].increment();
+    }
+  }
+
+  /**
+   * 记录一次入队，并更新队列深度峰值
+   *
+   * @param nanos 入队耗时
+   */
+  void onEnqueue(long nanos) {
+    enqueueLatency.record(nanos);
+    int depth = queueDepth.incrementAndGet();
+    int peak;
+    while (depth > (peak = queueHighWaterMark.get())) {
+      if (queueHighWaterMark.compareAndSet(peak, depth)) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * 记录后台线程从队列中取出的条数
+   */
+  void onDequeue(int count) {
+    queueDepth.addAndGet(-count);
+  }
+
+  /**
+   * 记录一次写盘
+   *
+   * @param bytes 写入字节数
+   * @param nanos 写入并刷盘的耗时
+   */
+  void onWrite(long bytes, long nanos) {
+    bytesWritten.add(bytes);
+    flushLatency.record(nanos);
+  }
+
+  /**
+   * 记录一次 {@code FileChannel.force} 的耗时
+   */
+  void onSync(long nanos) {
+    syncLatency.record(nanos);
+  }
+
+  /**
+   * 记录一次确定写入文件（含轮转判断）的耗时
+   */
+  void onRotation(long nanos) {
+    rotationLatency.record(nanos);
+  }
+
+  /**
+   * 记录丢弃的日志条数
+   */
+  void onDrop(int count) {
+    drops.add(count);
+  }
+
+  /**
+   * 格式化耗时的统计键，即格式化策略的类名。调用方在创建时计算一次并保存，不在每条日志上反射取类名
+   */
+  @NonNull static String formatKey(@NonNull FormatStrategy strategy) {
+    return strategy.getClass().getSimpleName();
+  }
+
+  /**
+   * 记录一次格式化耗时，按格式化策略分别统计
+   *
+   * @param key {@link #formatKey} 的结果
+   */
+  void onFormat(@NonNull String key, long nanos) {
+    LatencyHistogram histogram = formatLatency.get(key);
+    if (histogram == null) {
+      LatencyHistogram created = new LatencyHistogram();
+      histogram = formatLatency.putIfAbsent(key, created);
+      if (histogram == null) {
+        histogram = created;
+      }
+    }
+    histogram.record(nanos);
+  }
+
+  /**
+   * 获取当前指标的快照。写入速率按距上次快照的时间窗口计算。
+   */
+  @NonNull public synchronized Snapshot snapshot() {
+    long now = System.nanoTime();
+    long bytes = bytesWritten.sum();
+    long elapsed = now - lastSnapshotNanos;
+    long bytesPerSecond = elapsed > 0 ? (bytes - lastSnapshotBytes) * 1_000_000_000L / elapsed : 0;
+    lastSnapshotNanos = now;
+    lastSnapshotBytes = bytes;
+
+    long[] counts = new long[events.length];
+    for (int i = 0; i < events.length; i++) {
+      counts[i] = events[i].sum();
+    }
+    Map<String, Latency> formats = new TreeMap<>();
+    for (Map.Entry<String, LatencyHistogram> entry : formatLatency.entrySet()) {
+      formats.put(entry.getKey(), entry.getValue().snapshot());
+    }
+    return new Snapshot(
+        counts,
+        enqueueLatency.snapshot(),
+        Math.max(0, queueDepth.get()),
+        queueHighWaterMark.get(),
+        bytes,
+        bytesPerSecond,
+        flushLatency.snapshot(),
+        syncLatency.snapshot(),
+        rotationLatency.snapshot(),
+        drops.sum(),
+        Collections.unmodifiableMap(formats));
+  }
+
+  /**
+   * 清空所有累计值（队列深度除外，它反映的是实时状态）
+   */
+  public synchronized void reset() {
+    for (StripedCounter counter : events) {
+      counter.reset();
+    }
+    enqueueLatency.reset();
+    flushLatency.reset();
+    syncLatency.reset();
+    rotationLatency.reset();
+    bytesWritten.reset();
+    drops.reset();
+    queueHighWaterMark.set(queueDepth.get());
+    formatLatency.clear();
+    lastSnapshotNanos = System.nanoTime();
+    lastSnapshotBytes = 0;
+  }
+
+  /**
+   * 某一项耗时的统计结果，单位纳秒
+   */
+  public static final class Latency {
+    public final long count;
+    public final long totalNanos;
+    public final long maxNanos;
+    public final long p50Nanos;
+    public final long p99Nanos;
+
+    Latency(long count, long totalNanos, long maxNanos, long p50Nanos, long p99Nanos) {
+      this.count = count;
+      this.totalNanos = totalNanos;
+      this.maxNanos = maxNanos;
+      this.p50Nanos = p50Nanos;
+      this.p99Nanos = p99Nanos;
+    }
+
+    public long meanNanos() {
+      return count == 0 ? 0 : totalNanos / count;
+    }
+
+    @NonNull @Override public String toString() {
+      return "n=" + count
+          + " avg=" + micros(meanNanos())
+          + " p50<" + micros(p50Nanos)
+          + " p99<" + micros(p99Nanos)
+          + " max=" + micros(maxNanos);
+    }
+
+    private static String micros(long nanos) {
+      return nanos / 1000 + "us";
+    }
+  }
+
+  /**
+   * 指标快照，所有字段在创建后不再变化
+   */
+  public static final class Snapshot {
+    private final long[] events;
+    public final Latency enqueueLatency;
+    public final int queueDepth;
+    public final int queueHighWaterMark;
+    public final long bytesWritten;
+    public final long bytesPerSecond;
+    public final Latency flushLatency;
+    public final Latency syncLatency;
+    public final Latency rotationLatency;
+    public final long drops;
+    @NonNull public final Map<String, Latency> formatLatency;
+
+    Snapshot(@NonNull long[] events,
+             @NonNull Latency enqueueLatency,
+             int queueDepth,
+             int queueHighWaterMark,
+             long bytesWritten,
+             long bytesPerSecond,
+             @NonNull Latency flushLatency,
+             @NonNull Latency syncLatency,
+             @NonNull Latency rotationLatency,
+             long drops,
+             @NonNull Map<String, Latency> formatLatency) {
+      this.events = checkNotNull(events);
+      this.enqueueLatency = enqueueLatency;
+      this.queueDepth = queueDepth;
+      this.queueHighWaterMark = queueHighWaterMark;
+      this.bytesWritten = bytesWritten;
+      this.bytesPerSecond = bytesPerSecond;
+      this.flushLatency = flushLatency;
+      this.syncLatency = syncLatency;
+      this.rotationLatency = rotationLatency;
+      this.drops = drops;
+      this.formatLatency = formatLatency;
+    }
+
+    /**
+     * 某个级别的日志条数
+     *
+     * @param priority 日志级别，例如 {@link Utils#DEBUG}
+     */
+    public long events(int priority) {
+      return priority >= 0 && priority < events.length ? events[priority] : 0;
+    }
+
+    public long totalEvents() {
+      long sum = 0;
+      for (long count : events) {
+        sum += count;
+      }
+      return sum;
+    }
+
+    @NonNull @Override public String toString() {
+      StringBuilder builder = new StringBuilder();
+      builder.append("events:");
+      for (int priority = VERBOSE; priority <= ASSERT; priority++) {
+        builder.append(' ').append(Utils.logLevel(priority).charAt(0)).append('=').append(events[priority]);
+      }
+      builder.append('\n').append("enqueue: ").append(enqueueLatency);
+      builder.append('\n').append("queue: depth=").append(queueDepth).append(" peak=").append(queueHighWaterMark);
+      builder.append('\n').append("written: ").append(bytesWritten).append("B ")
+          .append(bytesPerSecond).append("B/s");
+      builder.append('\n').append("flush: ").append(flushLatency);
+      builder.append('\n').append("sync: ").append(syncLatency);
+      builder.append('\n').append("rotation: ").append(rotationLatency);
+      builder.append('\n').append("drops: ").append(drops);
+      for (Map.Entry<String, Latency> entry : formatLatency.entrySet()) {
+        builder.append('\n').append("format[").append(entry.getKey()).append("]: ").append(entry.getValue());
+      }
+      return builder.toString();
+    }
+  }
+}
@@ -0,0 +1,264 @@
+package com.orhanobut.logger;
+
+import static com.orhanobut.logger.Utils.checkNotNull;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * 负责把日志追加到分段文件 {@code <fileName>_<n>.csv} 中。
+ * <p>
+ * 当前分段的文件通道会一直保持打开，文件大小在内存中累计，超过上限后切换到下一个分段，
+ * 不再为每条日志重新扫描目录、打开和关闭文件。只能在写线程中使用。
+ * <p>
+ * 内容由缓存的 UTF-8 编码器直接编码进复用的 direct ByteBuffer，不再为每条日志生成 byte[]；
+ * 一条内容超过单个缓冲区时编码进多个缓冲区，再用一次 gather write 写入文件。
+ * <p>
+ * 通过 {@link #writeLine} 写入的日志按分段对异常堆栈去重，见 {@link ThrowableFingerprints}。
+ */
+final class LogSegmentWriter implements Closeable {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /**
+   * 每个编码缓冲区的大小
+   */
+  private static final int BUFFER_SIZE = 8 * 1024;
+
+  /**
+   * 一次 gather write 最多使用的缓冲区个数，更长的内容分多次写入
+   */
+  private static final int MAX_BUFFERS = 8;
+
+  @NonNull private final String folder; // 存储日志的文件夹路径
+  @NonNull private final String fileName; // 基础文件名
+  private final int maxFileSize; // 文件大小限制
+
+  @Nullable private FileOutputStream stream;
+  @Nullable private FileChannel channel;
+  private int currentIndex = -1;
+  private boolean rotatePending; // 当前分段已写满，下次打开时切换到下一个分段
+  private long currentSize;
+  private long unsyncedBytes;
+  @NonNull private final ThrowableFingerprints traces = new ThrowableFingerprints(); // 当前分段中出现过的异常
+  private int traceSegment = -1; // traces 对应的分段序号
+
+  @NonNull private final CharsetEncoder encoder = UTF_8.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  @NonNull private final ByteBuffer[] buffers = new ByteBuffer[MAX_BUFFERS]; // 按需分配，之后一直复用
+
+  LogSegmentWriter(@NonNull String folder, @NonNull String fileName, int maxFileSize) {
+    this.folder = checkNotNull(folder);
+    this.fileName = checkNotNull(fileName);
+    this.maxFileSize = maxFileSize;
+  }
+
+  /**
+   * 追加一行日志，必要时先切换分段；同一分段中重复出现的异常堆栈替换为引用标记
+   *
+   * @param line 格式化后的日志行
+   * @return 实际写入的内容
+   */
+  @NonNull String writeLine(@NonNull String line) throws IOException {
+    checkNotNull(line);
+
+    ensureOpen();
+    if (traceSegment != currentIndex) {
+      traces.clear();
+      traceSegment = currentIndex;
+    }
+    String content = traces.dedupe(line);
+    write(content);
+    return content;
+  }
+
+  /**
+   * 追加一段内容，必要时先切换分段
+   *
+   * @param content 日志内容
+   * @return 写入的字节数
+   */
+  int write(@NonNull CharSequence content) throws IOException {
+    checkNotNull(content);
+
+    FileChannel out = ensureOpen();
+    long start = System.nanoTime();
+    int bytes = 0;
+    try {
+      CharBuffer chars = CharBuffer.wrap(content);
+      encoder.reset();
+      boolean done = false;
+      while (!done) {
+        int used = 0;
+        while (used < MAX_BUFFERS && !done) {
+          ByteBuffer buffer = buffer(used++);
+          CoderResult result = encoder.encode(chars, buffer, true);
+          if (result.isUnderflow()) {
+            // UTF-8 编码器没有残留状态，flush 不会再输出字节
+            encoder.flush(buffer);
+            done = true;
+          }
+          buffer.flip();
+        }
+        bytes += writeFully(out, used);
+      }
+    } catch (IOException e) {
+      // 通道可能已失效，关闭后下次写入重新打开同一分段
+      closeCurrent();
+      throw e;
+    }
+    LogMetrics.get().onWrite(bytes, System.nanoTime() - start);
+
+    currentSize += bytes;
+    unsyncedBytes += bytes;
+    if (currentSize >= maxFileSize) {
+      // 已写满，先把本分段落盘再关闭，下次写入时打开新分段
+      force();
+      closeCurrent();
+      rotatePending = true;
+    }
+    return bytes;
+  }
+
+  /**
+   * 第 index 个编码缓冲区，已清空
+   */
+  @NonNull private ByteBuffer buffer(int index) {
+    ByteBuffer buffer = buffers[index];
+    if (buffer == null) {
+      buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      buffers[index] = buffer;
+    }
+    buffer.clear();
+    return buffer;
+  }
+
+  /**
+   * 释放所有编码缓冲区，下次写入时重新分配。内存紧张时调用
+   */
+  void releaseBuffers() {
+    Arrays.fill(buffers, null);
+  }
+
+  /**
+   * 用 gather write 写出前 count 个缓冲区的全部内容
+   */
+  private int writeFully(@NonNull FileChannel out, int count) throws IOException {
+    long written = 0;
+    ByteBuffer last = buffers[count - 1];
+    while (last.hasRemaining()) {
+      written += out.write(buffers, 0, count);
+    }
+    return (int) written;
+  }
+
+  /**
+   * 把已写入的数据落盘。没有未落盘的数据时不做任何事。
+   */
+  void force() throws IOException {
+    if (channel == null || unsyncedBytes == 0) {
+      return;
+    }
+    long start = System.nanoTime();
+    channel.force(false);
+    unsyncedBytes = 0;
+    LogMetrics.get().onSync(System.nanoTime() - start);
+  }
+
+  /**
+   * 当前（或最后写入的）分段的序号，还没有写入过时返回 -1
+   */
+  int currentIndex() {
+    return currentIndex;
+  }
+
+  /**
+   * 当前（或最后写入的）分段已写入的长度，只包含完整写入的日志
+   */
+  long currentSize() {
+    return currentSize;
+  }
+
+  /**
+   * 自上次落盘以来写入的字节数
+   */
+  long unsyncedBytes() {
+    return unsyncedBytes;
+  }
+
+  @Override public void close() throws IOException {
+    try {
+      force();
+    } finally {
+      closeCurrent();
+    }
+  }
+
+  @NonNull private FileChannel ensureOpen() throws IOException {
+    if (channel != null) {
+      return channel;
+    }
+    long start = System.nanoTime();
+    File dir = new File(folder);
+    if (!dir.exists()) {
+      // 如果文件夹不存在，尝试创建文件夹
+      dir.mkdirs();
+    }
+    if (currentIndex < 0) {
+      // 首次打开：找到最后一个分段，未写满则继续追加
+      currentIndex = lastIndex(dir);
+      if (currentIndex < 0) {
+        currentIndex = 0;
+      } else if (segment(dir, currentIndex).length() >= maxFileSize) {
+        currentIndex++;
+      }
+    } else if (rotatePending) {
+      currentIndex++;
+    }
+    rotatePending = false;
+    File file = segment(dir, currentIndex);
+    stream = new FileOutputStream(file, true); // 以追加模式打开文件
+    channel = stream.getChannel();
+    currentSize = file.length();
+    LogMetrics.get().onRotation(System.nanoTime() - start);
+    return channel;
+  }
+
+  private int lastIndex(@NonNull File dir) {
+    int index = -1;
+    while (segment(dir, index + 1).exists()) {
+      index++;
+    }
+    return index;
+  }
+
+  @NonNull private File segment(@NonNull File dir, int index) {
+    return new File(dir, String.format("%s_%s.csv", fileName, index));
+  }
+
+  @SuppressWarnings("checkstyle:emptyblock")
+  private void closeCurrent() {
+    if (stream != null) {
+      try {
+        stream.close(); // 同时关闭 channel
+      } catch (IOException ignored) { /* 静默失败 */ }
+    }
+    stream = null;
+    channel = null;
+    unsyncedBytes = 0;
+  }
+}
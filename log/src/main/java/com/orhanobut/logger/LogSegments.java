@@ -0,0 +1,149 @@
+package com.orhanobut.logger;
+
+import static com.orhanobut.logger.Utils.checkNotNull;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 日志分段文件的命名与查找。
+ * <p>
+ * 每个进程写自己的一组分段文件，互不加锁：主进程为 {@code logs_<n>.csv}，
+ * 其他进程为 {@code logs-<进程后缀>_<n>.csv}（例如 {@code com.app:push} 对应 {@code logs-push_0.csv}）。
+ * 这样每个文件只有一个写入者，行不会交错，分段切换也不会互相竞争；读取时再按时间合并。
+ */
+final class LogSegments {
+
+  static final String BASE_NAME = "logs";
+  private static final String EXTENSION = ".csv";
+
+  private LogSegments() {
+    // no instance
+  }
+
+  /**
+   * 当前进程使用的基础文件名
+   *
+   * @param packageName 应用包名，与之相同的进程为主进程
+   */
+  @NonNull static String fileNameForCurrentProcess(@NonNull String packageName) {
+    return fileName(checkNotNull(packageName), currentProcessName());
+  }
+
+  /**
+   * @param processName 进程名，为 null 时视为主进程
+   */
+  @NonNull static String fileName(@NonNull String packageName, @Nullable String processName) {
+    if (processName == null || processName.isEmpty() || processName.equals(packageName)) {
+      return BASE_NAME;
+    }
+    String suffix = processName.startsWith(packageName + ":")
+        ? processName.substring(packageName.length() + 1)
+        : processName;
+    // 后缀中只保留字母、数字和点，'-' 和 '_' 用作文件名中的分隔符
+    StringBuilder builder = new StringBuilder(BASE_NAME.length() + 1 + suffix.length()).append(BASE_NAME).append('-');
+    for (int i = 0; i < suffix.length(); i++) {
+      char c = suffix.charAt(i);
+      builder.append(Character.isLetterOrDigit(c) ? c : '.');
+    }
+    return builder.toString();
+  }
+
+  /**
+   * 分段文件的编号，不属于 fileName 时返回 -1
+   */
+  static int segmentIndex(@NonNull String name, @NonNull String fileName) {
+    if (!name.startsWith(fileName) || !name.endsWith(EXTENSION)
+        || name.length() <= fileName.length() + 1 + EXTENSION.length()
+        || name.charAt(fileName.length()) != '_') {
+      return -1;
+    }
+    String number = name.substring(fileName.length() + 1, name.length() - EXTENSION.length());
+    for (int i = 0; i < number.length(); i++) {
+      if (number.charAt(i) < '0' || number.charAt(i) > '9') {
+        return -1;
+      }
+    }
+    try {
+      return Integer.parseInt(number);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * 某个进程的所有分段文件，按编号降序排列（最新的在前）
+   */
+  @NonNull static File[] list(@NonNull File folder, @NonNull String fileName) {
+    File[] files = folder.listFiles((dir, name) -> segmentIndex(name, fileName) >= 0);
+    if (files == null) {
+      return new File[0];
+    }
+    Arrays.sort(files, (f1, f2) ->
+        Integer.compare(segmentIndex(f2.getName(), fileName), segmentIndex(f1.getName(), fileName)));
+    return files;
+  }
+
+  /**
+   * 目录中所有进程的分段文件，按基础文件名分组，主进程在前，每组最新的在前
+   */
+  @NonNull static Map<String, File[]> listAll(@NonNull File folder) {
+    Map<String, File[]> groups = new LinkedHashMap<>();
+    String[] names = folder.list();
+    if (names == null) {
+      return groups;
+    }
+    List<String> fileNames = new ArrayList<>();
+    fileNames.add(BASE_NAME);
+    for (String name : names) {
+      int separator = name.lastIndexOf('_');
+      if (separator <= 0) {
+        continue;
+      }
+      String fileName = name.substring(0, separator);
+      if (!fileNames.contains(fileName) && (fileName.startsWith(BASE_NAME + "-"))
+          && segmentIndex(name, fileName) >= 0) {
+        fileNames.add(fileName);
+      }
+    }
+    for (String fileName : fileNames) {
+      File[] files = list(folder, fileName);
+      if (files.length > 0) {
+        groups.put(fileName, files);
+      }
+    }
+    return groups;
+  }
+
+  /**
+   * 通过 /proc/self/cmdline 获取当前进程名，所有系统版本都可用
+   */
+  @Nullable private static String currentProcessName() {
+    try (InputStream in = new FileInputStream("/proc/self/cmdline")) {
+      byte[] buffer = new byte[256];
+      int length = 0;
+      int read;
+      while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) > 0) {
+        length += read;
+      }
+      int end = 0;
+      while (end < length && buffer[end] != 0) {
+        end++;
+      }
+      String name = new String(buffer, 0, end, "UTF-8").trim();
+      return name.isEmpty() ? null : name;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+}
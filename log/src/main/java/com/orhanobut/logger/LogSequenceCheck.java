@@ -0,0 +1,207 @@
+package com.orhanobut.logger;
+
+import static com.orhanobut.logger.Utils.checkNotNull;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 根据日志序号检查一个进程的日志是否有丢失或乱序。
+ * <p>
+ * {@link LoggerPrinter} 为每条至少有一个适配器会输出的日志分配递增的序号（每个进程从 1 开始），
+ * 随日志传给所有适配器，{@link CsvFormatStrategy} 把它写在 CSV 行的 {@link CsvLogRecord#SEQUENCE_KEY} 字段中。
+ * 之后在异步队列中被丢弃、超出暂存上限、投递到写线程失败或写入失败的日志，都会在文件中留下空洞。
+ * 注意各个输出目标的级别规则不同时，只被其他目标输出的日志在本文件中同样表现为空洞。
+ * <p>
+ * 按写入顺序传入同一进程的日志行：序号回到 1（或比之前的序号小很多）视为进程重启，开始新的一段；
+ * 每段排序后的空洞就是丢失的日志，每段第一条之前的日志可能属于已经不在读取范围内的文件，不计为丢失。
+ * ERROR / ASSERT 走优先通道，会越过积压的普通日志先写入，两个通道各自检查先后顺序；
+ * 多个线程取得序号与入队之间也有先后差异。比之前出现过的序号小、但在本通道 {@link #REORDER_WINDOW} 以内的行
+ * 计为 {@link Report#reordered}，不算错误；超出这个范围的才计为乱序。
+ *
+ * <pre><code>
+ *   LogSequenceCheck.Report report = LogSequenceCheck.check(lines);  // 或逐行 add() 后 finish()
+ *   if (report.missing > 0) { ... }
+ * </code></pre>
+ */
+public final class LogSequenceCheck {
+
+  /**
+   * 最多保留的空洞个数，超出后只累计丢失条数
+   */
+  private static final int MAX_GAPS = 100;
+
+  /**
+   * 序号比之前的最大值小这么多时视为进程重启，而不是乱序
+   */
+  private static final long RESTART_DISTANCE = 100_000;
+
+  /**
+   * 同一通道中允许的先后颠倒距离，覆盖多个线程取得序号之后入队的先后差异
+   */
+  static final long REORDER_WINDOW = 1024;
+
+  @NonNull private final Report report = new Report();
+  @NonNull private long[] session = new long[256]; // 当前一段的序号
+  private int size;
+  private long max; // 当前一段出现过的最大序号
+  private long maxNormal; // 当前一段普通通道的最大序号
+  private long maxUrgent; // 当前一段优先通道（ERROR / ASSERT）的最大序号
+
+  /**
+   * 检查一组日志行
+   *
+   * @param lines 同一进程的日志行，按写入顺序（最早的在前）；没有序号的行会被忽略
+   */
+  @NonNull public static Report check(@NonNull Iterable<String> lines) {
+    checkNotNull(lines);
+
+    LogSequenceCheck check = new LogSequenceCheck();
+    for (String line : lines) {
+      check.add(line);
+    }
+    return check.finish();
+  }
+
+  /**
+   * 按写入顺序逐行加入，适合边读文件边检查；没有序号的行会被忽略
+   */
+  public void add(@NonNull String line) {
+    long seq = CsvLogRecord.sequenceOf(line);
+    if (seq <= 0) {
+      return;
+    }
+    report.records++;
+    if (size > 0 && seq < max && (seq == 1 || max - seq > RESTART_DISTANCE)) {
+      report.analyze(session, size);
+      report.restarts++;
+      size = 0;
+      max = 0;
+      maxNormal = 0;
+      maxUrgent = 0;
+    }
+    boolean urgent = isUrgent(line);
+    long laneMax = urgent ? maxUrgent : maxNormal;
+    if (seq < laneMax - REORDER_WINDOW) {
+      report.outOfOrder++;
+    } else if (seq < max) {
+      report.reordered++;
+    }
+    if (urgent) {
+      maxUrgent = Math.max(maxUrgent, seq);
+    } else {
+      maxNormal = Math.max(maxNormal, seq);
+    }
+    max = Math.max(max, seq);
+    if (size == session.length) {
+      session = Arrays.copyOf(session, size * 2);
+    }
+    session[size++] = seq;
+  }
+
+  /**
+   * 级别为 ERROR / ASSERT 的行，取第三列，不解析其他内容
+   */
+  private static boolean isUrgent(@NonNull String line) {
+    int c1 = line.indexOf(',');
+    int c2 = c1 < 0 ? -1 : line.indexOf(',', c1 + 1);
+    int c3 = c2 < 0 ? -1 : line.indexOf(',', c2 + 1);
+    if (c3 < 0) {
+      return false;
+    }
+    int length = c3 - c2 - 1;
+    return (length == 5 && line.regionMatches(c2 + 1, "ERROR", 0, 5))
+        || (length == 6 && line.regionMatches(c2 + 1, "ASSERT", 0, 6));
+  }
+
+  /**
+   * 结束检查并返回结果，之后不能再加入日志行
+   */
+  @NonNull public Report finish() {
+    report.analyze(session, size);
+    size = 0;
+    return report;
+  }
+
+  /**
+   * 检查结果
+   */
+  public static final class Report {
+    public long records; // 带序号的日志条数
+    public long missing; // 丢失的日志条数
+    public long outOfOrder; // 比本通道之前出现过的序号小、超出允许范围的日志条数
+    public long reordered; // 优先通道或并发入队造成的先后颠倒，不影响完整性
+    public long duplicates; // 重复的序号个数
+    public int restarts; // 检测到的进程重启次数
+    @NonNull private final List<Gap> gaps = new ArrayList<>();
+
+    private Report() {
+    }
+
+    /**
+     * 丢失的序号区间，最多 100 个
+     */
+    @NonNull public List<Gap> gaps() {
+      return Collections.unmodifiableList(gaps);
+    }
+
+    /**
+     * 没有丢失、乱序或重复，{@link #reordered} 不计在内
+     */
+    public boolean isClean() {
+      return missing == 0 && outOfOrder == 0 && duplicates == 0;
+    }
+
+    private void analyze(@NonNull long[] session, int size) {
+      if (size == 0) {
+        return;
+      }
+      Arrays.sort(session, 0, size);
+      for (int i = 1; i < size; i++) {
+        long previous = session[i - 1];
+        long current = session[i];
+        if (current == previous) {
+          duplicates++;
+        } else if (current > previous + 1) {
+          missing += current - previous - 1;
+          if (gaps.size() < MAX_GAPS) {
+            gaps.add(new Gap(previous + 1, current - 1));
+          }
+        }
+      }
+    }
+
+    @NonNull @Override public String toString() {
+      return "records=" + records + ", missing=" + missing + ", outOfOrder=" + outOfOrder
+          + ", reordered=" + reordered + ", duplicates=" + duplicates + ", restarts=" + restarts + ", gaps=" + gaps;
+    }
+  }
+
+  /**
+   * 一段连续丢失的序号，包含两端
+   */
+  public static final class Gap {
+    public final long first;
+    public final long last;
+
+    Gap(long first, long last) {
+      this.first = first;
+      this.last = last;
+    }
+
+    /**
+     * 丢失的条数
+     */
+    public long size() {
+      return last - first + 1;
+    }
+
+    @NonNull @Override public String toString() {
+      return first == last ? Long.toString(first) : first + "-" + last;
+    }
+  }
+}
@@ -0,0 +1,356 @@
+package com.orhanobut.logger;
+
+import static com.orhanobut.logger.Utils.checkNotNull;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 把已经写满（不再追加）的日志分段分批压缩上传到收集服务。
+ * <p>
+ * 每个分段已上传的字节偏移保存在日志目录下的 {@value #OFFSETS_FILE} 中，进程被杀后从断点继续，不会重复发送；
+ * 每批只在完整的行边界截断，已封存分段末尾没有换行的残行作为最后一批发送。上传失败时按指数退避重试。
+ * 所有工作都在一个后台优先级的 HandlerThread 中进行，与写日志的线程互不影响。
+ * 多进程应用只需在主进程中启动，它会上传所有进程的分段。
+ *
+ * <pre><code>
+ *   LogShipper shipper = LogShipper.newBuilder()
+ *       .endpoint("https://logs.example.com/ingest")  // 收集服务地址，或使用 transport(...)
+ *       .batchBytes(256 * 1024)                       // (Optional) 每批最多读取的原始字节数。Default 256K
+ *       .intervalMs(60_000)                           // (Optional) 检查新分段的间隔。Default 60s
+ *       .build(context);
+ *   shipper.start();
+ * </code></pre>
+ */
+public final class LogShipper {
+
+  private static final String OFFSETS_FILE = "shipper.offsets";
+  private static final long MAX_BACKOFF_MS = 5 * 60 * 1000;
+  private static final int WHAT_SHIP = 1;
+
+  @NonNull private final File folder;
+  @NonNull private final Transport transport;
+  private final int batchBytes;
+  private final long intervalMs;
+  private final long initialBackoffMs;
+
+  @Nullable private ShipHandler handler;
+
+  private LogShipper(@NonNull Builder builder, @NonNull File folder) {
+    this.folder = folder;
+    this.transport = builder.transport;
+    this.batchBytes = builder.batchBytes;
+    this.intervalMs = builder.intervalMs;
+    this.initialBackoffMs = builder.initialBackoffMs;
+  }
+
+  @NonNull public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * 启动后台上传，重复调用无效果
+   */
+  public synchronized void start() {
+    if (handler != null) {
+      return;
+    }
+    HandlerThread thread = new HandlerThread("LogShipper", Process.THREAD_PRIORITY_BACKGROUND);
+    thread.start();
+    handler = new ShipHandler(thread.getLooper());
+    handler.sendEmptyMessage(WHAT_SHIP);
+  }
+
+  /**
+   * 立即检查一次，例如网络恢复时调用；正在退避等待时不会打断
+   */
+  public synchronized void shipNow() {
+    if (handler != null && !handler.backingOff) {
+      handler.removeMessages(WHAT_SHIP);
+      handler.sendEmptyMessage(WHAT_SHIP);
+    }
+  }
+
+  /**
+   * 停止上传，已处理的偏移都已保存
+   */
+  public synchronized void stop() {
+    if (handler != null) {
+      handler.removeMessages(WHAT_SHIP);
+      handler.getLooper().quitSafely();
+      handler = null;
+    }
+  }
+
+  /**
+   * 上传一批日志的方式，可以替换为自定义实现（例如在测试中指向本地服务器）
+   */
+  public interface Transport {
+
+    /**
+     * 发送一批 gzip 压缩的 CSV 日志行
+     *
+     * @param segment 分段文件名
+     * @param offset  这批数据在分段中的起始字节偏移，服务端可据此去重
+     * @param gzipped 压缩后的内容
+     * @return 是否发送成功，返回 false 或抛出异常都会触发退避重试
+     */
+    boolean send(@NonNull String segment, long offset, @NonNull byte[] gzipped) throws IOException;
+  }
+
+  /**
+   * 上传线程，只负责定时调度和失败后的退避，上传本身由 {@link Uploader} 完成
+   */
+  private final class ShipHandler extends Handler {
+
+    private final Uploader uploader;
+    private final Random random = new Random();
+    private long backoffMs;
+    volatile boolean backingOff; // 正在等待重试
+
+    ShipHandler(@NonNull Looper looper) {
+      super(looper);
+      uploader = new Uploader(folder, transport, batchBytes);
+    }
+
+    @Override public void handleMessage(@NonNull Message msg) {
+      if (msg.what != WHAT_SHIP) {
+        return;
+      }
+      long delay;
+      try {
+        uploader.shipSealedSegments();
+        backoffMs = 0;
+        backingOff = false;
+        delay = intervalMs;
+      } catch (Exception e) {
+        // 指数退避，加上随机抖动避免大量设备同时重试
+        backoffMs = nextBackoff(backoffMs, initialBackoffMs);
+        backingOff = true;
+        delay = backoffMs + random.nextInt((int) Math.max(1, backoffMs / 4));
+      }
+      sendEmptyMessageDelayed(WHAT_SHIP, delay);
+    }
+  }
+
+  /**
+   * 上一次退避 backoffMs 之后再次失败时的退避时间（不含抖动）：从 initialBackoffMs 开始翻倍，最多 {@value #MAX_BACKOFF_MS} 毫秒
+   *
+   * @param backoffMs 上一次的退避时间，0 表示上一次成功
+   */
+  static long nextBackoff(long backoffMs, long initialBackoffMs) {
+    return backoffMs == 0 ? initialBackoffMs : Math.min(MAX_BACKOFF_MS, backoffMs * 2);
+  }
+
+  /**
+   * 按断点分批上传已写满的分段，不依赖 Handler，只能在一个线程中使用
+   */
+  static final class Uploader {
+
+    @NonNull private final File folder;
+    @NonNull private final Transport transport;
+    private final int batchBytes;
+    private final Properties offsets = new Properties();
+
+    Uploader(@NonNull File folder, @NonNull Transport transport, int batchBytes) {
+      this.folder = checkNotNull(folder);
+      this.transport = checkNotNull(transport);
+      this.batchBytes = batchBytes;
+      loadOffsets();
+    }
+
+    /**
+     * 上传所有已写满的分段。每组中编号最大的分段可能仍在写入，跳过
+     */
+    void shipSealedSegments() throws IOException {
+      Map<String, File[]> groups = LogSegments.listAll(folder);
+      boolean pruned = prune();
+      for (File[] files : groups.values()) {
+        // 从旧到新上传，files[0] 是正在写入的分段
+        for (int i = files.length - 1; i >= 1; i--) {
+          ship(files[i]);
+        }
+      }
+      if (pruned) {
+        saveOffsets();
+      }
+    }
+
+    private void ship(@NonNull File file) throws IOException {
+      String name = file.getName();
+      long length = file.length();
+      long offset = offsetOf(name);
+      byte[] buffer = null;
+      while (offset < length) {
+        if (buffer == null) {
+          buffer = new byte[batchBytes];
+        }
+        int read = read(file, offset, buffer);
+        if (read <= 0) {
+          break; // 文件被截断
+        }
+        int end = lastLineEnd(buffer, read);
+        if (end <= 0) {
+          // 单行超过批大小时整块发送；分段已封存，末尾没有换行的残行也照常发送
+          end = read;
+        }
+        byte[] gzipped = gzip(buffer, end);
+        if (!transport.send(name, offset, gzipped)) {
+          throw new IOException("rejected " + name + "@" + offset);
+        }
+        offset += end;
+        // 每批成功后立即保存偏移，进程被杀后不会重复发送
+        offsets.setProperty(name, Long.toString(offset));
+        saveOffsets();
+      }
+    }
+
+    /**
+     * 分段已上传的字节偏移
+     */
+    long offsetOf(@NonNull String name) {
+      try {
+        return Long.parseLong(offsets.getProperty(name, "0"));
+      } catch (NumberFormatException e) {
+        return 0;
+      }
+    }
+
+    /**
+     * 去掉已被删除的分段的偏移记录
+     */
+    private boolean prune() {
+      boolean changed = false;
+      for (String name : offsets.stringPropertyNames()) {
+        if (!new File(folder, name).exists()) {
+          offsets.remove(name);
+          changed = true;
+        }
+      }
+      return changed;
+    }
+
+    private void loadOffsets() {
+      File file = new File(folder, OFFSETS_FILE);
+      if (!file.exists()) {
+        return;
+      }
+      try (InputStream in = new FileInputStream(file)) {
+        offsets.load(in);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+
+    /**
+     * 先写临时文件再重命名，避免写到一半被杀导致偏移丢失
+     */
+    private void saveOffsets() throws IOException {
+      File tmp = new File(folder, OFFSETS_FILE + ".tmp");
+      try (FileOutputStream out = new FileOutputStream(tmp)) {
+        offsets.store(out, null);
+        out.getFD().sync();
+      }
+      if (!tmp.renameTo(new File(folder, OFFSETS_FILE))) {
+        throw new IOException("cannot save " + OFFSETS_FILE);
+      }
+    }
+  }
+
+  private static int read(@NonNull File file, long offset, @NonNull byte[] buffer) throws IOException {
+    try (FileInputStream in = new FileInputStream(file)) {
+      in.getChannel().position(offset);
+      int total = 0;
+      int read;
+      while (total < buffer.length && (read = in.read(buffer, total, buffer.length - total)) > 0) {
+        total += read;
+      }
+      return total;
+    }
+  }
+
+  /**
+   * 最后一个换行符之后的位置，没有换行符时返回 0
+   */
+  private static int lastLineEnd(@NonNull byte[] buffer, int length) {
+    for (int i = length - 1; i >= 0; i--) {
+      if (buffer[i] == '\n') {
+        return i + 1;
+      }
+    }
+    return 0;
+  }
+
+  @NonNull private static byte[] gzip(@NonNull byte[] data, int length) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, length / 4));
+    try (OutputStream out = new GZIPOutputStream(bytes)) {
+      out.write(data, 0, length);
+    }
+    return bytes.toByteArray();
+  }
+
+  public static final class Builder {
+    Transport transport;
+    int batchBytes = 256 * 1024;
+    long intervalMs = 60_000;
+    long initialBackoffMs = 1000;
+
+    private Builder() {
+    }
+
+    /**
+     * 使用 HTTP POST 上传到 url
+     */
+    @NonNull public Builder endpoint(@NonNull String url) {
+      transport = new HttpLogTransport(checkNotNull(url));
+      return this;
+    }
+
+    @NonNull public Builder transport(@NonNull Transport val) {
+      transport = val;
+      return this;
+    }
+
+    @NonNull public Builder batchBytes(int val) {
+      batchBytes = Math.max(1024, val);
+      return this;
+    }
+
+    @NonNull public Builder intervalMs(long val) {
+      intervalMs = Math.max(1000, val);
+      return this;
+    }
+
+    @NonNull public Builder initialBackoffMs(long val) {
+      initialBackoffMs = Math.max(1, val);
+      return this;
+    }
+
+    /**
+     * @param context 用于定位日志目录，与 {@link LogKit#initAllLog} 写入的目录相同
+     */
+    @NonNull public LogShipper build(@NonNull Context context) {
+      checkNotNull(transport);
+      return new LogShipper(this, new File(DiskLogWriteReadStrategy.folder(checkNotNull(context))));
+    }
+  }
+}
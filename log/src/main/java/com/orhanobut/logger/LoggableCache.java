@@ -0,0 +1,115 @@
+package com.orhanobut.logger;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 缓存 (级别, 标签) 是否会被输出的判断结果，避免每次都遍历所有适配器。
+ * <p>
+ * 每个标签第一次查询时分配一个从 1 开始的小整数 id（null 为 0），每个 id 对应数组中的一个 int：
+ * 低 8 位表示该级别是否已经计算过，高 8 位表示是否会输出，查询只是一次数组读取。
+ * 动态拼接的标签可能无限增多，分配数量达到 {@link #MAX_TAGS} 后新标签不再缓存，每次都询问适配器。
+ * id 只在进程内用作缓存表的下标，不会写入日志。
+ * 适配器变化时调用 {@link #invalidate()} 整体替换缓存表。调用方先通过 {@link #table()} 取得当前的表，
+ * 查询和写入都使用这同一张表：计算期间缓存被替换时，结果只会写入已经不再使用的旧表，不会把按旧适配器算出的结果留在新表中。
+ */
+final class LoggableCache {
+
+  static final int UNKNOWN = -1;
+  static final int NO = 0;
+  static final int YES = 1;
+
+  /**
+   * 最多分配 id 的标签数
+   */
+  static final int MAX_TAGS = 1024;
+
+  private static final int NO_TAG = 0; // null 标签的 id
+  private static final int UNREGISTERED = -1; // 分配数量已满、没有 id 的标签
+
+  private static final ConcurrentHashMap<String, Integer> tagIds = new ConcurrentHashMap<>();
+
+  private static int nextTagId = 1; // 下一个分配的 id，只在持有类锁时修改
+
+  @NonNull private volatile AtomicIntegerArray table = newTable();
+
+  /**
+   * @return 当前的缓存表，一次判断中的 {@link #get} 和 {@link #put} 都应使用它
+   */
+  @NonNull AtomicIntegerArray table() {
+    return table;
+  }
+
+  /**
+   * @return {@link #YES}、{@link #NO}，没有缓存时返回 {@link #UNKNOWN}
+   */
+  static int get(@NonNull AtomicIntegerArray table, int priority, @Nullable String tag) {
+    if (priority < 0 || priority > 7) {
+      return UNKNOWN;
+    }
+    int id = idOf(tag);
+    if (id == UNREGISTERED) {
+      return UNKNOWN;
+    }
+    int mask = table.get(id);
+    if ((mask & (1 << priority)) == 0) {
+      return UNKNOWN;
+    }
+    return (mask & (1 << (priority + 8))) != 0 ? YES : NO;
+  }
+
+  /**
+   * 把结果写入 table，table 必须是查询时由 {@link #table()} 取得的那张表
+   */
+  static void put(@NonNull AtomicIntegerArray table, int priority, @Nullable String tag, boolean loggable) {
+    if (priority < 0 || priority > 7) {
+      return;
+    }
+    int id = idOf(tag);
+    if (id == UNREGISTERED) {
+      return;
+    }
+    int old;
+    int mask;
+    do {
+      old = table.get(id);
+      mask = old | (1 << priority);
+      if (loggable) {
+        mask |= 1 << (priority + 8);
+      } else {
+        mask &= ~(1 << (priority + 8));
+      }
+    } while (!table.compareAndSet(id, old, mask));
+  }
+
+  void invalidate() {
+    table = newTable();
+  }
+
+  @NonNull private static AtomicIntegerArray newTable() {
+    return new AtomicIntegerArray(MAX_TAGS + 1);
+  }
+
+  private static int idOf(@Nullable String tag) {
+    if (tag == null) {
+      return NO_TAG;
+    }
+    Integer id = tagIds.get(tag);
+    return id != null ? id : register(tag);
+  }
+
+  private static synchronized int register(@NonNull String tag) {
+    Integer id = tagIds.get(tag);
+    if (id != null) {
+      return id;
+    }
+    if (nextTagId > MAX_TAGS) {
+      return UNREGISTERED;
+    }
+    tagIds.put(tag, nextTagId);
+    return nextTagId++;
+  }
+}
@@ -204,6 +204,76 @@ final class Logger {
         printer.wtf(message, args);
     }
 
+    /**
+     * 判断某个级别和标签的日志是否会被输出
+     *
+     * @param priority 日志优先级
+     * @param tag      日志标签
+     */
+    public static boolean isLoggable(int priority, @Nullable String tag) {
+        return printer.isLoggable(priority, tag);
+    }
+
+    /**
+     * 判断结果会被缓存，自定义适配器的 isLoggable 依赖运行时状态（例如开关）时，
+     * 状态变化后需要调用此方法
+     */
+    public static void invalidateLoggableCache() {
+        printer.invalidateLoggableCache();
+    }
+
+    /**
+     * 开始构建一条结构化日志，例如：
+     * <pre><code>
+     *   Logger.atInfo().tag("net").kv("latencyMs", 42).kv("status", 200).log("done");
+     * </code></pre>
+     *
+     * @param priority 日志优先级
+     */
+    @NonNull
+    public static LogEventBuilder at(int priority) {
+        return printer.at(priority);
+    }
+
+    /**
+     * 开始构建一条指定标签的结构化日志，按该标签的规则判断是否输出，例如：
+     * <pre><code>
+     *   Logger.at(Log.DEBUG, "net").kv("latencyMs", 42).log("done");
+     * </code></pre>
+     *
+     * @param priority 日志优先级
+     * @param tag      日志标签
+     */
+    @NonNull
+    public static LogEventBuilder at(int priority, @Nullable String tag) {
+        return printer.at(priority, tag);
+    }
+
+    @NonNull
+    public static LogEventBuilder atVerbose() {
+        return printer.at(Utils.VERBOSE);
+    }
+
+    @NonNull
+    public static LogEventBuilder atDebug() {
+        return printer.at(Utils.DEBUG);
+    }
+
+    @NonNull
+    public static LogEventBuilder atInfo() {
+        return printer.at(Utils.INFO);
+    }
+
+    @NonNull
+    public static LogEventBuilder atWarn() {
+        return printer.at(Utils.WARN);
+    }
+
+    @NonNull
+    public static LogEventBuilder atError() {
+        return printer.at(Utils.ERROR);
+    }
+
     /**
      * 格式化并打印给定的 JSON 内容
      *
@@ -11,22 +11,10 @@ import static com.orhanobut.logger.Utils.checkNotNull;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.StringReader;
-import java.io.StringWriter;
-import java.util.ArrayList;
 import java.util.List;
-
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 
@@ -41,15 +29,67 @@ class LoggerPrinter implements Printer {
    */
   private static final int JSON_INDENT = 2;
 
+  /**
+   * 用于格式化 XML 输出时的缩进值
+   */
+  private static final int XML_INDENT = 2;
+
+  /**
+   * 线程复用的渲染缓冲区超过该容量后不再保留，避免一次大对象长期占用内存
+   */
+  private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+  /**
+   * JSON、XML 格式化后最多输出的字符数，超出部分截断
+   */
+  private static final int MAX_PAYLOAD_CHARS = 512 * 1024;
+
   /**
    * 为日志消息提供一次性标签（线程安全）
    */
   private final ThreadLocal<String> localTag = new ThreadLocal<>();
 
   /**
-   * 日志适配器列表，用于处理日志输出
+   * 日志序号，所有线程共享，至少有一个适配器会输出的日志加一，随 {@link LogFields} 传给每个适配器。
+   * 之后在队列中被丢弃、发送失败的日志在输出结果中留下空洞，见 {@link LogSequenceCheck}
+   */
+  private final AtomicLong sequence = new AtomicLong();
+
+  /**
+   * 没有键值对的日志用来携带序号的空实例，每个线程一个
+   */
+  private final ThreadLocal<LogFields> plainFields = new ThreadLocal<>();
+
+  /**
+   * 每个线程复用的结构化日志构建器
+   */
+  private final ThreadLocal<LogEventBuilder> eventBuilder = new ThreadLocal<>();
+
+  /**
+   * 日志适配器列表，用于处理日志输出。打印时不加锁遍历，因此使用写时复制列表
+   */
+  private final List<LogAdapter> logAdapters = new CopyOnWriteArrayList<>();
+
+  /**
+   * 各级别、标签是否会被输出的缓存，适配器变化时失效
+   */
+  private final LoggableCache loggableCache = new LoggableCache();
+
+  /**
+   * 渲染对象、格式化 JSON / XML 时复用的缓冲区，每个线程一个。使用期间从这里取走，
+   * 渲染中（例如在 toString 中）再次打印对象时拿不到它，改用新的缓冲区，不会清空外层正在渲染的内容
    */
-  private final List<LogAdapter> logAdapters = new ArrayList<>();
+  private final ThreadLocal<StringBuilder> renderBuffer = new ThreadLocal<>();
+
+  /**
+   * 流式 JSON 格式化器，无状态，可在多线程间共享
+   */
+  private final JsonPrettyPrinter jsonPrinter = new JsonPrettyPrinter(JSON_INDENT, MAX_PAYLOAD_CHARS);
+
+  /**
+   * 流式 XML 格式化器，每个线程复用自己的解析器
+   */
+  private final XmlPrettyPrinter xmlPrinter = new XmlPrettyPrinter(XML_INDENT, MAX_PAYLOAD_CHARS);
 
   /**
    * 设置一次性日志标签
@@ -83,7 +123,13 @@ class LoggerPrinter implements Printer {
    */
   @Override
   public void d(@Nullable Object object) {
-    log(DEBUG, null, Utils.toString(object));
+    StringBuilder buffer = obtainBuffer();
+    try {
+      ObjectRenderer.getDefault().render(object, buffer);
+      log(DEBUG, null, buffer.toString());
+    } finally {
+      releaseBuffer(buffer);
+    }
   }
 
   /**
@@ -164,23 +210,23 @@ class LoggerPrinter implements Printer {
       d("Empty/Null json content");
       return;
     }
+    StringBuilder buffer = obtainBuffer();
     try {
-      json = json.trim();
-      if (json.startsWith("{")) {
-        JSONObject jsonObject = new JSONObject(json);
-        String message = jsonObject.toString(JSON_INDENT);
-        d(message);
+      String error = jsonPrinter.print(json, buffer);
+      if (error == null) {
+        log(DEBUG, null, buffer.toString());
         return;
       }
-      if (json.startsWith("[")) {
-        JSONArray jsonArray = new JSONArray(json);
-        String message = jsonArray.toString(JSON_INDENT);
-        d(message);
-        return;
+      // 保留出错位置之前已经格式化的内容，便于定位问题
+      String rendered = buffer.toString();
+      buffer.setLength(0);
+      buffer.append("Invalid Json: ").append(error);
+      if (rendered.length() > 0) {
+        buffer.append('\n').append(rendered);
       }
-      e("Invalid Json");
-    } catch (JSONException e) {
-      e("Invalid Json");
+      log(ERROR, null, buffer.toString());
+    } finally {
+      releaseBuffer(buffer);
     }
   }
 
@@ -195,16 +241,23 @@ class LoggerPrinter implements Printer {
       d("Empty/Null xml content");
       return;
     }
+    StringBuilder buffer = obtainBuffer();
     try {
-      Source xmlInput = new StreamSource(new StringReader(xml));
-      StreamResult xmlOutput = new StreamResult(new StringWriter());
-      Transformer transformer = TransformerFactory.newInstance().newTransformer();
-      transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-      transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-      transformer.transform(xmlInput, xmlOutput);
-      d(xmlOutput.getWriter().toString().replaceFirst(">", ">\n"));
-    } catch (TransformerException e) {
-      e("Invalid xml");
+      String error = xmlPrinter.print(xml, buffer);
+      if (error == null) {
+        log(DEBUG, null, buffer.toString());
+        return;
+      }
+      // 保留出错位置之前已经格式化的内容，便于定位问题
+      String rendered = buffer.toString();
+      buffer.setLength(0);
+      buffer.append("Invalid xml: ").append(error);
+      if (rendered.length() > 0) {
+        buffer.append('\n').append(rendered);
+      }
+      log(ERROR, null, buffer.toString());
+    } finally {
+      releaseBuffer(buffer);
     }
   }
 
@@ -217,22 +270,154 @@ class LoggerPrinter implements Printer {
    * @param throwable 异常对象（可选）
    */
   @Override
-  public synchronized void log(int priority, @Nullable String tag, @Nullable String message, @Nullable Throwable throwable) {
+  public void log(int priority, @Nullable String tag, @Nullable String message, @Nullable Throwable throwable) {
+    log(priority, tag, message, throwable, null);
+  }
+
+  /**
+   * 打印日志的主方法，可附带结构化键值对
+   *
+   * @param priority  日志优先级
+   * @param tag       日志标签
+   * @param message   日志内容
+   * @param throwable 异常对象（可选）
+   * @param fields    键值对（可选），仅在本次调用期间有效
+   */
+  void log(int priority, @Nullable String tag, @Nullable String message,
+           @Nullable Throwable throwable, @Nullable LogFields fields) {
+    LogMetrics.get().onEvent(priority);
+    // 没有适配器输出的日志不占用序号，也不必生成内容
+    if (!isLoggable(priority, tag)) {
+      return;
+    }
+
     if (throwable != null && message != null) {
-      message += " : " + Utils.getStackTraceString(throwable);
+      message += ThrowableFingerprints.SEPARATOR + ThrowableFingerprints.define(throwable);
     }
     if (throwable != null && message == null) {
-      message = Utils.getStackTraceString(throwable);
+      message = ThrowableFingerprints.define(throwable);
     }
     if (Utils.isEmpty(message)) {
       message = "Empty/NULL log message";
     }
 
+    long seq = sequence.incrementAndGet();
+    LogFields plain = null;
+    if (fields == null) {
+      // 使用期间从线程中取走，适配器内部再次打印日志时拿到的是另一个实例
+      plain = plainFields.get();
+      if (plain == null) {
+        plain = new LogFields();
+      } else {
+        plainFields.set(null);
+      }
+      fields = plain;
+    }
+
+    try {
+      // 线程安全的适配器直接输出，其余的适配器加锁输出，避免日志顺序错乱
+      boolean sequential = false;
+      for (LogAdapter adapter : logAdapters) {
+        if (adapter.isConcurrent()) {
+          dispatch(adapter, priority, tag, message, fields, seq);
+        } else {
+          sequential = true;
+        }
+      }
+      if (!sequential) {
+        return;
+      }
+      synchronized (this) {
+        for (LogAdapter adapter : logAdapters) {
+          if (!adapter.isConcurrent()) {
+            dispatch(adapter, priority, tag, message, fields, seq);
+          }
+        }
+      }
+    } finally {
+      if (plain != null) {
+        plainFields.set(plain);
+      }
+    }
+  }
+
+  private static void dispatch(@NonNull LogAdapter adapter, int priority, @Nullable String tag,
+                               @NonNull String message, @NonNull LogFields fields, long seq) {
+    if (adapter.isLoggable(priority, tag)) {
+      // 每次分发前重新设置：调用方传入的键值对在适配器内部再次打印结构化日志时可能被改写
+      fields.sequence(seq);
+      adapter.log(priority, tag, message, fields);
+    }
+  }
+
+  /**
+   * 判断是否有适配器会输出该日志，结果会被缓存，直到适配器变化或调用 {@link #invalidateLoggableCache()}
+   *
+   * @param priority 日志优先级
+   * @param tag      日志标签
+   */
+  @Override
+  public boolean isLoggable(int priority, @Nullable String tag) {
+    // 先取缓存表再读取适配器，适配器在此期间变化时结果只会写入被替换掉的旧表
+    AtomicIntegerArray table = loggableCache.table();
+    int cached = LoggableCache.get(table, priority, tag);
+    if (cached != LoggableCache.UNKNOWN) {
+      return cached == LoggableCache.YES;
+    }
+    boolean loggable = false;
     for (LogAdapter adapter : logAdapters) {
       if (adapter.isLoggable(priority, tag)) {
-        adapter.log(priority, tag, message);
+        loggable = true;
+        break;
       }
     }
+    LoggableCache.put(table, priority, tag, loggable);
+    return loggable;
+  }
+
+  /**
+   * 适配器的 isLoggable 结果依赖运行时状态时，状态变化后调用此方法
+   */
+  @Override
+  public void invalidateLoggableCache() {
+    loggableCache.invalidate();
+  }
+
+  /**
+   * 开始构建一条结构化日志，会消费通过 {@link #t(String)} 设置的一次性标签
+   *
+   * @param priority 日志优先级
+   */
+  @NonNull
+  @Override
+  public LogEventBuilder at(int priority) {
+    return at(priority, getTag());
+  }
+
+  /**
+   * 开始构建一条指定标签的结构化日志，按该标签判断是否输出
+   *
+   * @param priority 日志优先级
+   * @param tag      日志标签
+   */
+  @NonNull
+  @Override
+  public LogEventBuilder at(int priority, @Nullable String tag) {
+    if (!isLoggable(priority, tag)) {
+      return LogEventBuilder.DISABLED;
+    }
+    LogEventBuilder builder = eventBuilder.get();
+    if (builder == null || builder.building) {
+      // 上一个构建器开始后没有调用 log()：被丢弃了，或者在计算参数时又打印了结构化日志。
+      // 换成新的构建器并在之后复用，旧的若仍在使用不受影响，被丢弃的不会让之后每次都新建
+      builder = new LogEventBuilder(this);
+      eventBuilder.set(builder);
+    } else if (builder.printing) {
+      // 输出过程中又打印了结构化日志（例如在 toString 中），临时新建一个
+      builder = new LogEventBuilder(this);
+    }
+    builder.start(priority, tag);
+    return builder;
   }
 
   /**
@@ -241,6 +426,7 @@ class LoggerPrinter implements Printer {
   @Override
   public void clearLogAdapters() {
     logAdapters.clear();
+    loggableCache.invalidate();
   }
 
   /**
@@ -251,13 +437,14 @@ class LoggerPrinter implements Printer {
   @Override
   public void addAdapter(@NonNull LogAdapter adapter) {
     logAdapters.add(checkNotNull(adapter));
+    loggableCache.invalidate();
   }
 
 
   /**
-   * This method is synchronized in order to avoid messy of logs' order.
+   * 输出顺序由 {@link #log(int, String, String, Throwable, LogFields)} 按适配器加锁保证，这里只负责格式化
    */
-  private synchronized void log(int priority,
+  private void log(int priority,
                                 @Nullable Throwable throwable,
                                 @NonNull String msg,
                                 @Nullable Object... args) {
@@ -268,6 +455,29 @@ class LoggerPrinter implements Printer {
     log(priority, tag, message, throwable);
   }
 
+  /**
+   * 取走当前线程复用的缓冲区，已清空；已被外层取走（重入）时返回新的缓冲区。用完后调用 {@link #releaseBuffer}
+   */
+  @NonNull
+  private StringBuilder obtainBuffer() {
+    StringBuilder buffer = renderBuffer.get();
+    if (buffer == null) {
+      return new StringBuilder();
+    }
+    renderBuffer.set(null);
+    buffer.setLength(0);
+    return buffer;
+  }
+
+  /**
+   * 归还缓冲区，过大的缓冲区不再保留
+   */
+  private void releaseBuffer(@NonNull StringBuilder buffer) {
+    if (buffer.capacity() <= MAX_RETAINED_BUFFER) {
+      renderBuffer.set(buffer);
+    }
+  }
+
   /**
    * 获取当前日志标签（优先返回线程标签）
    *
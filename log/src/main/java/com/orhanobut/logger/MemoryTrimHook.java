@@ -0,0 +1,140 @@
+package com.orhanobut.logger;
+
+import static com.orhanobut.logger.Utils.checkNotNull;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import androidx.annotation.NonNull;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 系统要求释放内存时，让日志管道尽快落盘并缩小内存中的缓冲。
+ * <p>
+ * 安装后以 {@link ComponentCallbacks2} 的形式注册到 Application。收到 {@link #onTrimMemory(int)} 时通知所有已注册的目标：
+ * 上游队列立即交给磁盘写线程，写线程落盘并释放空闲的编码缓冲区，最近日志的环形缓冲区按级别缩小或清空。
+ * 之后的一段时间内视为内存紧张（{@link #isUnderPressure()}），各个队列使用更低的上限，
+ * 期间没有新的回调则恢复原有容量。回调在主线程执行，目标只能投递任务，不能阻塞等待。
+ */
+final class MemoryTrimHook implements ComponentCallbacks2 {
+
+  /**
+   * 最后一次内存紧张的回调之后，多久内仍使用较低的上限
+   */
+  private static final long PRESSURE_WINDOW_NANOS = 60_000_000_000L;
+
+  private static final CopyOnWriteArrayList<WeakReference<Target>> targets = new CopyOnWriteArrayList<>();
+  private static boolean installed;
+  private static volatile long pressureUntil; // System.nanoTime()，0 表示没有内存压力
+
+  private MemoryTrimHook() {
+  }
+
+  /**
+   * 注册一个需要在内存紧张时释放缓冲的目标
+   */
+  static void register(@NonNull Target target) {
+    // 去掉已被回收的目标，反复初始化日志时列表不会一直增长
+    for (WeakReference<Target> reference : targets) {
+      if (reference.get() == null) {
+        targets.remove(reference);
+      }
+    }
+    targets.add(new WeakReference<>(checkNotNull(target)));
+  }
+
+  /**
+   * 向 Application 注册回调，重复调用只注册一次
+   */
+  static void install(@NonNull Context context) {
+    checkNotNull(context);
+    synchronized (MemoryTrimHook.class) {
+      if (installed) {
+        return;
+      }
+      installed = true;
+    }
+    Context appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+    appContext.registerComponentCallbacks(new MemoryTrimHook());
+  }
+
+  /**
+   * 最近是否收到过内存紧张的回调
+   */
+  static boolean isUnderPressure() {
+    long until = pressureUntil;
+    return until != 0 && until - System.nanoTime() > 0;
+  }
+
+  /**
+   * 某个级别下内存缓冲应保留的容量：进程即将被回收或系统极度紧张时全部释放，
+   * 一般紧张或已进入后台时保留四分之一，其余情况不变
+   *
+   * @param capacity 原有容量
+   */
+  static int retain(int capacity, int level) {
+    if (!isPressure(level)) {
+      return capacity;
+    }
+    if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+      return 0;
+    }
+    return capacity / 4;
+  }
+
+  /**
+   * UI_HIDDEN 和 RUNNING_MODERATE 只表示界面不可见或内存略有减少，不算紧张
+   */
+  private static boolean isPressure(int level) {
+    return level >= TRIM_MEMORY_BACKGROUND
+        || level == TRIM_MEMORY_RUNNING_LOW
+        || level == TRIM_MEMORY_RUNNING_CRITICAL;
+  }
+
+  /**
+   * 通知所有已注册的目标，也可以由应用在自己的 onTrimMemory 中直接调用
+   */
+  static void trimAll(int level) {
+    if (isPressure(level)) {
+      pressureUntil = System.nanoTime() + PRESSURE_WINDOW_NANOS;
+    }
+    for (WeakReference<Target> reference : targets) {
+      Target target = reference.get();
+      if (target == null) {
+        targets.remove(reference);
+        continue;
+      }
+      try {
+        target.onTrimMemory(level);
+      } catch (RuntimeException ignored) {
+        // 一个目标出错不影响其他目标
+      }
+    }
+  }
+
+  @Override public void onTrimMemory(int level) {
+    trimAll(level);
+  }
+
+  @Override public void onLowMemory() {
+    trimAll(TRIM_MEMORY_COMPLETE);
+  }
+
+  @Override public void onConfigurationChanged(@NonNull Configuration newConfig) {
+  }
+
+  /**
+   * 可以在内存紧张时释放缓冲的目标
+   */
+  interface Target {
+
+    /**
+     * 投递落盘和释放缓冲的任务，在主线程调用，不能阻塞
+     *
+     * @param level {@link ComponentCallbacks2} 中的 TRIM_MEMORY_* 级别
+     */
+    void onTrimMemory(int level);
+  }
+}
@@ -0,0 +1,372 @@
+package com.orhanobut.logger;
+
+import static com.orhanobut.logger.Utils.checkNotNull;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 把任意对象（包括数组、集合、Map）渲染为字符串，直接追加到调用方的缓冲区中。
+ * <p>
+ * 与 {@code Arrays.deepToString} / {@code Collection.toString} 输出格式相同，但会限制：
+ * <ul>
+ *   <li>每个数组 / 集合最多输出的元素个数，超出部分以 {@code ...(+N)} 表示</li>
+ *   <li>最大嵌套层数，超出部分以 {@code [...]} 表示</li>
+ *   <li>最多输出的字符数，超出后截断并追加 {@code ...(truncated)}</li>
+ * </ul>
+ * 每种类型的分派结果会被缓存，重复出现的类型不再逐个 instanceof 判断。
+ *
+ * <pre><code>
+ *   ObjectRenderer renderer = ObjectRenderer.newBuilder()
+ *       .maxElements(100)     // (Optional) 每个容器最多输出的元素数。Default 100
+ *       .maxDepth(5)          // (Optional) 最大嵌套层数。Default 5
+ *       .maxChars(16 * 1024)  // (Optional) 最多输出的字符数。Default 16K
+ *       .build();
+ *   ObjectRenderer.setDefault(renderer);
+ * </code></pre>
+ */
+public final class ObjectRenderer {
+
+  private static final String TRUNCATED = "...(truncated)";
+
+  /**
+   * 对象的渲染方式
+   */
+  private enum Kind {
+    PLAIN, COLLECTION, MAP, OBJECT_ARRAY,
+    BOOLEAN_ARRAY, BYTE_ARRAY, CHAR_ARRAY, SHORT_ARRAY, INT_ARRAY, LONG_ARRAY, FLOAT_ARRAY, DOUBLE_ARRAY
+  }
+
+  /**
+   * 类型分派缓存，所有渲染器共享
+   */
+  private static final ConcurrentHashMap<Class<?>, Kind> KINDS = new ConcurrentHashMap<>();
+
+  private static volatile ObjectRenderer defaultRenderer = newBuilder().build();
+
+  private final int maxElements;
+  private final int maxDepth;
+  private final int maxChars;
+
+  private ObjectRenderer(@NonNull Builder builder) {
+    maxElements = builder.maxElements;
+    maxDepth = builder.maxDepth;
+    maxChars = builder.maxChars;
+  }
+
+  @NonNull public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * 获取 {@link Utils#toString(Object)} 与 {@code Logger.d(Object)} 使用的默认渲染器
+   */
+  @NonNull public static ObjectRenderer getDefault() {
+    return defaultRenderer;
+  }
+
+  /**
+   * 替换默认渲染器
+   */
+  public static void setDefault(@NonNull ObjectRenderer renderer) {
+    defaultRenderer = checkNotNull(renderer);
+  }
+
+  /**
+   * 渲染为字符串
+   */
+  @NonNull public String render(@Nullable Object object) {
+    StringBuilder builder = new StringBuilder();
+    render(object, builder);
+    return builder.toString();
+  }
+
+  /**
+   * 渲染并追加到 out 末尾，追加的字符数不超过 maxChars（截断标记除外）
+   *
+   * @param object 要渲染的对象
+   * @param out    输出缓冲区
+   */
+  public void render(@Nullable Object object, @NonNull StringBuilder out) {
+    checkNotNull(out);
+
+    int limit = out.length() + maxChars;
+    if (!append(object, out, limit, 0, null)) {
+      out.setLength(Math.min(out.length(), limit));
+      out.append(TRUNCATED);
+    }
+  }
+
+  /**
+   * @return false 表示已达到字符上限，调用方应停止输出
+   */
+  private boolean append(@Nullable Object object, @NonNull StringBuilder out, int limit, int depth,
+                         @Nullable Parent parent) {
+    if (object == null) {
+      out.append("null");
+      return out.length() < limit;
+    }
+    Kind kind = kindOf(object.getClass());
+    switch (kind) {
+      case PLAIN:
+        break;
+      case OBJECT_ARRAY:
+        return appendObjectArray((Object[]) object, out, limit, depth, parent);
+      case COLLECTION:
+        return appendCollection((Collection<?>) object, out, limit, depth, parent);
+      case MAP:
+        return appendMap((Map<?, ?>) object, out, limit, depth, parent);
+      default:
+        return appendPrimitiveArray(kind, object, out, limit);
+    }
+    String text = String.valueOf(object);
+    int room = limit - out.length();
+    if (text.length() > room) {
+      out.append(text, 0, Math.max(0, room));
+      return false;
+    }
+    out.append(text);
+    return out.length() < limit;
+  }
+
+  private boolean appendPrimitiveArray(@NonNull Kind kind, @NonNull Object array, @NonNull StringBuilder out,
+                                       int limit) {
+    int length = Array.getLength(array);
+    out.append('[');
+    for (int i = 0; i < length; i++) {
+      if (i >= maxElements) {
+        appendMore(out, i, length - i);
+        break;
+      }
+      if (i > 0) {
+        out.append(", ");
+      }
+      appendPrimitive(kind, array, i, out);
+      if (out.length() >= limit) {
+        return false;
+      }
+    }
+    out.append(']');
+    return out.length() < limit;
+  }
+
+  private static void appendPrimitive(@NonNull Kind kind, @NonNull Object array, int i, @NonNull StringBuilder out) {
+    switch (kind) {
+      case INT_ARRAY:
+        out.append(((int[]) array)[i]);
+        break;
+      case LONG_ARRAY:
+        out.append(((long[]) array)[i]);
+        break;
+      case BYTE_ARRAY:
+        out.append(((byte[]) array)[i]);
+        break;
+      case DOUBLE_ARRAY:
+        out.append(((double[]) array)[i]);
+        break;
+      case FLOAT_ARRAY:
+        out.append(((float[]) array)[i]);
+        break;
+      case CHAR_ARRAY:
+        out.append(((char[]) array)[i]);
+        break;
+      case SHORT_ARRAY:
+        out.append(((short[]) array)[i]);
+        break;
+      default:
+        out.append(((boolean[]) array)[i]);
+        break;
+    }
+  }
+
+  private boolean appendObjectArray(@NonNull Object[] array, @NonNull StringBuilder out, int limit, int depth,
+                                    @Nullable Parent parent) {
+    if (depth >= maxDepth || Parent.contains(parent, array)) {
+      out.append("[...]");
+      return out.length() < limit;
+    }
+    Parent self = new Parent(array, parent);
+    out.append('[');
+    for (int i = 0; i < array.length; i++) {
+      if (i >= maxElements) {
+        appendMore(out, i, array.length - i);
+        break;
+      }
+      if (i > 0) {
+        out.append(", ");
+      }
+      if (!append(array[i], out, limit, depth + 1, self)) {
+        return false;
+      }
+    }
+    out.append(']');
+    return out.length() < limit;
+  }
+
+  private boolean appendCollection(@NonNull Collection<?> collection, @NonNull StringBuilder out, int limit,
+                                   int depth, @Nullable Parent parent) {
+    if (depth >= maxDepth || Parent.contains(parent, collection)) {
+      out.append("[...]");
+      return out.length() < limit;
+    }
+    Parent self = new Parent(collection, parent);
+    int size = collection.size();
+    int i = 0;
+    out.append('[');
+    for (Iterator<?> it = collection.iterator(); it.hasNext(); i++) {
+      if (i >= maxElements) {
+        appendMore(out, i, size - i);
+        break;
+      }
+      if (i > 0) {
+        out.append(", ");
+      }
+      if (!append(it.next(), out, limit, depth + 1, self)) {
+        return false;
+      }
+    }
+    out.append(']');
+    return out.length() < limit;
+  }
+
+  private boolean appendMap(@NonNull Map<?, ?> map, @NonNull StringBuilder out, int limit, int depth,
+                            @Nullable Parent parent) {
+    if (depth >= maxDepth || Parent.contains(parent, map)) {
+      out.append("{...}");
+      return out.length() < limit;
+    }
+    Parent self = new Parent(map, parent);
+    int size = map.size();
+    int i = 0;
+    out.append('{');
+    for (Iterator<? extends Map.Entry<?, ?>> it = map.entrySet().iterator(); it.hasNext(); i++) {
+      if (i >= maxElements) {
+        appendMore(out, i, size - i);
+        break;
+      }
+      if (i > 0) {
+        out.append(", ");
+      }
+      Map.Entry<?, ?> entry = it.next();
+      if (!append(entry.getKey(), out, limit, depth + 1, self)) {
+        return false;
+      }
+      out.append('=');
+      if (!append(entry.getValue(), out, limit, depth + 1, self)) {
+        return false;
+      }
+    }
+    out.append('}');
+    return out.length() < limit;
+  }
+
+  private static void appendMore(@NonNull StringBuilder out, int written, int remaining) {
+    if (written > 0) {
+      out.append(", ");
+    }
+    out.append("...(+").append(remaining).append(')');
+  }
+
+  @NonNull private static Kind kindOf(@NonNull Class<?> type) {
+    Kind kind = KINDS.get(type);
+    if (kind == null) {
+      kind = classify(type);
+      KINDS.put(type, kind);
+    }
+    return kind;
+  }
+
+  @NonNull private static Kind classify(@NonNull Class<?> type) {
+    if (type.isArray()) {
+      Class<?> component = type.getComponentType();
+      if (!component.isPrimitive()) {
+        return Kind.OBJECT_ARRAY;
+      }
+      if (component == int.class) {
+        return Kind.INT_ARRAY;
+      }
+      if (component == long.class) {
+        return Kind.LONG_ARRAY;
+      }
+      if (component == byte.class) {
+        return Kind.BYTE_ARRAY;
+      }
+      if (component == double.class) {
+        return Kind.DOUBLE_ARRAY;
+      }
+      if (component == float.class) {
+        return Kind.FLOAT_ARRAY;
+      }
+      if (component == char.class) {
+        return Kind.CHAR_ARRAY;
+      }
+      if (component == short.class) {
+        return Kind.SHORT_ARRAY;
+      }
+      return Kind.BOOLEAN_ARRAY;
+    }
+    if (Collection.class.isAssignableFrom(type)) {
+      return Kind.COLLECTION;
+    }
+    if (Map.class.isAssignableFrom(type)) {
+      return Kind.MAP;
+    }
+    return Kind.PLAIN;
+  }
+
+  /**
+   * 当前渲染路径上的容器，用于识别自引用
+   */
+  private static final class Parent {
+    @NonNull final Object value;
+    @Nullable final Parent parent;
+
+    Parent(@NonNull Object value, @Nullable Parent parent) {
+      this.value = value;
+      this.parent = parent;
+    }
+
+    static boolean contains(@Nullable Parent parent, @NonNull Object value) {
+      for (Parent p = parent; p != null; p = p.parent) {
+        if (p.value == value) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  public static final class Builder {
+    int maxElements = 100;
+    int maxDepth = 5;
+    int maxChars = 16 * 1024;
+
+    private Builder() {
+    }
+
+    @NonNull public Builder maxElements(int val) {
+      maxElements = Math.max(0, val);
+      return this;
+    }
+
+    @NonNull public Builder maxDepth(int val) {
+      maxDepth = Math.max(1, val);
+      return this;
+    }
+
+    @NonNull public Builder maxChars(int val) {
+      maxChars = Math.max(1, val);
+      return this;
+    }
+
+    @NonNull public ObjectRenderer build() {
+      return new ObjectRenderer(this);
+    }
+  }
+}
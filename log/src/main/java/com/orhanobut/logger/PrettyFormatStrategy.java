@@ -234,7 +234,7 @@ import androidx.annotation.Nullable;
   /**
    * 格式化日志标签。
    */
-  @Nullable private String formatTag(@Nullable String tag) {
+  @Nullable String formatTag(@Nullable String tag) {
     if (!Utils.isEmpty(tag) && !Utils.equals(this.tag, tag)) {
       return tag;
     }
@@ -116,5 +116,35 @@ import androidx.annotation.Nullable;
    * 清除所有日志适配器
    */
   void clearLogAdapters();
+
+  /**
+   * 判断某个级别和标签的日志是否会被至少一个适配器输出
+   *
+   * @param priority 日志优先级
+   * @param tag 日志标签，可以为 null
+   */
+  boolean isLoggable(int priority, @Nullable String tag);
+
+  /**
+   * 清除 {@link #isLoggable(int, String)} 的缓存结果
+   */
+  void invalidateLoggableCache();
+
+  /**
+   * 开始构建一条结构化日志
+   *
+   * @param priority 日志优先级
+   * @return 构建器；该级别不输出时返回不做任何事的空实现
+   */
+  @NonNull LogEventBuilder at(int priority);
+
+  /**
+   * 开始构建一条指定标签的结构化日志，按该标签判断是否输出
+   *
+   * @param priority 日志优先级
+   * @param tag      日志标签
+   * @return 构建器；该级别和标签不输出时返回不做任何事的空实现
+   */
+  @NonNull LogEventBuilder at(int priority, @Nullable String tag);
 }
 
@@ -0,0 +1,79 @@
+package com.orhanobut.logger;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 最近写入的日志行的固定容量环形缓冲区，写满后覆盖最旧的一行。
+ * <p>
+ * 由磁盘写线程在每行成功写入后追加，所以其中的内容总是磁盘上最后的若干行。
+ * 读取日志时先取这里的快照，只有更早的历史才需要读文件；崩溃上报等场景也可以在任意线程直接获取，不涉及 IO。
+ * <p>
+ * 内存紧张时可以缩小容量（只保留最新的若干行），压力解除后的下一次写入恢复原有容量，见 {@link MemoryTrimHook}。
+ */
+final class RecentLogRing {
+
+  private final int capacity; // 配置的容量
+  @NonNull private String[] entries;
+  private long written; // 当前数组累计写入的行数
+
+  /**
+   * @param capacity 容量，数组在创建时一次分配好
+   */
+  RecentLogRing(int capacity) {
+    this.capacity = Math.max(1, capacity);
+    entries = new String[this.capacity];
+  }
+
+  synchronized void add(@NonNull String line) {
+    if (entries.length < capacity && !MemoryTrimHook.isUnderPressure()) {
+      resize(capacity);
+    }
+    if (entries.length == 0) {
+      return;
+    }
+    entries[(int) (written % entries.length)] = line;
+    written++;
+  }
+
+  /**
+   * 缩小容量，只保留最新的 max 行；max 不小于当前容量时不做任何事
+   */
+  synchronized void shrink(int max) {
+    if (max < entries.length) {
+      resize(Math.max(0, max));
+    }
+  }
+
+  synchronized int size() {
+    return (int) Math.min(written, entries.length);
+  }
+
+  /**
+   * 获取最近的日志行，最新的在前
+   *
+   * @param max 最多返回的行数
+   */
+  @NonNull synchronized List<String> snapshot(int max) {
+    int count = Math.min(size(), Math.max(0, max));
+    List<String> lines = new ArrayList<>(count);
+    for (long i = written - 1; lines.size() < count; i--) {
+      lines.add(entries[(int) (i % entries.length)]);
+    }
+    return lines;
+  }
+
+  /**
+   * 换成新容量的数组，保留最新的行
+   */
+  private void resize(int newCapacity) {
+    List<String> newest = snapshot(newCapacity);
+    entries = new String[newCapacity];
+    written = 0;
+    for (int i = newest.size() - 1; i >= 0; i--) {
+      entries[(int) written++] = newest.get(i);
+    }
+  }
+}
@@ -0,0 +1,393 @@
+package com.orhanobut.logger;
+
+import static com.orhanobut.logger.Utils.ERROR;
+import static com.orhanobut.logger.Utils.checkNotNull;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 每个生产线程先把日志写入自己的暂存缓冲区，再成批交给工作线程，工作线程按时间顺序合并后输出。
+ * <p>
+ * 与 {@link AsyncLogAdapter} 不同，调用方不竞争同一个队列：缓冲区只属于当前线程，写满时才把整块交出，
+ * 未写满的缓冲区由工作线程按固定间隔收取。日志频繁的线程因此几乎不接触共享状态，
+ * {@link LoggerPrinter} 也不再为本适配器加锁（见 {@link LogAdapter#isConcurrent()}）。
+ * <p>
+ * 合并依据是入缓冲区时的 {@link System#nanoTime()}，同一次收取中的日志严格按时间排序；
+ * 收取之后才写入的、时间更早的日志只会排在下一批，不同线程之间的顺序因此可能有几毫秒的偏差。
+ * 待处理的批次超过上限时丢弃新写满的批次并计入 {@link LogMetrics.Snapshot#drops}。
+ * 内存紧张时立即收取所有线程的缓冲区，之后一段时间内批次上限降为四分之一，见 {@link MemoryTrimHook}。
+ * 写入 ERROR / ASSERT 时不等缓冲区写满，立即把当前缓冲区交出并唤醒工作线程，这样的批次也不会被丢弃。
+ *
+ * <pre><code>
+ *   LogAdapter adapter = StagedLogAdapter.newBuilder()
+ *       .adapter(new DiskLogAdapter())  // 被包装的适配器
+ *       .bufferSize(64)                 // (Optional) 每个线程缓冲的条数。Default 64
+ *       .flushIntervalMs(100)           // (Optional) 未写满的缓冲区多久收取一次。Default 100ms
+ *       .maxPendingBatches(64)          // (Optional) 等待输出的批次上限。Default 64
+ *       .name("disk")                   // (Optional) 工作线程名称
+ *       .build();
+ *   Logger.addLogAdapter(adapter);
+ * </code></pre>
+ */
+final class StagedLogAdapter implements LogAdapter, CrashFlushHook.Target, MemoryTrimHook.Target {
+
+  private static final AtomicInteger threadIndex = new AtomicInteger();
+
+  @NonNull private final LogAdapter delegate;
+  private final int bufferSize;
+  private final long flushIntervalNanos;
+  private final int maxPendingBatches;
+  @NonNull private final String name;
+
+  private final ThreadLocal<Stage> localStage = new ThreadLocal<>();
+  private final CopyOnWriteArrayList<Stage> stages = new CopyOnWriteArrayList<>(); // 所有线程的缓冲区
+  private final ConcurrentLinkedQueue<Event[]> fullBatches = new ConcurrentLinkedQueue<>(); // 已写满、等待输出的批次
+  private final AtomicInteger pendingBatches = new AtomicInteger();
+  private final ConcurrentLinkedQueue<CountDownLatch> flushRequests = new ConcurrentLinkedQueue<>();
+  private final Object lock = new Object();
+  private volatile boolean sleeping; // 工作线程是否在无限期等待
+  @Nullable private volatile Thread worker;
+
+  private StagedLogAdapter(@NonNull Builder builder) {
+    delegate = builder.adapter;
+    bufferSize = builder.bufferSize;
+    flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(builder.flushIntervalMs);
+    maxPendingBatches = builder.maxPendingBatches;
+    name = builder.name != null ? builder.name : "StagedLogAdapter-" + threadIndex.incrementAndGet();
+    // 崩溃时先把各线程缓冲区交给被包装的适配器，再由磁盘写线程落盘
+    CrashFlushHook.registerUpstream(this);
+    MemoryTrimHook.register(this);
+  }
+
+  @NonNull public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  @Override public boolean isLoggable(int priority, @Nullable String tag) {
+    return delegate.isLoggable(priority, tag);
+  }
+
+  /**
+   * 只写入当前线程的缓冲区，不需要 {@link LoggerPrinter} 加锁
+   */
+  @Override public boolean isConcurrent() {
+    return true;
+  }
+
+  @Override public void log(int priority, @Nullable String tag, @NonNull String message) {
+    stage(new Event(System.nanoTime(), priority, tag, checkNotNull(message), null));
+  }
+
+  /**
+   * 键值对只在本次调用期间有效，写入缓冲区前复制一份
+   */
+  @Override public void log(int priority, @Nullable String tag, @NonNull String message, @NonNull LogFields fields) {
+    stage(new Event(System.nanoTime(), priority, tag, checkNotNull(message), fields.copy()));
+  }
+
+  /**
+   * 收取所有线程的缓冲区并等待它们交给被包装的适配器
+   */
+  @Override public void flushBlocking(long timeoutMs) {
+    if (Thread.currentThread() == worker) {
+      return;
+    }
+    CountDownLatch latch = new CountDownLatch(1);
+    flushRequests.add(latch);
+    LockSupport.unpark(ensureRunning());
+    try {
+      latch.await(timeoutMs, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * 不等收取间隔，立即把所有线程的缓冲区交给被包装的适配器，不等待完成
+   */
+  @Override public void onTrimMemory(int level) {
+    Thread thread = worker;
+    if (thread == null) {
+      return; // 还没有写过任何日志
+    }
+    flushRequests.add(new CountDownLatch(1));
+    LockSupport.unpark(thread);
+  }
+
+  private void stage(@NonNull Event event) {
+    Stage stage = localStage.get();
+    if (stage == null) {
+      stage = new Stage(Thread.currentThread(), bufferSize);
+      localStage.set(stage);
+      stages.add(stage);
+    }
+    Event[] full = null;
+    boolean wasEmpty;
+    boolean urgent = event.priority >= ERROR;
+    // 这把锁只有本线程和工作线程收取时才会用到，几乎没有竞争。
+    // 交出的批次在锁内入队，工作线程先收取缓冲区再取批次，同一线程的日志不会被拆到先后两次收取中颠倒顺序
+    synchronized (stage) {
+      wasEmpty = stage.count == 0;
+      stage.events[stage.count++] = event;
+      if (urgent) {
+        full = Arrays.copyOf(stage.events, stage.count);
+        Arrays.fill(stage.events, 0, stage.count, null);
+        stage.count = 0;
+      } else if (stage.count == bufferSize) {
+        full = stage.events;
+        stage.events = new Event[bufferSize];
+        stage.count = 0;
+      }
+      if (full != null) {
+        if (pendingBatches.incrementAndGet() > maxPendingBatches() && !urgent) {
+          pendingBatches.decrementAndGet();
+          LogMetrics.get().onDrop(full.length);
+        } else {
+          fullBatches.add(full);
+        }
+      }
+    }
+    Thread thread = ensureRunning();
+    if (full != null) {
+      LockSupport.unpark(thread);
+    } else if (wasEmpty && sleeping) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  /**
+   * 等待输出的批次上限，内存紧张时降低
+   */
+  private int maxPendingBatches() {
+    return MemoryTrimHook.isUnderPressure() ? Math.max(1, maxPendingBatches / 4) : maxPendingBatches;
+  }
+
+  @NonNull private Thread ensureRunning() {
+    Thread thread = worker;
+    if (thread != null) {
+      return thread;
+    }
+    synchronized (lock) {
+      if (worker == null) {
+        thread = new Thread(this::drain, name);
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+      }
+      return worker;
+    }
+  }
+
+  private void drain() {
+    List<Event[]> runs = new ArrayList<>();
+    List<CountDownLatch> latches = new ArrayList<>();
+    while (true) {
+      // 先取出 flush 请求，再收取缓冲区，保证请求之前写入的日志都在这一批中
+      CountDownLatch latch;
+      while ((latch = flushRequests.poll()) != null) {
+        latches.add(latch);
+      }
+      boolean delivered = collect(runs);
+      if (delivered) {
+        deliver(runs);
+        runs.clear();
+      }
+      for (CountDownLatch l : latches) {
+        l.countDown();
+      }
+      latches.clear();
+
+      if (!flushRequests.isEmpty()) {
+        continue;
+      }
+      if (delivered) {
+        LockSupport.parkNanos(this, flushIntervalNanos);
+        continue;
+      }
+      // 没有任何日志时无限期等待，直到有线程写入空缓冲区
+      sleeping = true;
+      if (!hasStaged() && flushRequests.isEmpty()) {
+        LockSupport.park(this);
+      }
+      sleeping = false;
+    }
+  }
+
+  /**
+   * 收取写满的批次和各线程未写满的缓冲区，已退出线程的空缓冲区被移除
+   *
+   * @return 是否收取到日志
+   */
+  private boolean collect(@NonNull List<Event[]> runs) {
+    for (Stage stage : stages) {
+      Event[] partial = null;
+      synchronized (stage) {
+        if (stage.count > 0) {
+          partial = new Event[stage.count];
+          System.arraycopy(stage.events, 0, partial, 0, stage.count);
+          Arrays.fill(stage.events, 0, stage.count, null);
+          stage.count = 0;
+        }
+      }
+      Thread owner = stage.owner.get();
+      if (partial != null) {
+        runs.add(partial);
+      } else if (owner == null || !owner.isAlive()) {
+        stages.remove(stage);
+      }
+    }
+    // 必须在收取缓冲区之后取批次，见 stage()
+    Event[] batch;
+    while ((batch = fullBatches.poll()) != null) {
+      pendingBatches.decrementAndGet();
+      runs.add(batch);
+    }
+    return !runs.isEmpty();
+  }
+
+  private boolean hasStaged() {
+    if (!fullBatches.isEmpty()) {
+      return true;
+    }
+    for (Stage stage : stages) {
+      synchronized (stage) {
+        if (stage.count > 0) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * 每个批次内部已按时间有序，多路归并后依次交给被包装的适配器
+   */
+  private void deliver(@NonNull List<Event[]> runs) {
+    PriorityQueue<Cursor> heap = new PriorityQueue<>(runs.size());
+    for (Event[] run : runs) {
+      heap.add(new Cursor(run));
+    }
+    while (!heap.isEmpty()) {
+      Cursor cursor = heap.poll();
+      Event event = cursor.run[cursor.index];
+      try {
+        if (event.fields == null) {
+          delegate.log(event.priority, event.tag, event.message);
+        } else {
+          delegate.log(event.priority, event.tag, event.message, event.fields);
+        }
+      } catch (RuntimeException e) {
+        // 一个输出目标出错不能让工作线程退出
+        LogMetrics.get().onDrop(1);
+      }
+      if (++cursor.index < cursor.run.length) {
+        heap.add(cursor);
+      }
+    }
+  }
+
+  /**
+   * 一个线程的暂存缓冲区，由该线程和工作线程持有自身锁访问
+   */
+  private static final class Stage {
+    @NonNull final WeakReference<Thread> owner;
+    @NonNull Event[] events;
+    int count;
+
+    Stage(@NonNull Thread owner, int capacity) {
+      this.owner = new WeakReference<>(owner);
+      this.events = new Event[capacity];
+    }
+  }
+
+  /**
+   * 缓冲区中的一条日志
+   */
+  private static final class Event {
+    final long nanos;
+    final int priority;
+    @Nullable final String tag;
+    @NonNull final String message;
+    @Nullable final LogFields fields;
+
+    Event(long nanos, int priority, @Nullable String tag, @NonNull String message, @Nullable LogFields fields) {
+      this.nanos = nanos;
+      this.priority = priority;
+      this.tag = tag;
+      this.message = message;
+      this.fields = fields;
+    }
+  }
+
+  /**
+   * 归并时某个批次的读取位置
+   */
+  private static final class Cursor implements Comparable<Cursor> {
+    @NonNull final Event[] run;
+    int index;
+
+    Cursor(@NonNull Event[] run) {
+      this.run = run;
+    }
+
+    @Override public int compareTo(@NonNull Cursor other) {
+      // nanoTime 可能溢出，按差值比较
+      long diff = run[index].nanos - other.run[other.index].nanos;
+      return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+    }
+  }
+
+  public static final class Builder {
+    LogAdapter adapter;
+    int bufferSize = 64;
+    long flushIntervalMs = 100;
+    int maxPendingBatches = 64;
+    String name;
+
+    private Builder() {
+    }
+
+    @NonNull public Builder adapter(@NonNull LogAdapter val) {
+      adapter = val;
+      return this;
+    }
+
+    @NonNull public Builder bufferSize(int val) {
+      bufferSize = Math.max(1, val);
+      return this;
+    }
+
+    @NonNull public Builder flushIntervalMs(long val) {
+      flushIntervalMs = Math.max(1, val);
+      return this;
+    }
+
+    @NonNull public Builder maxPendingBatches(int val) {
+      maxPendingBatches = Math.max(1, val);
+      return this;
+    }
+
+    @NonNull public Builder name(@Nullable String val) {
+      name = val;
+      return this;
+    }
+
+    @NonNull public StagedLogAdapter build() {
+      checkNotNull(adapter);
+      return new StagedLogAdapter(this);
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package com.orhanobut.logger;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段累加计数器，思路与 {@code java.util.concurrent.atomic.LongAdder} 相同。
+ * <p>
+ * LongAdder 需要 API 24，而本库 minSdk 为 21，这里按线程把累加分散到多个槽位，
+ * 读取时再求和，避免多个打印线程争用同一个原子变量。
+ */
+final class StripedCounter {
+
+  /**
+   * 槽位数量，取不小于 CPU 核数两倍的 2 的幂，最多 64 个
+   */
+  static final int STRIPES = stripes();
+
+  /**
+   * 相邻槽位间隔 8 个 long（64 字节），让每个槽位独占一条缓存行
+   */
+  private static final int PADDING = 8;
+
+  private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+  void increment() {
+    add(1);
+  }
+
+  void add(long value) {
+    cells.getAndAdd(stripe() * PADDING, value);
+  }
+
+  /**
+   * 汇总所有槽位。并发写入时结果不是原子快照，但用于统计已经足够。
+   */
+  long sum() {
+    long sum = 0;
+    for (int i = 0; i < STRIPES; i++) {
+      sum += cells.get(i * PADDING);
+    }
+    return sum;
+  }
+
+  void reset() {
+    for (int i = 0; i < STRIPES; i++) {
+      cells.set(i * PADDING, 0);
+    }
+  }
+
+  /**
+   * 当前线程使用的槽位，范围 [0, {@link #STRIPES})，其他需要分段累加的统计也按它分散
+   */
+  static int stripe() {
+    long id = Thread.currentThread().getId();
+    int h = (int) (id ^ (id >>> 32));
+    h *= 0x9E3779B9; // 打散连续的线程 id
+    h ^= h >>> 16;
+    return h & (STRIPES - 1);
+  }
+
+  private static int stripes() {
+    int target = Math.min(64, Runtime.getRuntime().availableProcessors() * 2);
+    int n = 1;
+    while (n < target) {
+      n <<= 1;
+    }
+    return n;
+  }
+}
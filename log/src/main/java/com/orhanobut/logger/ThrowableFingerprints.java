@@ -0,0 +1,178 @@
+package com.orhanobut.logger;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 按调用栈指纹对写入磁盘的异常去重。
+ * <p>
+ * 打印时异常总是以定义标记 {@code [trace:<id>]} 加完整堆栈输出（见 {@link #define}），LogCat 中也带有同样的标记，
+ * 便于与磁盘日志对应；去重只发生在磁盘写入时。
+ * 写入磁盘时由写线程按分段去重：同一分段中某个调用栈第一次出现时保留完整堆栈，之后只写引用标记
+ * {@code [trace:<id> x<n>]}，n 为在本分段中第几次出现。切换分段后重新开始计数，因此每个引用的定义都在同一个
+ * 分段文件中，旧分段被删除或只导出部分文件时也能找回完整堆栈。
+ */
+public final class ThrowableFingerprints {
+
+  /**
+   * 异常链最多参与计算的层数，防止循环引用
+   */
+  private static final int MAX_CAUSE_DEPTH = 16;
+
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private static final String NEW_LINE = System.getProperty("line.separator");
+
+  private static final Pattern MARK = Pattern.compile("\\[trace:([0-9a-f]{16})(?: x(\\d+))?]");
+
+  private static final String DEFINITION_PREFIX = "[trace:";
+
+  /**
+   * {@link LoggerPrinter} 在消息和异常之间添加的分隔符
+   */
+  static final String SEPARATOR = " : ";
+
+  /**
+   * {@link CsvFormatStrategy} 替换换行符后的内容，定义标记之后紧跟堆栈的第一行
+   */
+  private static final String LINE_BREAK = " <br> ";
+
+  private final Map<String, int[]> occurrences = new HashMap<>(); // 当前分段中出现过的指纹，只在写线程访问
+
+  ThrowableFingerprints() {
+  }
+
+  /**
+   * 生成异常的输出内容：定义标记加完整堆栈。
+   *
+   * @param throwable 异常
+   * @return 输出内容；与 {@link Utils#getStackTraceString(Throwable)} 一样，网络异常返回空字符串
+   */
+  @NonNull static String define(@NonNull Throwable throwable) {
+    String trace = Utils.getStackTraceString(throwable);
+    if (trace.isEmpty()) {
+      return trace;
+    }
+    return DEFINITION_PREFIX + hex(fingerprint(throwable)) + "]" + NEW_LINE + trace;
+  }
+
+  /**
+   * 对即将写入当前分段的一行去重：指纹在本分段中第一次出现时原样返回，
+   * 之后把定义标记和堆栈替换为引用标记。堆栈到键值对分隔符或行尾为止。
+   *
+   * @param line 格式化后的日志行
+   * @return 实际写入的内容
+   */
+  @NonNull String dedupe(@NonNull String line) {
+    Matcher matcher = MARK.matcher(line);
+    int mark = findDefinition(line, matcher);
+    if (mark < 0) {
+      return line;
+    }
+    String id = matcher.group(1);
+    int[] count = occurrences.get(id);
+    if (count == null) {
+      occurrences.put(id, new int[]{1});
+      return line;
+    }
+    count[0]++;
+    int end = line.indexOf(CsvLogRecord.FIELD_SEPARATOR, matcher.end());
+    if (end < 0) {
+      end = line.endsWith(NEW_LINE) ? line.length() - NEW_LINE.length() : line.length();
+    }
+    return line.substring(0, mark) + DEFINITION_PREFIX + id + " x" + count[0] + "]" + line.substring(end);
+  }
+
+  /**
+   * 查找 {@link LoggerPrinter} 写入的定义标记：位于消息开头（前面是标签后的 ','）或 {@link #SEPARATOR} 之后，
+   * 并且紧跟换行。用户消息中恰好出现的 {@code [trace:} 文本不满足这些条件，会被跳过
+   *
+   * @return 标记的位置，找到时 matcher 指向该标记；没有时返回 -1
+   */
+  private static int findDefinition(@NonNull String line, @NonNull Matcher matcher) {
+    int mark = line.indexOf(DEFINITION_PREFIX);
+    while (mark >= 0) {
+      boolean separated = line.startsWith(SEPARATOR, mark - SEPARATOR.length())
+          || (mark > 0 && line.charAt(mark - 1) == ',');
+      if (separated) {
+        matcher.region(mark, line.length());
+        if (matcher.lookingAt() && matcher.group(2) == null
+            && (line.startsWith(LINE_BREAK, matcher.end()) || line.startsWith(NEW_LINE, matcher.end()))) {
+          return mark;
+        }
+      }
+      mark = line.indexOf(DEFINITION_PREFIX, mark + 1);
+    }
+    return -1;
+  }
+
+  /**
+   * 清空已记录的指纹，切换分段时调用，之后每个异常都会重新输出一次完整堆栈
+   */
+  void clear() {
+    occurrences.clear();
+  }
+
+  /**
+   * 计算异常链的指纹：异常类型加上每一帧的类名、方法名、文件名和行号，
+   * 不包含异常消息，因此消息中带有变量的同一异常会被视为重复。
+   */
+  static long fingerprint(@NonNull Throwable throwable) {
+    long hash = FNV_OFFSET;
+    Throwable t = throwable;
+    for (int depth = 0; t != null && depth < MAX_CAUSE_DEPTH; depth++) {
+      hash = mix(hash, t.getClass().getName());
+      for (StackTraceElement element : t.getStackTrace()) {
+        hash = mix(hash, element.getClassName());
+        hash = mix(hash, element.getMethodName());
+        hash = mix(hash, element.getFileName());
+        hash = (hash ^ element.getLineNumber()) * FNV_PRIME;
+      }
+      t = t.getCause() == t ? null : t.getCause();
+    }
+    return hash;
+  }
+
+  /**
+   * 如果日志消息中包含引用标记，返回被引用的指纹 id
+   */
+  @Nullable public static String referenceId(@Nullable String message) {
+    if (message == null) {
+      return null;
+    }
+    Matcher matcher = MARK.matcher(message);
+    return matcher.find() && matcher.group(2) != null ? matcher.group(1) : null;
+  }
+
+  /**
+   * 如果日志消息中包含某个指纹的定义标记（即完整堆栈），返回 true
+   */
+  public static boolean isDefinition(@Nullable String message, @NonNull String id) {
+    return message != null && message.contains(DEFINITION_PREFIX + id + "]");
+  }
+
+  private static long mix(long hash, @Nullable String value) {
+    if (value == null) {
+      return hash * FNV_PRIME;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  @NonNull private static String hex(long value) {
+    String hex = Long.toHexString(value);
+    StringBuilder builder = new StringBuilder(16);
+    for (int i = hex.length(); i < 16; i++) {
+      builder.append('0');
+    }
+    return builder.append(hex).toString();
+  }
+}
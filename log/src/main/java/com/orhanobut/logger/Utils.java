@@ -7,7 +7,6 @@ import androidx.annotation.Nullable;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.UnknownHostException;
-import java.util.Arrays;
 
 
 /**
@@ -142,46 +141,38 @@ public class Utils {
 
   /**
    * 将对象转换为字符串表示。
+   * 数组、集合与 Map 由 {@link ObjectRenderer#getDefault()} 渲染，输出长度受其限制。
    *
    * @param object 要转换的对象
    * @return 对象的字符串表示
    */
   public static String toString(Object object) {
-    if (object == null) {
-      return "null"; // 对象为 null 时返回 "null"
-    }
-    if (!object.getClass().isArray()) {
-      return object.toString(); // 非数组类型直接调用 toString()
-    }
-    // 根据数组类型调用对应的转换方法
-    if (object instanceof boolean[]) {
-      return Arrays.toString((boolean[]) object);
-    }
-    if (object instanceof byte[]) {
-      return Arrays.toString((byte[]) object);
-    }
-    if (object instanceof char[]) {
-      return Arrays.toString((char[]) object);
-    }
-    if (object instanceof short[]) {
-      return Arrays.toString((short[]) object);
-    }
-    if (object instanceof int[]) {
-      return Arrays.toString((int[]) object);
-    }
-    if (object instanceof long[]) {
-      return Arrays.toString((long[]) object);
-    }
-    if (object instanceof float[]) {
-      return Arrays.toString((float[]) object);
-    }
-    if (object instanceof double[]) {
-      return Arrays.toString((double[]) object);
-    }
-    if (object instanceof Object[]) {
-      return Arrays.deepToString((Object[]) object);
+    return ObjectRenderer.getDefault().render(object);
+  }
+
+  /**
+   * 计算字符串按 UTF-8 编码后的字节数，不产生中间数组。
+   *
+   * @param str 要计算的字符串
+   * @return UTF-8 字节数
+   */
+  static int utf8Length(@NonNull CharSequence str) {
+    int length = str.length();
+    int bytes = length;
+    for (int i = 0; i < length; i++) {
+      char c = str.charAt(i);
+      if (c >= 0x80) {
+        if (c < 0x800) {
+          bytes += 1;
+        } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(str.charAt(i + 1))) {
+          bytes += 2; // 代理对共 4 字节，两个 char 已各计 1
+          i++;
+        } else {
+          bytes += 2;
+        }
+      }
     }
-    return "Couldn't find a correct type for the object"; // 未知类型
+    return bytes;
   }
 
   /**
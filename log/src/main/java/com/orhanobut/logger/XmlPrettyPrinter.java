@@ -0,0 +1,254 @@
+package com.orhanobut.logger;
+
+import static com.orhanobut.logger.Utils.checkNotNull;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * 基于 {@link XmlPullParser} 的流式 XML 格式化器。
+ * <p>
+ * 替代每次都通过 {@code TransformerFactory.newInstance()} 查找服务并创建 Transformer 的做法：
+ * 解析器工厂只创建一次，每个线程复用自己的解析器，边解析边把缩进后的内容写入输出缓冲区。
+ * Android 上没有 StAX，XmlPullParser 是系统自带的等价流式接口。
+ */
+final class XmlPrettyPrinter {
+
+  private static final String TRUNCATED = "...(truncated)";
+  private static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+  @Nullable private static XmlPullParserFactory factory;
+
+  private final int indent; // 每层缩进的空格数
+  private final int maxChars; // 最多输出的字符数，0 表示不限制
+  private final ThreadLocal<XmlPullParser> parsers = new ThreadLocal<>();
+
+  /**
+   * @param indent   每层缩进的空格数
+   * @param maxChars 最多输出的字符数，超出后截断，0 表示不限制
+   */
+  XmlPrettyPrinter(int indent, int maxChars) {
+    this.indent = indent;
+    this.maxChars = maxChars;
+  }
+
+  /**
+   * 格式化 xml 并追加到 out
+   *
+   * @param xml 原始内容
+   * @param out 输出缓冲区
+   * @return 格式正确（或因超出长度被截断）时返回 null，否则返回错误描述，已输出的内容保留在 out 中
+   */
+  @Nullable String print(@NonNull String xml, @NonNull StringBuilder out) {
+    checkNotNull(xml);
+    checkNotNull(out);
+
+    int limit = maxChars > 0 ? out.length() + maxChars : Integer.MAX_VALUE;
+    XmlPullParser parser;
+    try {
+      parser = obtainParser();
+      parser.setInput(new StringReader(xml));
+    } catch (XmlPullParserException e) {
+      return e.getMessage();
+    }
+
+    try {
+      return print(parser, out, limit);
+    } finally {
+      release(parser);
+    }
+  }
+
+  @Nullable private String print(@NonNull XmlPullParser parser, @NonNull StringBuilder out, int limit) {
+    out.append(DECLARATION);
+    StringBuilder text = new StringBuilder(); // 尚未输出的文本（已转义），合并被实体引用拆开的片段
+    boolean tagOpen = false; // 开始标签的 '>' 还没有输出
+    boolean hasChildren = false; // 当前元素是否包含子元素或注释（决定结束标签是否换行）
+    try {
+      int event;
+      while ((event = parser.nextToken()) != XmlPullParser.END_DOCUMENT) {
+        if (out.length() >= limit) {
+          out.setLength(limit);
+          out.append(TRUNCATED);
+          return null;
+        }
+        switch (event) {
+          case XmlPullParser.TEXT:
+          case XmlPullParser.IGNORABLE_WHITESPACE:
+            escape(text, parser.getText(), false);
+            break;
+          case XmlPullParser.ENTITY_REF:
+            if (parser.getText() != null) {
+              escape(text, parser.getText(), false);
+            } else {
+              // 未声明的实体无法展开，按原样保留引用
+              text.append('&').append(parser.getName()).append(';');
+            }
+            break;
+          case XmlPullParser.START_TAG: {
+            tagOpen = closeStartTag(out, tagOpen);
+            dropWhitespace(text);
+            flushText(out, text);
+            newLine(out, parser.getDepth() - 1);
+            out.append('<').append(parser.getName());
+            for (int i = 0; i < parser.getAttributeCount(); i++) {
+              out.append(' ').append(parser.getAttributeName(i)).append("=\"");
+              escape(out, parser.getAttributeValue(i), true);
+              out.append('"');
+            }
+            tagOpen = true;
+            hasChildren = false;
+          }
+          break;
+          case XmlPullParser.END_TAG: {
+            dropWhitespace(text);
+            if (tagOpen && text.length() == 0) {
+              out.append("/>");
+            } else {
+              tagOpen = closeStartTag(out, tagOpen);
+              flushText(out, text);
+              if (hasChildren) {
+                newLine(out, parser.getDepth() - 1);
+              }
+              out.append("</").append(parser.getName()).append('>');
+            }
+            tagOpen = false;
+            hasChildren = true; // 对父元素来说，刚结束的是一个子元素
+          }
+          break;
+          case XmlPullParser.COMMENT:
+          case XmlPullParser.CDSECT:
+          case XmlPullParser.PROCESSING_INSTRUCTION:
+          case XmlPullParser.DOCDECL: {
+            tagOpen = closeStartTag(out, tagOpen);
+            dropWhitespace(text);
+            flushText(out, text);
+            newLine(out, parser.getDepth());
+            appendMarkup(out, event, parser.getText());
+            hasChildren = true;
+          }
+          break;
+          default:
+            break;
+        }
+      }
+    } catch (XmlPullParserException e) {
+      return e.getMessage();
+    } catch (IOException e) {
+      return e.getMessage();
+    }
+    return null;
+  }
+
+  @NonNull private XmlPullParser obtainParser() throws XmlPullParserException {
+    XmlPullParser parser = parsers.get();
+    if (parser == null) {
+      parser = factory().newPullParser();
+      parsers.set(parser);
+    }
+    return parser;
+  }
+
+  /**
+   * 解除解析器对输入的引用，复用的解析器不会让上一次的内容一直留在内存中
+   */
+  private static void release(@NonNull XmlPullParser parser) {
+    try {
+      parser.setInput(null);
+    } catch (XmlPullParserException ignored) {
+      // 没有输入时不会失败
+    }
+  }
+
+  @NonNull private static synchronized XmlPullParserFactory factory() throws XmlPullParserException {
+    if (factory == null) {
+      factory = XmlPullParserFactory.newInstance();
+      factory.setNamespaceAware(false); // 保留原始的带前缀名称，xmlns 作为普通属性输出
+    }
+    return factory;
+  }
+
+  private static boolean closeStartTag(@NonNull StringBuilder out, boolean tagOpen) {
+    if (tagOpen) {
+      out.append('>');
+    }
+    return false;
+  }
+
+  /**
+   * 元素之间只有空白时不输出
+   */
+  private static void dropWhitespace(@NonNull StringBuilder text) {
+    for (int i = 0; i < text.length(); i++) {
+      if (!Character.isWhitespace(text.charAt(i))) {
+        return;
+      }
+    }
+    text.setLength(0);
+  }
+
+  private static void flushText(@NonNull StringBuilder out, @NonNull StringBuilder text) {
+    if (text.length() == 0) {
+      return;
+    }
+    out.append(text.toString().trim());
+    text.setLength(0);
+  }
+
+  private static void appendMarkup(@NonNull StringBuilder out, int event, @Nullable String content) {
+    switch (event) {
+      case XmlPullParser.COMMENT:
+        out.append("<!--").append(content).append("-->");
+        break;
+      case XmlPullParser.CDSECT:
+        out.append("<![CDATA[").append(content).append("]]>");
+        break;
+      case XmlPullParser.PROCESSING_INSTRUCTION:
+        out.append("<?").append(content).append("?>");
+        break;
+      default:
+        out.append("<!DOCTYPE").append(content).append('>');
+        break;
+    }
+  }
+
+  private static void escape(@NonNull StringBuilder out, @Nullable String value, boolean attribute) {
+    if (value == null) {
+      return;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '&':
+          out.append("&amp;");
+          break;
+        case '<':
+          out.append("&lt;");
+          break;
+        case '>':
+          out.append("&gt;");
+          break;
+        case '"':
+          out.append(attribute ? "&quot;" : "\"");
+          break;
+        default:
+          out.append(c);
+          break;
+      }
+    }
+  }
+
+  private void newLine(@NonNull StringBuilder out, int level) {
+    out.append('\n');
+    for (int i = Math.max(0, level) * indent; i > 0; i--) {
+      out.append(' ');
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package com.kit.log.ui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.orhanobut.logger.CsvLogRecord;
+
+import org.junit.Test;
+
+public class LogStoreTest {
+
+  private static final char FS = CsvLogRecord.FIELD_SEPARATOR;
+
+  @Test public void snapshotListsNewestFirstAndFiltersByTag() {
+    LogStore store = new LogStore(100);
+    store.add("1,d,DEBUG,net,first");
+    store.add("2,d,INFO,db,second");
+    store.add("3,d,WARN,net,third");
+
+    LogSnapshot all = store.snapshot(null);
+    assertEquals(3, all.getSize());
+    assertEquals("third", all.message(0));
+    assertEquals("first", all.message(2));
+    assertEquals("db", all.get(1).getTag());
+
+    LogSnapshot net = store.snapshot("net");
+    assertEquals(2, net.getSize());
+    assertEquals("third", net.message(0));
+    assertEquals("first", net.message(1));
+    assertEquals(net.id(1), all.id(2));
+    assertEquals(1, net.positionOf(all.id(2)));
+  }
+
+  @Test public void snapshotKeepsFieldsAfterEvictionAndClear() {
+    LogStore store = new LogStore(100);
+    store.add("1,d,INFO,net,done" + FS + "latencyMs=12");
+    LogSnapshot before = store.snapshot(null);
+
+    store.trimTo(0);
+    store.clear();
+    store.add("2,d,INFO,net,next" + FS + "latencyMs=30");
+
+    assertEquals("12", before.get(0).getFields().get("latencyMs"));
+    assertEquals("30", store.snapshot(null).get(0).getFields().get("latencyMs"));
+  }
+
+  @Test public void evictsOldestRowsBeyondMaxRows() {
+    LogStore store = new LogStore(8);
+    for (int i = 0; i < 100; i++) {
+      store.add(i + ",d,INFO,net,m" + i);
+    }
+
+    LogSnapshot snapshot = store.snapshot(null);
+    assertTrue(snapshot.getSize() >= 8 && snapshot.getSize() < 10);
+    assertEquals("m99", snapshot.message(0));
+    assertEquals(99, snapshot.id(0));
+  }
+}
@@ -0,0 +1,125 @@
+package com.orhanobut.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncLogAdapterTest {
+
+  @Test public void deliversInOrderBeforeFlushReturns() {
+    RecordingAdapter target = new RecordingAdapter();
+    AsyncLogAdapter adapter = AsyncLogAdapter.newBuilder().adapter(target).build();
+    for (int i = 0; i < 100; i++) {
+      adapter.log(Utils.INFO, "async", "m" + i);
+    }
+    adapter.flushBlocking(5_000);
+
+    assertEquals(100, target.messages.size());
+    for (int i = 0; i < 100; i++) {
+      assertEquals("m" + i, target.messages.get(i));
+    }
+  }
+
+  @Test public void urgentLogsOvertakeBacklog() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingAdapter target = new RecordingAdapter() {
+      @Override void beforeLog(@NonNull String message) {
+        if (message.equals("block")) {
+          await(release);
+        }
+      }
+    };
+    AsyncLogAdapter adapter = AsyncLogAdapter.newBuilder().adapter(target).build();
+    adapter.log(Utils.INFO, "async", "block");
+    while (target.entered == 0) {
+      Thread.sleep(1);
+    }
+    adapter.log(Utils.INFO, "async", "normal");
+    adapter.log(Utils.ERROR, "async", "urgent");
+    release.countDown();
+    adapter.flushBlocking(5_000);
+
+    assertEquals(3, target.messages.size());
+    assertEquals("urgent", target.messages.get(1));
+    assertEquals("normal", target.messages.get(2));
+  }
+
+  @Test public void dropsWhenQueueIsFull() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingAdapter target = new RecordingAdapter() {
+      @Override void beforeLog(@NonNull String message) {
+        await(release);
+      }
+    };
+    AsyncLogAdapter adapter = AsyncLogAdapter.newBuilder().adapter(target).queueCapacity(4).build();
+    adapter.log(Utils.INFO, "async", "first");
+    while (target.entered == 0) {
+      Thread.sleep(1);
+    }
+    long dropsBefore = LogMetrics.get().snapshot().drops;
+    for (int i = 0; i < 10; i++) {
+      adapter.log(Utils.INFO, "async", "m" + i);
+    }
+    release.countDown();
+    adapter.flushBlocking(5_000);
+
+    assertEquals(5, target.messages.size());
+    assertTrue(LogMetrics.get().snapshot().drops - dropsBefore >= 6);
+  }
+
+  @Test public void logsEnqueuedWhileWorkerRetiresAreDelivered() throws Exception {
+    RecordingAdapter target = new RecordingAdapter();
+    AsyncLogAdapter adapter = AsyncLogAdapter.newBuilder().adapter(target).idleTimeout(1).build();
+    int total = 0;
+    for (int round = 0; round < 2_000; round++) {
+      // 空闲超时只有 1 毫秒，入队与工作线程退出反复交错
+      adapter.log(round % 10 == 0 ? Utils.ERROR : Utils.INFO, "async", "m" + round);
+      total++;
+      if (round % 50 == 0) {
+        Thread.sleep(2);
+      }
+    }
+    long deadline = System.currentTimeMillis() + 5_000;
+    while (target.messages.size() < total && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+
+    assertEquals(total, target.messages.size());
+  }
+
+  private static void await(@NonNull CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class RecordingAdapter implements LogAdapter {
+    final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+    volatile int entered;
+
+    @Override public boolean isLoggable(int priority, @Nullable String tag) {
+      return true;
+    }
+
+    @Override public void log(int priority, @Nullable String tag, @NonNull String message) {
+      entered++;
+      beforeLog(message);
+      messages.add(message);
+    }
+
+    void beforeLog(@NonNull String message) {
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package com.orhanobut.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CsvLogRecordTest {
+
+  private static final char FS = CsvLogRecord.FIELD_SEPARATOR;
+
+  @Test public void parsesPlainLine() {
+    CsvLogRecord record = CsvLogRecord.parse("1700000000000,2023.11.14 22:13:20.000,DEBUG,net,hello, world");
+    assertNotNull(record);
+    assertEquals(1700000000000L, record.timestamp);
+    assertEquals("2023.11.14 22:13:20.000", record.date);
+    assertEquals("DEBUG", record.level);
+    assertEquals("net", record.tag);
+    assertEquals("hello, world", record.message);
+    assertTrue(record.fields.isEmpty());
+    assertEquals(-1, record.sequence);
+  }
+
+  @Test public void parsesFieldsAndSequence() {
+    String line = "1,d,INFO,net,done" + FS + "_seq=42" + FS + "latencyMs=12" + FS + "ok=true";
+    CsvLogRecord record = CsvLogRecord.parse(line);
+    assertNotNull(record);
+    assertEquals("done", record.message);
+    assertEquals(42, record.sequence);
+    assertEquals(2, record.fields.size());
+    assertEquals("12", record.fields.get("latencyMs"));
+    assertEquals("true", record.fields.get("ok"));
+    assertEquals(42, CsvLogRecord.sequenceOf(line));
+  }
+
+  @Test public void rejectsMalformedLines() {
+    assertNull(CsvLogRecord.parse(null));
+    assertNull(CsvLogRecord.parse(""));
+    assertNull(CsvLogRecord.parse("1,2,3"));
+    assertNull(CsvLogRecord.parse("x,d,INFO,tag,message"));
+    assertEquals(-1, CsvLogRecord.sequenceOf("1,d,INFO,tag,message"));
+    assertEquals(-1, CsvLogRecord.sequenceOf("1,d,INFO,tag,m" + FS + "_seq=1a"));
+  }
+
+  @Test public void readsWhatCsvFormatStrategyWrites() {
+    List<String> lines = new ArrayList<>();
+    CsvFormatStrategy strategy = CsvFormatStrategy.newBuilder()
+        .logStrategy((priority, tag, message) -> lines.add(message))
+        .build();
+    LogFields fields = new LogFields();
+    fields.add("status", 200L);
+    fields.add("_seq", "user value"); // 与日志序号同名的键被改写，不会被当作序号
+    fields.add("note", "a\nb" + FS + "c");
+    strategy.log(Utils.WARN, "net", "line1\nline2", fields);
+
+    assertEquals(1, lines.size());
+    String line = lines.get(0);
+    assertTrue(line.endsWith("\n"));
+    CsvLogRecord record = CsvLogRecord.parse(line.substring(0, line.length() - 1));
+    assertNotNull(record);
+    assertEquals("WARN", record.level);
+    assertEquals("net", record.tag);
+    assertEquals("line1 <br> line2", record.message);
+    assertEquals("200", record.fields.get("status"));
+    assertEquals("user value", record.fields.get("__seq"));
+    assertEquals("a <br> b c", record.fields.get("note"));
+  }
+}
@@ -0,0 +1,86 @@
+package com.orhanobut.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class JsonPrettyPrinterTest {
+
+  private final JsonPrettyPrinter printer = new JsonPrettyPrinter(2, 0);
+
+  @Test public void indentsNestedObjectsAndArrays() {
+    StringBuilder out = new StringBuilder();
+    assertNull(printer.print("{\"a\":1,\"b\":[true,null,\"x\\\"y\"],\"c\":{},\"d\":[]}", out));
+    assertEquals("{\n"
+        + "  \"a\": 1,\n"
+        + "  \"b\": [\n"
+        + "    true,\n"
+        + "    null,\n"
+        + "    \"x\\\"y\"\n"
+        + "  ],\n"
+        + "  \"c\": {},\n"
+        + "  \"d\": []\n"
+        + "}", out.toString());
+  }
+
+  @Test public void ignoresInsignificantWhitespace() {
+    StringBuilder out = new StringBuilder();
+    assertNull(printer.print(" [ {\"k\" : \"v\"} ,\n[1, 2.5, -3e2] ] ", out));
+    assertEquals("[\n"
+        + "  {\n"
+        + "    \"k\": \"v\"\n"
+        + "  },\n"
+        + "  [\n"
+        + "    1,\n"
+        + "    2.5,\n"
+        + "    -3e2\n"
+        + "  ]\n"
+        + "]", out.toString());
+  }
+
+  @Test public void appendsToExistingContent() {
+    StringBuilder out = new StringBuilder("json: ");
+    assertNull(printer.print("{}", out));
+    assertEquals("json: {}", out.toString());
+  }
+
+  @Test public void reportsErrorAndKeepsPrintedPart() {
+    StringBuilder out = new StringBuilder();
+    String error = printer.print("{\"a\":1,", out);
+    assertNotNull(error);
+    assertTrue(out.toString().startsWith("{\n  \"a\": 1,"));
+
+    assertNotNull(printer.print("not json", new StringBuilder()));
+    assertNotNull(printer.print("{\"a\" 1}", new StringBuilder()));
+    assertNotNull(printer.print("[1,]", new StringBuilder()));
+  }
+
+  @Test public void truncatesLongOutput() {
+    StringBuilder out = new StringBuilder();
+    assertNull(new JsonPrettyPrinter(2, 10).print("[1,2,3,4,5,6,7,8,9]", out));
+    assertTrue(out.toString().endsWith("...(truncated)"));
+    assertEquals(10 + "...(truncated)".length(), out.length());
+  }
+
+  @Test public void rejectsMalformedNumbers() {
+    for (String json : new String[] {"[1-2-3]", "[01]", "[1e]", "[-]", "[1.]", "[.5]", "[+1]", "[1e+]"}) {
+      assertNotNull(json, printer.print(json, new StringBuilder()));
+    }
+    assertNull(printer.print("[0, -0.5, 1E+10, 2e-3, 10]", new StringBuilder()));
+  }
+
+  @Test public void truncatesInsideLongString() {
+    StringBuilder json = new StringBuilder("{\"k\":\"");
+    for (int i = 0; i < 100_000; i++) {
+      json.append('x');
+    }
+    json.append("\"}");
+    StringBuilder out = new StringBuilder();
+    assertNull(new JsonPrettyPrinter(2, 50).print(json, out));
+    assertEquals(50 + "...(truncated)".length(), out.length());
+    assertTrue(out.toString().endsWith("xxx...(truncated)"));
+  }
+}
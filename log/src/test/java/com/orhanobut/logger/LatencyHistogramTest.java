@@ -0,0 +1,40 @@
+package com.orhanobut.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test public void sumsBucketsRecordedFromManyThreads() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 10_000; i++) {
+          histogram.record(i % 100 == 0 ? 1_000_000 : 1_000);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    LogMetrics.Latency latency = histogram.snapshot();
+    assertEquals(80_000, latency.count);
+    assertEquals(1_000_000, latency.maxNanos);
+    assertEquals(1023, latency.p50Nanos); // 1000 落在 [512, 1024) 的桶
+    assertTrue(latency.p99Nanos < 1_000_000);
+  }
+
+  @Test public void resetClearsEveryStripe() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(5_000);
+    histogram.reset();
+    LogMetrics.Latency latency = histogram.snapshot();
+    assertEquals(0, latency.count);
+    assertEquals(0, latency.p50Nanos);
+  }
+}
@@ -0,0 +1,99 @@
+package com.orhanobut.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class LazyHandlerTest {
+
+  private static final int WHAT_BLOCK = 1;
+  private static final int WHAT_RECORD = 2;
+  private static final int WHAT_DONE = 3;
+
+  private final List<String> handled = Collections.synchronizedList(new ArrayList<>());
+  private final CountDownLatch blocked = new CountDownLatch(1);
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final CountDownLatch done = new CountDownLatch(1);
+  private volatile Thread handlerThread;
+
+  private final LazyHandler handler = new LazyHandler("lazy-handler-test", looper -> new Handler(looper) {
+    @Override public void handleMessage(@NonNull Message msg) {
+      handlerThread = Thread.currentThread();
+      switch (msg.what) {
+        case WHAT_BLOCK:
+          blocked.countDown();
+          await(release);
+          break;
+        case WHAT_RECORD:
+          handled.add((String) msg.obj);
+          break;
+        case WHAT_DONE:
+          done.countDown();
+          break;
+      }
+    }
+  });
+
+  @Test public void startsOnFirstSendAndKeepsOrder() throws Exception {
+    assertFalse(handler.isStarted());
+    assertTrue(handler.send(WHAT_RECORD, "a"));
+    assertTrue(handler.send(WHAT_RECORD, "b"));
+    assertTrue(handler.isStarted());
+    handler.send(WHAT_RECORD, "c");
+    handler.send(WHAT_DONE, null);
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("a", "b", "c"), handled);
+    assertFalse(handlerThread == Thread.currentThread());
+  }
+
+  @Test public void urgentMessagesOvertakeQueuedOnesInOrder() throws Exception {
+    handler.send(WHAT_BLOCK, null);
+    assertTrue(blocked.await(5, TimeUnit.SECONDS));
+    handler.send(WHAT_RECORD, "n1");
+    handler.send(WHAT_RECORD, "n2");
+    handler.sendUrgent(WHAT_RECORD, 0, "u1");
+    handler.sendUrgent(WHAT_RECORD, 0, "u2");
+    handler.send(WHAT_DONE, null);
+    release.countDown();
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("u1", "u2", "n1", "n2"), handled);
+  }
+
+  @Test public void urgentMessagesSentBeforeStartRunFirst() throws Exception {
+    handler.send(WHAT_RECORD, "n1");
+    handler.sendUrgent(WHAT_RECORD, 0, "u1");
+    handler.send(WHAT_DONE, null);
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("u1", "n1"), handled);
+    assertTrue(handler.peek() != null && handler.peek().getLooper() != Looper.myLooper());
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
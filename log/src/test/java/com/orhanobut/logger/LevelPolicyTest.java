@@ -0,0 +1,90 @@
+package com.orhanobut.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LevelPolicyTest {
+
+  @Test public void exactTagWinsOverLongestPrefix() {
+    LevelPolicy policy = LevelPolicy.newBuilder()
+        .level("*", Utils.WARN)
+        .level("net*", Utils.INFO)
+        .level("net.http*", Utils.DEBUG)
+        .level("net.http.cache", Utils.ERROR)
+        .build();
+
+    assertEquals(Utils.ERROR, policy.minLevel(LevelPolicy.DISK, "net.http.cache"));
+    assertEquals(Utils.DEBUG, policy.minLevel(LevelPolicy.DISK, "net.http.client"));
+    assertEquals(Utils.DEBUG, policy.minLevel(LevelPolicy.DISK, "net.http"));
+    assertEquals(Utils.INFO, policy.minLevel(LevelPolicy.DISK, "net.h"));
+    assertEquals(Utils.INFO, policy.minLevel(LevelPolicy.DISK, "net"));
+    assertEquals(Utils.WARN, policy.minLevel(LevelPolicy.DISK, "ne"));
+    assertEquals(Utils.WARN, policy.minLevel(LevelPolicy.DISK, null));
+  }
+
+  @Test public void emptyPolicyLogsEverything() {
+    LevelPolicy policy = LevelPolicy.newBuilder().build();
+    assertEquals(Utils.VERBOSE, policy.minLevel(LevelPolicy.LOGCAT, "any"));
+    assertTrue(policy.isLoggable(LevelPolicy.LOGCAT, Utils.VERBOSE, null));
+  }
+
+  @Test public void scopeFallsBackToCommonRules() {
+    LevelPolicy policy = LevelPolicy.newBuilder()
+        .level("*", Utils.INFO)
+        .level("db*", Utils.DEBUG)
+        .level(LevelPolicy.DISK, "net*", Utils.VERBOSE)
+        .build();
+
+    assertEquals(Utils.VERBOSE, policy.minLevel(LevelPolicy.DISK, "net.http"));
+    assertEquals(Utils.DEBUG, policy.minLevel(LevelPolicy.DISK, "db.query"));
+    assertEquals(Utils.INFO, policy.minLevel(LevelPolicy.DISK, "ui"));
+    // 没有专属规则的输出目标只看公共规则
+    assertEquals(Utils.INFO, policy.minLevel(LevelPolicy.LOGCAT, "net.http"));
+    assertEquals(Utils.INFO, policy.minLevel("unknown", "net.http"));
+  }
+
+  @Test public void scopeDefaultHidesCommonRules() {
+    LevelPolicy policy = LevelPolicy.newBuilder()
+        .level("db*", Utils.DEBUG)
+        .level(LevelPolicy.LOGCAT, "*", Utils.WARN)
+        .build();
+
+    assertEquals(Utils.WARN, policy.minLevel(LevelPolicy.LOGCAT, "db.query"));
+    assertEquals(Utils.DEBUG, policy.minLevel(LevelPolicy.DISK, "db.query"));
+  }
+
+  @Test public void parsesSectionsLevelsAndComments() {
+    LevelPolicy policy = LevelPolicy.parse(""
+        + "# 注释\n"
+        + "* = info\n"
+        + "net* = D\n"
+        + "bad line\n"
+        + "ui = LOUD\n"
+        + "\n"
+        + "[disk]\n"
+        + "net.http = 2\n"
+        + "[logcat]\n"
+        + "* = OFF\n");
+
+    assertEquals(Utils.INFO, policy.minLevel(LevelPolicy.DISK, "ui"));
+    assertEquals(Utils.DEBUG, policy.minLevel(LevelPolicy.DISK, "net.db"));
+    assertEquals(Utils.VERBOSE, policy.minLevel(LevelPolicy.DISK, "net.http"));
+    assertEquals(LevelPolicy.OFF, policy.minLevel(LevelPolicy.LOGCAT, "net.db"));
+    assertFalse(policy.isLoggable(LevelPolicy.LOGCAT, Utils.ASSERT, "net.db"));
+  }
+
+  @Test public void effectiveTagIsTheTagTheStrategyWrites() {
+    CsvFormatStrategy csv = CsvFormatStrategy.newBuilder()
+        .tag("APP")
+        .logStrategy((priority, tag, message) -> { })
+        .build();
+
+    assertEquals("APP", LevelPolicy.effectiveTag(csv, null));
+    assertEquals("APP", LevelPolicy.effectiveTag(csv, ""));
+    assertEquals("net", LevelPolicy.effectiveTag(csv, "net"));
+    assertEquals("net", LevelPolicy.effectiveTag((priority, tag, message) -> { }, "net"));
+  }
+}
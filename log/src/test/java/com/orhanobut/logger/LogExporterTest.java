@@ -0,0 +1,161 @@
+package com.orhanobut.logger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 按 ustar 格式解析导出的归档，检查条目顺序、头部、对齐和内容
+ */
+public class LogExporterTest {
+
+  private static final int BLOCK = 512;
+
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test public void unfilteredSegmentsAreCopiedAsIs() throws IOException {
+    File folder = temp.newFolder("logger");
+    byte[] main0 = write(new File(folder, "logs_0.csv"), line(1000, "DEBUG", "a") + line(1001, "ERROR", "b"));
+    byte[] main1 = write(new File(folder, "logs_1.csv"), line(2000, "INFO", "c"));
+    byte[] push0 = write(new File(folder, "logs-push_0.csv"), line(1500, "WARN", "d"));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertEquals(3, LogExporter.export(folder, out, LogExportFilter.all()));
+
+    // 主进程在前，每个进程内最旧的分段在前
+    List<Entry> entries = parse(out.toByteArray());
+    assertEquals(Arrays.asList("logs_0.csv", "logs_1.csv", "logs-push_0.csv"), names(entries));
+    assertArrayEquals(main0, entries.get(0).content);
+    assertArrayEquals(main1, entries.get(1).content);
+    assertArrayEquals(push0, entries.get(2).content);
+  }
+
+  @Test public void exportToFileUsesSameLayout() throws IOException {
+    File folder = temp.newFolder("logger");
+    byte[] main0 = write(new File(folder, "logs_0.csv"), line(1000, "DEBUG", "a"));
+    File tar = temp.newFile("export.tar");
+
+    try (OutputStream out = new FileOutputStream(tar)) {
+      assertEquals(1, LogExporter.export(folder, out, LogExportFilter.all()));
+    }
+
+    List<Entry> entries = parse(Files.readAllBytes(tar.toPath()));
+    assertEquals(1, entries.size());
+    assertArrayEquals(main0, entries.get(0).content);
+  }
+
+  @Test public void filteredSegmentsAreGzippedAndEmptyOnesSkipped() throws IOException {
+    File folder = temp.newFolder("logger");
+    write(new File(folder, "logs_0.csv"), line(1000, "DEBUG", "a") + line(1001, "ERROR", "b") + line(1002, "INFO", "c"));
+    write(new File(folder, "logs_1.csv"), line(2000, "INFO", "d"));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    LogExportFilter filter = LogExportFilter.newBuilder().minLevel(Utils.ERROR).build();
+    assertEquals(1, LogExporter.export(folder, out, filter));
+
+    List<Entry> entries = parse(out.toByteArray());
+    assertEquals(Arrays.asList("logs_0.csv.gz"), names(entries));
+    assertEquals(line(1001, "ERROR", "b"), gunzip(entries.get(0).content));
+  }
+
+  @Test public void emptyFolderProducesEndMarkerOnly() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertEquals(0, LogExporter.export(temp.newFolder("logger"), out, LogExportFilter.all()));
+    assertArrayEquals(new byte[BLOCK * 2], out.toByteArray());
+  }
+
+  /**
+   * 解析 ustar 归档，校验每个头部的校验和、内容的块对齐和结尾的两个空块
+   */
+  private static List<Entry> parse(byte[] tar) {
+    assertEquals(0, tar.length % BLOCK);
+    List<Entry> entries = new ArrayList<>();
+    int position = 0;
+    while (true) {
+      byte[] header = Arrays.copyOfRange(tar, position, position + BLOCK);
+      if (header[0] == 0) {
+        // 结束标记：两个全零的块，之后没有其他内容
+        assertArrayEquals(new byte[BLOCK * 2], Arrays.copyOfRange(tar, position, tar.length));
+        return entries;
+      }
+      assertEquals("ustar", text(header, 257, 6));
+      assertEquals('0', header[156]);
+      long checksum = 0;
+      for (int i = 0; i < BLOCK; i++) {
+        checksum += i >= 148 && i < 156 ? ' ' : header[i] & 0xff;
+      }
+      assertEquals(checksum, Long.parseLong(text(header, 148, 8).trim(), 8));
+      String name = text(header, 0, 100);
+      int size = Integer.parseInt(text(header, 124, 12), 8);
+      position += BLOCK;
+      entries.add(new Entry(name, Arrays.copyOfRange(tar, position, position + size)));
+      position += (size + BLOCK - 1) / BLOCK * BLOCK;
+    }
+  }
+
+  private static String text(byte[] header, int offset, int length) {
+    int end = offset;
+    while (end < offset + length && header[end] != 0) {
+      end++;
+    }
+    return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+  }
+
+  private static List<String> names(List<Entry> entries) {
+    List<String> names = new ArrayList<>();
+    for (Entry entry : entries) {
+      names.add(entry.name);
+    }
+    return names;
+  }
+
+  private static String gunzip(byte[] data) throws IOException {
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = in.read(buffer)) > 0) {
+        out.write(buffer, 0, read);
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  private static String line(long timestamp, String level, String message) {
+    return timestamp + ",date," + level + ",tag," + message + "\n";
+  }
+
+  private static byte[] write(File file, String content) throws IOException {
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    Files.write(file.toPath(), bytes);
+    return bytes;
+  }
+
+  private static final class Entry {
+    final String name;
+    final byte[] content;
+
+    Entry(String name, byte[] content) {
+      this.name = name;
+      this.content = content;
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package com.orhanobut.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class LogSequenceCheckTest {
+
+  @Test public void consecutiveSequenceIsClean() {
+    LogSequenceCheck.Report report = LogSequenceCheck.check(lines(5, 6, 7, 8));
+    assertTrue(report.isClean());
+    assertEquals(4, report.records);
+    assertEquals(0, report.restarts);
+  }
+
+  @Test public void reportsGaps() {
+    LogSequenceCheck.Report report = LogSequenceCheck.check(lines(1, 2, 5, 6, 9));
+    assertFalse(report.isClean());
+    assertEquals(4, report.missing);
+    assertEquals(2, report.gaps().size());
+    assertEquals(3, report.gaps().get(0).first);
+    assertEquals(4, report.gaps().get(0).last);
+    assertEquals("7-8", report.gaps().get(1).toString());
+  }
+
+  @Test public void reportsDuplicatesAndFarReordering() {
+    LogSequenceCheck.Report report = LogSequenceCheck.check(lines(1, 3, 2, 4, 4, 2000, 5));
+    assertEquals(1, report.reordered); // 2 紧跟在 3 之后，属于并发入队的先后差异
+    assertEquals(1, report.outOfOrder); // 5 比之前的 2000 小得多
+    assertEquals(1, report.duplicates);
+    assertFalse(report.isClean());
+  }
+
+  @Test public void urgentLaneOvertakingIsNotOutOfOrder() {
+    List<String> lines = lines(1, 2);
+    lines.add(line(5, "ERROR"));
+    lines.addAll(lines(3, 4, 6));
+    lines.add(line(7, "ASSERT"));
+
+    LogSequenceCheck.Report report = LogSequenceCheck.check(lines);
+    assertTrue(report.isClean());
+    assertEquals(2, report.reordered);
+    assertEquals(0, report.outOfOrder);
+    assertEquals(0, report.missing);
+  }
+
+  @Test public void sequenceStartingOverIsRestart() {
+    LogSequenceCheck.Report report = LogSequenceCheck.check(lines(10, 11, 12, 1, 2, 3));
+    assertTrue(report.isClean());
+    assertEquals(1, report.restarts);
+  }
+
+  @Test public void ignoresLinesWithoutSequence() {
+    List<String> lines = lines(1, 2);
+    lines.add(1, "1,d,DEBUG,tag,no sequence");
+    LogSequenceCheck.Report report = LogSequenceCheck.check(lines);
+    assertTrue(report.isClean());
+    assertEquals(2, report.records);
+  }
+
+  @Test public void printerNumbersOnlyLogsSomeAdapterOutputs() {
+    List<String> written = new ArrayList<>();
+    LoggerPrinter printer = new LoggerPrinter();
+    printer.addAdapter(new FilteringAdapter(Utils.INFO, csv(written::add)));
+
+    printer.log(Utils.DEBUG, "tag", "filtered", null);
+    printer.log(Utils.INFO, "tag", "first", null);
+    printer.log(Utils.WARN, "tag", "second", null);
+
+    assertEquals(2, written.size());
+    assertEquals(1, CsvLogRecord.sequenceOf(written.get(0)));
+    assertEquals(2, CsvLogRecord.sequenceOf(written.get(1)));
+  }
+
+  @Test public void asyncQueueDropsShowUpAsGaps() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> written = Collections.synchronizedList(new ArrayList<>());
+    LogAdapter slow = new FilteringAdapter(Utils.VERBOSE, csv(message -> {
+      try {
+        release.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      written.add(message);
+    }));
+    AsyncLogAdapter async = AsyncLogAdapter.newBuilder().adapter(slow).queueCapacity(2).build();
+    LoggerPrinter printer = new LoggerPrinter();
+    printer.addAdapter(async);
+
+    for (int i = 0; i < 10; i++) {
+      printer.log(Utils.INFO, "tag", "message " + i, null);
+    }
+    release.countDown();
+    async.flushBlocking(5_000);
+    // 队列已经清空，最后一条一定能写入，之前丢弃的日志都在它之前留下空洞
+    printer.log(Utils.INFO, "tag", "last", null);
+    async.flushBlocking(5_000);
+
+    LogSequenceCheck.Report report = LogSequenceCheck.check(new ArrayList<>(written));
+    assertTrue(report.missing > 0);
+    assertEquals(11, report.records + report.missing);
+  }
+
+  @NonNull private static CsvFormatStrategy csv(@NonNull Consumer<String> sink) {
+    return CsvFormatStrategy.newBuilder()
+        .logStrategy((priority, tag, message) -> sink.accept(message.trim()))
+        .build();
+  }
+
+  private static final class FilteringAdapter implements LogAdapter {
+    private final int minLevel;
+    @NonNull private final FormatStrategy format;
+
+    FilteringAdapter(int minLevel, @NonNull FormatStrategy format) {
+      this.minLevel = minLevel;
+      this.format = format;
+    }
+
+    @Override public boolean isLoggable(int priority, @Nullable String tag) {
+      return priority >= minLevel;
+    }
+
+    @Override public void log(int priority, @Nullable String tag, @NonNull String message) {
+      format.log(priority, tag, message);
+    }
+
+    @Override public void log(int priority, @Nullable String tag, @NonNull String message, @NonNull LogFields fields) {
+      format.log(priority, tag, message, fields);
+    }
+  }
+
+  static List<String> lines(long... sequences) {
+    List<String> lines = new ArrayList<>();
+    for (long seq : sequences) {
+      lines.add(line(seq, "DEBUG"));
+    }
+    return lines;
+  }
+
+  static String line(long seq, @NonNull String level) {
+    return "1700000000000,d," + level + ",tag,message " + seq + CsvLogRecord.FIELD_SEPARATOR
+        + CsvLogRecord.SEQUENCE_KEY + CsvLogRecord.KEY_VALUE_SEPARATOR + seq;
+  }
+}
@@ -0,0 +1,197 @@
+package com.orhanobut.logger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 用本地 HTTP 服务器验证 {@link LogShipper.Uploader} 与 {@link HttpLogTransport}：分批、断点续传和失败重试。
+ */
+public class LogShipperTest {
+
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  private HttpServer server;
+  private HttpLogTransport transport;
+  private final List<Batch> batches = new ArrayList<>();
+  private final AtomicInteger requests = new AtomicInteger();
+  private volatile int failAt = -1; // 第几个请求（从 0 开始）返回 503
+
+  @Before public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/ingest", exchange -> {
+      int index = requests.getAndIncrement();
+      byte[] body;
+      try (InputStream in = new GZIPInputStream(exchange.getRequestBody())) {
+        body = readAll(in);
+      }
+      int code = index == failAt ? 503 : 204;
+      if (code == 204) {
+        synchronized (batches) {
+          batches.add(new Batch(exchange.getRequestHeaders().getFirst("X-Log-Segment"),
+              Long.parseLong(exchange.getRequestHeaders().getFirst("X-Log-Offset")), body));
+        }
+      }
+      exchange.sendResponseHeaders(code, -1);
+      exchange.close();
+    });
+    server.start();
+    transport = new HttpLogTransport("http://127.0.0.1:" + server.getAddress().getPort() + "/ingest");
+  }
+
+  @After public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test public void shipsSealedSegmentsInLineAlignedBatches() throws IOException {
+    File folder = temp.getRoot();
+    byte[] sealed = write(new File(folder, "logs_0.csv"), lines(200));
+    write(new File(folder, "logs_1.csv"), lines(3)); // 正在写入的分段
+
+    LogShipper.Uploader uploader = new LogShipper.Uploader(folder, transport, 1024);
+    uploader.shipSealedSegments();
+
+    assertTrue(batches.size() > 1);
+    long offset = 0;
+    ByteArrayOutputStream received = new ByteArrayOutputStream();
+    for (Batch batch : batches) {
+      assertEquals("logs_0.csv", batch.segment);
+      assertEquals(offset, batch.offset);
+      assertTrue(batch.body.length <= 1024);
+      assertEquals('\n', batch.body[batch.body.length - 1]);
+      received.write(batch.body);
+      offset += batch.body.length;
+    }
+    assertArrayEquals(sealed, received.toByteArray());
+    assertEquals(sealed.length, uploader.offsetOf("logs_0.csv"));
+    assertEquals(0, uploader.offsetOf("logs_1.csv"));
+
+    // 没有新内容时不再发送
+    int sent = requests.get();
+    uploader.shipSealedSegments();
+    assertEquals(sent, requests.get());
+  }
+
+  @Test public void sendsFinalLineWithoutNewline() throws IOException {
+    File folder = temp.getRoot();
+    byte[] sealed = write(new File(folder, "logs_0.csv"), "1,a\n2,b\n3,partial");
+    write(new File(folder, "logs_1.csv"), "4,c\n");
+
+    LogShipper.Uploader uploader = new LogShipper.Uploader(folder, transport, 1024);
+    uploader.shipSealedSegments();
+
+    ByteArrayOutputStream received = new ByteArrayOutputStream();
+    for (Batch batch : batches) {
+      received.write(batch.body);
+    }
+    assertArrayEquals(sealed, received.toByteArray());
+    assertEquals(2, batches.size());
+    assertEquals("3,partial", new String(batches.get(1).body, StandardCharsets.UTF_8));
+    assertEquals(sealed.length, uploader.offsetOf("logs_0.csv"));
+  }
+
+  @Test public void resumesFromSavedOffsetAfterFailure() throws IOException {
+    File folder = temp.getRoot();
+    byte[] sealed = write(new File(folder, "logs_0.csv"), lines(200));
+    write(new File(folder, "logs_1.csv"), lines(1));
+    failAt = 2;
+
+    LogShipper.Uploader uploader = new LogShipper.Uploader(folder, transport, 1024);
+    try {
+      uploader.shipSealedSegments();
+      fail("expected the rejected batch to fail the pass");
+    } catch (IOException expected) {
+      // 退避后重试
+    }
+    assertEquals(2, batches.size());
+    long saved = batches.get(0).body.length + batches.get(1).body.length;
+    assertEquals(saved, uploader.offsetOf("logs_0.csv"));
+
+    // 新的实例相当于进程重启，从保存的偏移继续
+    LogShipper.Uploader restarted = new LogShipper.Uploader(folder, transport, 1024);
+    assertEquals(saved, restarted.offsetOf("logs_0.csv"));
+    restarted.shipSealedSegments();
+
+    assertEquals(saved, batches.get(2).offset);
+    ByteArrayOutputStream received = new ByteArrayOutputStream();
+    for (Batch batch : batches) {
+      received.write(batch.body);
+    }
+    assertArrayEquals(sealed, received.toByteArray());
+  }
+
+  @Test public void backoffDoublesUpToLimitAndResetsAfterSuccess() {
+    long initial = 1000;
+    long backoff = 0;
+    long[] expected = {1000, 2000, 4000, 8000, 16000};
+    for (long value : expected) {
+      backoff = LogShipper.nextBackoff(backoff, initial);
+      assertEquals(value, backoff);
+    }
+    long limit = 5 * 60 * 1000;
+    assertEquals(limit, LogShipper.nextBackoff(limit - 1, initial));
+    assertEquals(limit, LogShipper.nextBackoff(limit, initial));
+    // 成功后 backoff 清零，下次失败重新从初始值开始
+    assertEquals(initial, LogShipper.nextBackoff(0, initial));
+  }
+
+  private static String lines(int count) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      builder.append(1700000000000L + i).append(",2023.11.14 22:13:20.000,DEBUG,net,line ").append(i).append('\n');
+    }
+    return builder.toString();
+  }
+
+  private static byte[] write(File file, String content) throws IOException {
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    try (OutputStream out = new FileOutputStream(file)) {
+      out.write(bytes);
+    }
+    return bytes;
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while ((read = in.read(buffer)) > 0) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  private static final class Batch {
+    final String segment;
+    final long offset;
+    final byte[] body;
+
+    Batch(String segment, long offset, byte[] body) {
+      this.segment = segment;
+      this.offset = offset;
+      this.body = body;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.orhanobut.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class LoggableCacheTest {
+
+  @Test public void remembersEachLevelSeparately() {
+    LoggableCache cache = new LoggableCache();
+    AtomicIntegerArray table = cache.table();
+    assertEquals(LoggableCache.UNKNOWN, LoggableCache.get(table, Utils.DEBUG, "cache-levels"));
+
+    LoggableCache.put(table, Utils.DEBUG, "cache-levels", false);
+    LoggableCache.put(table, Utils.ERROR, "cache-levels", true);
+    assertEquals(LoggableCache.NO, LoggableCache.get(table, Utils.DEBUG, "cache-levels"));
+    assertEquals(LoggableCache.YES, LoggableCache.get(table, Utils.ERROR, "cache-levels"));
+    assertEquals(LoggableCache.UNKNOWN, LoggableCache.get(table, Utils.INFO, "cache-levels"));
+    assertEquals(LoggableCache.UNKNOWN, LoggableCache.get(table, 9, "cache-levels"));
+  }
+
+  @Test public void invalidateDropsResultsComputedAgainstTheOldTable() {
+    LoggableCache cache = new LoggableCache();
+    AtomicIntegerArray stale = cache.table();
+    cache.invalidate();
+    LoggableCache.put(stale, Utils.INFO, "cache-stale", false);
+
+    assertEquals(LoggableCache.UNKNOWN, LoggableCache.get(cache.table(), Utils.INFO, "cache-stale"));
+  }
+
+  @Test public void adapterAddedDuringCheckIsNotHiddenByStaleResult() {
+    LoggerPrinter printer = new LoggerPrinter();
+    LogAdapter quiet = new TestAdapter(false) {
+      @Override public boolean isLoggable(int priority, @Nullable String tag) {
+        // 判断进行到一半时另一个线程添加了会输出的适配器
+        printer.addAdapter(new TestAdapter(true));
+        return false;
+      }
+    };
+    printer.addAdapter(quiet);
+
+    printer.isLoggable(Utils.INFO, "cache-race");
+    assertTrue(printer.isLoggable(Utils.INFO, "cache-race"));
+  }
+
+  @Test public void clearingAdaptersInvalidatesCachedResult() {
+    LoggerPrinter printer = new LoggerPrinter();
+    printer.addAdapter(new TestAdapter(true));
+    assertTrue(printer.isLoggable(Utils.WARN, "cache-clear"));
+
+    printer.clearLogAdapters();
+    assertFalse(printer.isLoggable(Utils.WARN, "cache-clear"));
+  }
+
+  private static class TestAdapter implements LogAdapter {
+    private final boolean loggable;
+
+    TestAdapter(boolean loggable) {
+      this.loggable = loggable;
+    }
+
+    @Override public boolean isLoggable(int priority, @Nullable String tag) {
+      return loggable;
+    }
+
+    @Override public void log(int priority, @Nullable String tag, @NonNull String message) {
+    }
+  }
+}
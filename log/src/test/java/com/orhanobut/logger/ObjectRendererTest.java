@@ -0,0 +1,75 @@
+package com.orhanobut.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ObjectRendererTest {
+
+  @Test public void matchesDeepToStringWithinLimits() {
+    Object[] value = {1, new int[] {2, 3}, Arrays.asList("a", null), Collections.singletonMap("k", 'v')};
+    assertEquals("[1, [2, 3], [a, null], {k=v}]", ObjectRenderer.getDefault().render(value));
+  }
+
+  @Test public void limitsElementsDepthAndChars() {
+    ObjectRenderer renderer = ObjectRenderer.newBuilder().maxElements(2).maxDepth(2).maxChars(40).build();
+    assertEquals("[1, 2, ...(+3)]", renderer.render(new long[] {1, 2, 3, 4, 5}));
+    assertEquals("[[[...]]]", renderer.render(Collections.singletonList(
+        Collections.singletonList(Collections.singletonList(1)))));
+
+    char[] text = new char[100];
+    Arrays.fill(text, 'x');
+    String rendered = renderer.render(new String(text));
+    assertEquals(40 + "...(truncated)".length(), rendered.length());
+    assertTrue(rendered.endsWith("...(truncated)"));
+  }
+
+  @Test public void stopsAtCycles() {
+    List<Object> list = new ArrayList<>();
+    list.add("a");
+    list.add(list);
+    Map<String, Object> map = new HashMap<>();
+    map.put("self", map);
+    Object[] array = new Object[1];
+    array[0] = array;
+
+    assertEquals("[a, [...]]", ObjectRenderer.getDefault().render(list));
+    assertEquals("{self={...}}", ObjectRenderer.getDefault().render(map));
+    assertEquals("[[...]]", ObjectRenderer.getDefault().render(array));
+  }
+
+  @Test public void nestedObjectLogDoesNotClobberOuterRender() {
+    List<String> messages = new ArrayList<>();
+    LoggerPrinter printer = new LoggerPrinter();
+    printer.addAdapter(new LogAdapter() {
+      @Override public boolean isLoggable(int priority, @Nullable String tag) {
+        return true;
+      }
+
+      @Override public void log(int priority, @Nullable String tag, @NonNull String message) {
+        messages.add(message);
+      }
+    });
+    Object noisy = new Object() {
+      @Override public String toString() {
+        printer.d(Arrays.asList("inner", "list"));
+        return "noisy";
+      }
+    };
+
+    printer.d(Arrays.asList("outer", noisy, "tail"));
+
+    assertEquals(Arrays.asList("[inner, list]", "[outer, noisy, tail]"), messages);
+  }
+}
@@ -0,0 +1,143 @@
+package com.orhanobut.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class StagedLogAdapterTest {
+
+  @Test public void mergesThreadsInTimeOrder() throws Exception {
+    CountDownLatch gateReached = new CountDownLatch(1);
+    CountDownLatch releaseGate = new CountDownLatch(1);
+    List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+    LogAdapter delegate = new RecordingAdapter(delivered) {
+      @Override public void log(int priority, @Nullable String tag, @NonNull String message) {
+        super.log(priority, tag, message);
+        if (message.equals("gate")) {
+          // 工作线程停在这里，期间两个线程写入的日志只能在之后的同一次收取中合并
+          gateReached.countDown();
+          await(releaseGate);
+        }
+      }
+    };
+    StagedLogAdapter adapter = StagedLogAdapter.newBuilder()
+        .adapter(delegate)
+        .bufferSize(64)
+        .flushIntervalMs(60_000)
+        .build();
+
+    adapter.log(Utils.DEBUG, "t", "gate");
+    assertTrue(gateReached.await(5, TimeUnit.SECONDS));
+
+    // 两个线程严格交替写入，时间戳交错
+    Semaphore turnA = new Semaphore(1);
+    Semaphore turnB = new Semaphore(0);
+    Thread a = new Thread(() -> alternate(adapter, "a", turnA, turnB));
+    Thread b = new Thread(() -> alternate(adapter, "b", turnB, turnA));
+    a.start();
+    b.start();
+    a.join();
+    b.join();
+
+    releaseGate.countDown();
+    adapter.flushBlocking(5000);
+
+    List<String> expected = new ArrayList<>();
+    expected.add("gate");
+    for (int i = 0; i < 10; i++) {
+      expected.add("a" + i);
+      expected.add("b" + i);
+    }
+    assertEquals(expected, delivered);
+  }
+
+  @Test public void errorIsHandedOverWithoutWaitingForInterval() throws Exception {
+    CountDownLatch errorDelivered = new CountDownLatch(1);
+    List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+    StagedLogAdapter adapter = StagedLogAdapter.newBuilder()
+        .adapter(new RecordingAdapter(delivered) {
+          @Override public void log(int priority, @Nullable String tag, @NonNull String message) {
+            super.log(priority, tag, message);
+            if (priority == Utils.ERROR) {
+              errorDelivered.countDown();
+            }
+          }
+        })
+        .flushIntervalMs(60_000)
+        .build();
+
+    adapter.log(Utils.DEBUG, "t", "first");
+    adapter.log(Utils.DEBUG, "t", "second");
+    adapter.log(Utils.ERROR, "t", "boom");
+
+    assertTrue(errorDelivered.await(5, TimeUnit.SECONDS));
+    adapter.flushBlocking(5000);
+    assertEquals(3, delivered.size());
+    assertEquals("boom", delivered.get(delivered.size() - 1));
+  }
+
+  @Test public void keepsFieldsAfterCallerClearsThem() {
+    List<LogFields> received = new ArrayList<>();
+    StagedLogAdapter adapter = StagedLogAdapter.newBuilder()
+        .adapter(new RecordingAdapter(new ArrayList<>()) {
+          @Override public void log(int priority, @Nullable String tag, @NonNull String message,
+                                    @NonNull LogFields fields) {
+            received.add(fields);
+          }
+        })
+        .build();
+
+    LogFields fields = new LogFields();
+    fields.add("k", 1L);
+    adapter.log(Utils.INFO, "t", "m", fields);
+    fields.clear(); // 调用方在 log 返回后复用自己的实例
+    adapter.flushBlocking(5000);
+
+    assertEquals(1, received.size());
+    assertEquals(1, received.get(0).size());
+    assertEquals("k", received.get(0).key(0));
+  }
+
+  private static void alternate(StagedLogAdapter adapter, String name, Semaphore mine, Semaphore other) {
+    for (int i = 0; i < 10; i++) {
+      mine.acquireUninterruptibly();
+      adapter.log(Utils.DEBUG, "t", name + i);
+      other.release();
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class RecordingAdapter implements LogAdapter {
+    private final List<String> messages;
+
+    RecordingAdapter(List<String> messages) {
+      this.messages = messages;
+    }
+
+    @Override public boolean isLoggable(int priority, @Nullable String tag) {
+      return true;
+    }
+
+    @Override public void log(int priority, @Nullable String tag, @NonNull String message) {
+      messages.add(message);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package com.orhanobut.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ThrowableFingerprintsTest {
+
+  private final List<String> lines = new ArrayList<>();
+  private final CsvFormatStrategy strategy = CsvFormatStrategy.newBuilder()
+      .logStrategy((priority, tag, message) -> lines.add(message))
+      .build();
+
+  @Test public void repeatedTraceBecomesReference() {
+    Throwable error = new IllegalStateException("boom");
+    String id = Long.toHexString(ThrowableFingerprints.fingerprint(error));
+    ThrowableFingerprints traces = new ThrowableFingerprints();
+
+    String first = traces.dedupe(line("failed", error));
+    String second = traces.dedupe(line("failed", error));
+
+    assertTrue(first.contains("IllegalStateException"));
+    assertFalse(second.contains("IllegalStateException"));
+    assertTrue(second.contains(" x2]"));
+    assertEquals(ThrowableFingerprints.referenceId(second).replaceFirst("^0+", ""), id);
+  }
+
+  @Test public void markerTextInMessageIsNotMistakenForDefinition() {
+    Throwable error = new IllegalStateException("boom");
+    ThrowableFingerprints traces = new ThrowableFingerprints();
+    String message = "see [trace:0123456789abcdef] <br> earlier";
+
+    traces.dedupe(line(message, error));
+    String second = traces.dedupe(line(message, error));
+
+    assertTrue(second.contains(message)); // 用户文本保持原样
+    assertFalse(second.contains("IllegalStateException"));
+    assertTrue(second.contains(" x2]"));
+  }
+
+  @Test public void clearStartsOver() {
+    Throwable error = new IllegalStateException("boom");
+    ThrowableFingerprints traces = new ThrowableFingerprints();
+    traces.dedupe(line("failed", error));
+    traces.clear();
+    assertTrue(traces.dedupe(line("failed", error)).contains("IllegalStateException"));
+  }
+
+  private String line(String message, Throwable throwable) {
+    strategy.log(Utils.ERROR, "tag",
+        message + ThrowableFingerprints.SEPARATOR + ThrowableFingerprints.define(throwable));
+    return lines.get(lines.size() - 1);
+  }
+}
@@ -0,0 +1,61 @@
+package com.orhanobut.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class XmlPrettyPrinterTest {
+
+  private final XmlPrettyPrinter printer = new XmlPrettyPrinter(2, 0);
+
+  @Test public void indentsElementsAndKeepsEscapes() {
+    StringBuilder out = new StringBuilder();
+    assertNull(printer.print("<a x=\"1\"><b>t&amp;u</b><c/></a>", out));
+    assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<a x=\"1\">\n"
+        + "  <b>t&amp;u</b>\n"
+        + "  <c/>\n"
+        + "</a>", out.toString());
+  }
+
+  @Test public void dropsWhitespaceBetweenElements() {
+    StringBuilder compact = new StringBuilder();
+    StringBuilder spaced = new StringBuilder();
+    assertNull(printer.print("<a><b>1</b><b>2</b></a>", compact));
+    assertNull(printer.print("<a>\n   <b>1</b>\n\t<b>2</b>\n</a>", spaced));
+    assertEquals(compact.toString(), spaced.toString());
+  }
+
+  @Test public void reusesParserOnSameThread() {
+    for (int i = 0; i < 3; i++) {
+      StringBuilder out = new StringBuilder();
+      assertNull(printer.print("<r><i>" + i + "</i></r>", out));
+      assertTrue(out.toString().contains("<i>" + i + "</i>"));
+    }
+  }
+
+  @Test public void reportsMismatchedTags() {
+    StringBuilder out = new StringBuilder();
+    assertNotNull(printer.print("<a><b></a>", out));
+    assertTrue(out.toString().contains("<a>"));
+  }
+
+  @Test public void truncatesLongOutput() {
+    StringBuilder out = new StringBuilder();
+    StringBuilder xml = new StringBuilder("<r>");
+    for (int i = 0; i < 100; i++) {
+      xml.append("<i>").append(i).append("</i>");
+    }
+    assertNull(new XmlPrettyPrinter(2, 64).print(xml.append("</r>").toString(), out));
+    assertTrue(out.toString().endsWith("...(truncated)"));
+  }
+
+  @Test public void keepsUnresolvedEntityReferences() {
+    StringBuilder out = new StringBuilder();
+    assertNull(printer.print("<a>x &foo; &lt; y</a>", out));
+    assertTrue(out.toString(), out.toString().endsWith("<a>x &foo; &lt; y</a>"));
+  }
+}